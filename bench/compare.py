@@ -0,0 +1,101 @@
+#!/usr/bin/env python3
+"""Compare two JMH result files (as written by "-rf json").
+
+Usage: python3 compare.py [--threshold PERCENT] BASELINE RESULTS
+
+Matches benchmarks by name and parameters, and prints the change in
+each one's score and in the bytes it allocates per operation (from the
+GC profiler).  A benchmark regresses if its score worsens (falls, for
+throughput; rises, for times) by more than PERCENT percent (default
+10), or if it allocates more per operation than it did, beyond a small
+allowance for measurement noise.  Exits with code 1 if any benchmark
+regresses, and otherwise normally.
+"""
+
+import json
+import sys
+
+# Bytes per operation by which allocation may grow without counting as
+# a regression.
+ALLOC_SLACK = 16
+
+
+def load(name):
+    """Return the results in the JSON file NAME, keyed by benchmark name
+    and parameters."""
+    with open(name) as inp:
+        results = json.load(inp)
+    table = {}
+    for result in results:
+        params = result.get("params", {})
+        key = result["benchmark"].replace("enigma.", "", 1)
+        if params:
+            key += "(" + ", ".join("%s=%s" % item
+                                   for item in sorted(params.items())) + ")"
+        table[key] = result
+    return table
+
+
+def alloc(result):
+    """Return the bytes allocated per operation in RESULT, or None if it
+    was not measured."""
+    for name, metric in result.get("secondaryMetrics", {}).items():
+        if name.lstrip("·") == "gc.alloc.rate.norm":
+            return metric["score"]
+    return None
+
+
+def lower_is_better(result):
+    """Return true iff smaller scores are better in RESULT."""
+    return result["mode"] != "thrpt"
+
+
+def main(args):
+    threshold = 10.0
+    if len(args) >= 2 and args[0] == "--threshold":
+        threshold = float(args[1])
+        args = args[2:]
+    if len(args) != 2:
+        sys.stderr.write(__doc__)
+        return 2
+    baseline, current = load(args[0]), load(args[1])
+    regressions = 0
+    width = max([len(key) for key in current] + [9])
+    print("%-*s %12s %12s %8s %12s" % (width, "benchmark", "baseline",
+                                       "current", "change", "B/op"))
+    for key in sorted(current):
+        new = current[key]
+        old = baseline.get(key)
+        unit = new["primaryMetric"]["scoreUnit"]
+        score = new["primaryMetric"]["score"]
+        if old is None:
+            print("%-*s %12s %12.3f %8s %12s  (new) %s"
+                  % (width, key, "-", score, "", "", unit))
+            continue
+        old_score = old["primaryMetric"]["score"]
+        change = 100.0 * (score - old_score) / old_score if old_score else 0
+        worse = change if lower_is_better(new) else -change
+        notes = []
+        if worse > threshold:
+            notes.append("SLOWER")
+        old_alloc, new_alloc = alloc(old), alloc(new)
+        alloc_text = ""
+        if old_alloc is not None and new_alloc is not None:
+            alloc_text = "%.0f->%.0f" % (old_alloc, new_alloc)
+            if new_alloc > old_alloc + ALLOC_SLACK:
+                notes.append("ALLOCATES MORE")
+        if notes:
+            regressions += 1
+        print("%-*s %12.3f %12.3f %+7.1f%% %12s  %s %s"
+              % (width, key, old_score, score, change, alloc_text, unit,
+                 " ".join(notes)))
+    for key in sorted(set(baseline) - set(current)):
+        print("%-*s (missing from current results)" % (width, key))
+    if regressions:
+        print("%d regression(s)" % regressions)
+        return 1
+    return 0
+
+
+if __name__ == "__main__":
+    sys.exit(main(sys.argv[1:]))
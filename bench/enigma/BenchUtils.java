@@ -0,0 +1,208 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/** Machines, configurations, and inputs for the benchmarks.  Everything
+ *  is generated from a fixed seed, so runs are comparable.
+ *  @author Albert Abudumijitiaji
+ */
+class BenchUtils {
+
+    /** Seed for generated rotors and messages. */
+    static final long SEED = 61;
+
+    /** The naval rotors, as in a configuration file. */
+    static final String NAVAL_ROTORS =
+        " I MQ      (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " II ME     (FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)\n"
+        + " III MV    (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + " IV MJ     (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+        + " V MZ      (AVOLDRWFIUQ)(BZKSMNHYC) (EGTJPX)\n"
+        + " VI MZM    (AJQDVLEOZWIYTS) (CGMNHFUX) (BPRK)\n"
+        + " VII MZM   (ANOUPFRIMBZTLWKSVEGCJYDHXQ)\n"
+        + " VIII MZM  (AFLSETWUNDHOZVICQ) (BKJ) (GXY) (MPR)\n"
+        + " Beta N    (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " Gamma N   (AFNIRLBSQWVXGUZDKMTPCOYJHE)\n"
+        + " B R       (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "           (RX) (SZ) (TV)\n"
+        + " C R       (AR) (BD) (CO) (EJ) (FN) (GT) (HK) (IV) (LM) (PW)\n"
+        + "           (QZ) (SX) (UY)\n";
+
+    /** The naval machine's configuration file. */
+    static final String NAVAL_CONFIG =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ\n 5 3\n" + NAVAL_ROTORS;
+
+    /** Return an alphabet of N characters (N even), the upper-case
+     *  letters if N is 26. */
+    static Alphabet alphabet(int n) {
+        if (n == 26) {
+            return new Alphabet("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+        }
+        int[] codePoints = new int[n];
+        int cp = '!';
+        for (int i = 0; i < n; i += 1, cp += 1) {
+            while (cp == '*' || cp == '(' || cp == ')' || cp == 0x7f
+                   || cp > 0x7f && cp < 0x100) {
+                cp += 1;
+            }
+            codePoints[i] = cp;
+        }
+        return new Alphabet(codePoints);
+    }
+
+    /** Return a random permutation of 0 .. N-1 drawn using RANDOM. */
+    static int[] shuffled(int n, Random random) {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < n; i += 1) {
+            list.add(i);
+        }
+        Collections.shuffle(list, random);
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** Return a random permutation of ALPHA drawn using RANDOM. */
+    static Permutation permutation(Alphabet alpha, Random random) {
+        return new Permutation(alpha, shuffled(alpha.size(), random));
+    }
+
+    /** Return a random reflection of ALPHA, whose size must be even,
+     *  drawn using RANDOM. */
+    static Permutation reflection(Alphabet alpha, Random random) {
+        int[] order = shuffled(alpha.size(), random);
+        int[] forward = new int[order.length];
+        for (int i = 0; i < order.length; i += 2) {
+            forward[order[i]] = order[i + 1];
+            forward[order[i + 1]] = order[i];
+        }
+        return new Permutation(alpha, forward);
+    }
+
+    /** Return a library of rotors over ALPHA: NUMROTORS moving rotors
+     *  named M0, M1, ..., each with NOTCHES notches, two fixed rotors
+     *  F0 and F1, and two reflectors R0 and R1, all drawn using
+     *  RANDOM. */
+    static List<Rotor> rotors(Alphabet alpha, int numRotors, int notches,
+                              Random random) {
+        List<Rotor> result = new ArrayList<>();
+        for (int i = 0; i < 2; i += 1) {
+            result.add(new Reflector("R" + i, reflection(alpha, random)));
+            result.add(new FixedRotor("F" + i, permutation(alpha, random)));
+        }
+        for (int i = 0; i < numRotors; i += 1) {
+            StringBuilder notch = new StringBuilder();
+            int[] posns = shuffled(alpha.size(), random);
+            for (int k = 0; k < notches; k += 1) {
+                notch.appendCodePoint(alpha.codePoint(posns[k]));
+            }
+            result.add(new MovingRotor("M" + i, permutation(alpha, random),
+                                       notch.toString()));
+        }
+        return result;
+    }
+
+    /** Return the settings line inserting reflector R0, fixed rotor F0,
+     *  and moving rotors M0, M1, and M2 at their first positions. */
+    static String randomSettings(Alphabet alpha) {
+        String first = new String(Character.toChars(alpha.codePoint(0)));
+        return "* R0 F0 M0 M1 M2 " + first.repeat(4);
+    }
+
+    /** Return a five-slot, three-pawl machine over an alphabet of N
+     *  characters: the naval machine with rotors B, Beta, III, IV, and I
+     *  at AXLE if N is 26, and otherwise one with rotors R0 F0 M0 M1 M2
+     *  from rotors(). */
+    static Machine machine(int n) {
+        Alphabet alpha = alphabet(n);
+        Machine mach;
+        if (n == 26) {
+            mach = configure(NAVAL_CONFIG);
+            mach.insertRotors(new String[] { "B", "Beta", "III", "IV", "I" });
+            mach.setRotors("AXLE");
+        } else {
+            mach = new Machine(alpha, 5, 3,
+                               rotors(alpha, 3, 1, new Random(SEED)));
+            mach.insertRotors(new String[] { "R0", "F0", "M0", "M1", "M2" });
+        }
+        mach.setPlugboard(new Permutation("", mach.alphabet()));
+        return mach;
+    }
+
+    /** Return the configuration file text for a five-slot, three-pawl
+     *  machine with alphabet ALPHA and rotors ROTORS. */
+    static String config(Alphabet alpha, List<Rotor> rotors) {
+        StringBuilder result = new StringBuilder();
+        result.append(alpha).append("\n 5 3\n");
+        for (Rotor r : rotors) {
+            result.append(' ').append(r.name()).append(' ')
+                .append(r.reflecting() ? "R" : r.rotates()
+                        ? "M" + r.notches() : "N");
+            int[] forward = r.permutation().toArray();
+            boolean[] done = new boolean[forward.length];
+            for (int start = 0; start < forward.length; start += 1) {
+                if (!done[start]) {
+                    result.append(" (");
+                    for (int c = start; !done[c]; c = forward[c]) {
+                        done[c] = true;
+                        result.appendCodePoint(alpha.codePoint(c));
+                    }
+                    result.append(')');
+                }
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    /** Return a machine configured by the configuration file text
+     *  CONFIG. */
+    static Machine configure(String config) {
+        try {
+            Path file = Files.createTempFile("enigma-bench", ".conf");
+            try {
+                Files.writeString(file, config);
+                return Main.configure(file.toString());
+            } finally {
+                Files.delete(file);
+            }
+        } catch (IOException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** Return LENGTH random indices into an alphabet of N characters. */
+    static int[] message(int n, int length) {
+        Random random = new Random(SEED);
+        int[] result = new int[length];
+        for (int i = 0; i < length; i += 1) {
+            result[i] = random.nextInt(n);
+        }
+        return result;
+    }
+
+    /** Return an input file of messages for the settings line SETTINGS,
+     *  totaling LENGTH characters of ALPHA, in lines of LINE characters,
+     *  with a new message every MESSAGE characters. */
+    static String input(Alphabet alpha, String settings, int length,
+                        int line, int message) {
+        int[] text = message(alpha.size(), length);
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < length; i += 1) {
+            if (i % message == 0) {
+                if (i > 0) {
+                    result.append('\n');
+                }
+                result.append(settings).append('\n');
+            } else if (i % line == 0) {
+                result.append('\n');
+            }
+            result.appendCodePoint(alpha.codePoint(text[i]));
+        }
+        return result.append('\n').toString();
+    }
+}
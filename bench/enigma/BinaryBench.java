@@ -0,0 +1,67 @@
+package enigma;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of converting bytes in direct buffers (as Binary does
+ *  with mapped files) on a 256-symbol machine, against a single table
+ *  lookup per byte as a bound on what any substitution can do.  Scores
+ *  are per buffer of LENGTH bytes.
+ *  @author Albert Abudumijitiaji
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BinaryBench {
+
+    /** Set up the machine and buffers. */
+    @Setup
+    public void setUp() {
+        _machine = BenchUtils.machine(Machine.BYTE_SYMBOLS);
+        _src = ByteBuffer.allocateDirect(LENGTH);
+        _dst = ByteBuffer.allocateDirect(LENGTH);
+        byte[] data = new byte[LENGTH];
+        new Random(BenchUtils.SEED).nextBytes(data);
+        _src.put(data);
+        _table = BenchUtils.shuffled(Machine.BYTE_SYMBOLS,
+                                     new Random(BenchUtils.SEED));
+    }
+
+    /** Convert the buffer with the machine. */
+    @Benchmark
+    public ByteBuffer convert() {
+        _src.clear();
+        _dst.clear();
+        _machine.convert(_src, _dst);
+        return _dst;
+    }
+
+    /** Substitute each byte of the buffer through one fixed table. */
+    @Benchmark
+    public ByteBuffer lookup() {
+        for (int i = 0; i < LENGTH; i += 1) {
+            _dst.put(i, (byte) _table[_src.get(i) & 0xff]);
+        }
+        return _dst;
+    }
+
+    /** Bytes per buffer. */
+    private static final int LENGTH = 1 << 20;
+
+    /** Machine measured. */
+    private Machine _machine;
+    /** Input bytes. */
+    private ByteBuffer _src;
+    /** Output bytes. */
+    private ByteBuffer _dst;
+    /** Table for lookup. */
+    private int[] _table;
+}
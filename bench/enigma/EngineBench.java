@@ -0,0 +1,58 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of each Engine converting a message with a fresh copy of
+ *  the machine, as at the start of a section, over alphabets of SIZE
+ *  characters and messages of LENGTH characters, to check the choices
+ *  made by Engine.choose.  Scores are per message.
+ *  @author Albert Abudumijitiaji
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EngineBench {
+
+    /** Name of the engine measured. */
+    @Param({ "rotors", "tables", "fused", "batch" })
+    public String engine;
+
+    /** Alphabet size. */
+    @Param({ "26", "4096" })
+    public int size;
+
+    /** Message length. */
+    @Param({ "64", "16384" })
+    public int length;
+
+    /** Set up the machine and message. */
+    @Setup
+    public void setUp() {
+        _machine = BenchUtils.machine(size);
+        _machine.setEngine(Engine.forName(engine));
+        _symbols = BenchUtils.message(size, length);
+        _result = new int[length];
+    }
+
+    /** Convert the message from the machine's starting settings. */
+    @Benchmark
+    public int[] convert() {
+        _machine.copy().convert(_symbols, 0, length, _result, 0);
+        return _result;
+    }
+
+    /** Machine measured, at its starting settings. */
+    private Machine _machine;
+    /** Message as indices. */
+    private int[] _symbols;
+    /** Result of convert. */
+    private int[] _result;
+}
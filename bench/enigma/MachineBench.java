@@ -0,0 +1,65 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of Machine.convert over messages of several lengths and
+ *  alphabet sizes, through the String and symbol-index paths.  Scores
+ *  are per message; divide by length for the cost per character.
+ *  @author Albert Abudumijitiaji
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MachineBench {
+
+    /** Alphabet size. */
+    @Param({ "26", "90" })
+    public int size;
+
+    /** Message length. */
+    @Param({ "64", "4096", "262144" })
+    public int length;
+
+    /** Set up a machine and message. */
+    @Setup
+    public void setUp() {
+        _machine = BenchUtils.machine(size);
+        _symbols = BenchUtils.message(size, length);
+        _result = new int[length];
+        StringBuilder text = new StringBuilder();
+        for (int c : _symbols) {
+            text.appendCodePoint(_machine.alphabet().codePoint(c));
+        }
+        _text = text.toString();
+    }
+
+    /** Convert the message as symbol indices. */
+    @Benchmark
+    public int[] convertIndices() {
+        _machine.convert(_symbols, 0, length, _result, 0);
+        return _result;
+    }
+
+    /** Convert the message as a String. */
+    @Benchmark
+    public String convertString() {
+        return _machine.convert(_text);
+    }
+
+    /** Machine measured. */
+    private Machine _machine;
+    /** Message as indices. */
+    private int[] _symbols;
+    /** Result of convertIndices. */
+    private int[] _result;
+    /** Message as text. */
+    private String _text;
+}
@@ -0,0 +1,83 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** End-to-end benchmarks of Main, from configuration and input files to
+ *  an output file, over generated input.
+ *  @author Albert Abudumijitiaji
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MainBench {
+
+    /** Total characters of message text. */
+    @Param({ "10000", "1000000" })
+    public int length;
+
+    /** Characters in each message (between settings lines). */
+    @Param({ "100", "100000" })
+    public int message;
+
+    /** Whether to pass --parallel. */
+    @Param({ "false", "true" })
+    public boolean parallel;
+
+    /** Write the configuration and input files. */
+    @Setup
+    public void setUp() throws IOException {
+        _dir = Files.createTempDirectory("enigma-bench");
+        _config = _dir.resolve("naval.conf");
+        _input = _dir.resolve("input.in");
+        _output = _dir.resolve("output.out");
+        Files.writeString(_config, BenchUtils.NAVAL_CONFIG);
+        Files.writeString(_input,
+                          BenchUtils.input(BenchUtils.alphabet(26),
+                                           "* B Beta III IV I AXLE (HQ) (EX)",
+                                           length, LINE, message));
+    }
+
+    /** Remove the files. */
+    @TearDown
+    public void tearDown() throws IOException {
+        for (Path file : new Path[] { _config, _input, _output, _dir }) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /** Run Main on the input. */
+    @Benchmark
+    public void process() {
+        if (parallel) {
+            Main.main("--parallel", _config.toString(), _input.toString(),
+                      _output.toString());
+        } else {
+            Main.main(_config.toString(), _input.toString(),
+                      _output.toString());
+        }
+    }
+
+    /** Characters in each input line. */
+    private static final int LINE = 72;
+
+    /** Directory holding the files. */
+    private Path _dir;
+    /** Configuration file. */
+    private Path _config;
+    /** Input file. */
+    private Path _input;
+    /** Output file. */
+    private Path _output;
+}
@@ -0,0 +1,90 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of encrypting one short message under many keys, with
+ *  MultiKeyMachine and with a loop over Machine.convert.  Scores are
+ *  per batch; divide by lanes * length for the cost per character.
+ *  @author Albert Abudumijitiaji
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MultiKeyBench {
+
+    /** Number of keys. */
+    @Param({ "16", "1024" })
+    public int lanes;
+
+    /** Message length. */
+    @Param({ "64" })
+    public int length;
+
+    /** Set up the machines and message. */
+    @Setup
+    public void setUp() {
+        Machine proto = BenchUtils.machine(26);
+        Random random = new Random(BenchUtils.SEED);
+        _multi = new MultiKeyMachine(proto, lanes);
+        _machines = new Machine[lanes];
+        _starts = new int[lanes][];
+        for (int l = 0; l < lanes; l += 1) {
+            _starts[l] = new int[proto.numRotors() - 1];
+            for (int i = 0; i < _starts[l].length; i += 1) {
+                _starts[l][i] = random.nextInt(26);
+            }
+            _machines[l] = proto.copy();
+        }
+        int[] msg = BenchUtils.message(26, length);
+        _text = new int[lanes * length];
+        for (int t = 0; t < length; t += 1) {
+            for (int l = 0; l < lanes; l += 1) {
+                _text[t * lanes + l] = msg[t];
+            }
+        }
+        _message = msg;
+        _result = new int[_text.length];
+    }
+
+    /** Encrypt the message under every key with MultiKeyMachine. */
+    @Benchmark
+    public int[] lanes() {
+        for (int l = 0; l < lanes; l += 1) {
+            _multi.setRotors(l, _starts[l]);
+        }
+        _multi.convert(_text, _result, length);
+        return _result;
+    }
+
+    /** Encrypt the message under every key with one Machine per key. */
+    @Benchmark
+    public int[] loop() {
+        for (int l = 0; l < lanes; l += 1) {
+            _machines[l].setRotors(_starts[l]);
+            _machines[l].convert(_message, 0, length, _result, l * length);
+        }
+        return _result;
+    }
+
+    /** Machine running all the keys. */
+    private MultiKeyMachine _multi;
+    /** One machine per key. */
+    private Machine[] _machines;
+    /** Rotor settings of each key. */
+    private int[][] _starts;
+    /** The message, once per lane, interleaved. */
+    private int[] _text;
+    /** The message. */
+    private int[] _message;
+    /** Result of a benchmark. */
+    private int[] _result;
+}
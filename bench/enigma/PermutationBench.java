@@ -0,0 +1,64 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of Permutation.permute and Permutation.invert.
+ *  @author Albert Abudumijitiaji
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PermutationBench {
+
+    /** Alphabet size. */
+    @Param({ "26", "64", "256" })
+    public int size;
+
+    /** Set up a random permutation and inputs. */
+    @Setup
+    public void setUp() {
+        _perm = BenchUtils.permutation(BenchUtils.alphabet(size),
+                                       new Random(BenchUtils.SEED));
+        _inputs = BenchUtils.message(size, OPS);
+    }
+
+    /** Permute OPS indices. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int permute() {
+        int sum = 0;
+        for (int p : _inputs) {
+            sum += _perm.permute(p);
+        }
+        return sum;
+    }
+
+    /** Invert OPS indices. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int invert() {
+        int sum = 0;
+        for (int c : _inputs) {
+            sum += _perm.invert(c);
+        }
+        return sum;
+    }
+
+    /** Indices converted per invocation. */
+    private static final int OPS = 1024;
+
+    /** Permutation measured. */
+    private Permutation _perm;
+    /** Indices converted. */
+    private int[] _inputs;
+}
@@ -0,0 +1,53 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of Machine.convert on the naval machine with its rings at
+ *  their first positions and with rings set.  Ring settings are folded
+ *  into the rotors when they are set, so the two scores should match.
+ *  Scores are per message of LENGTH characters.
+ *  @author Albert Abudumijitiaji
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RingBench {
+
+    /** Ring settings of rotors Beta, III, IV, and I. */
+    @Param({ "AAAA", "BCFG" })
+    public String rings;
+
+    /** Set up the machine and message. */
+    @Setup
+    public void setUp() {
+        _machine = BenchUtils.machine(26);
+        _machine.setRings(rings);
+        _symbols = BenchUtils.message(26, LENGTH);
+        _result = new int[LENGTH];
+    }
+
+    /** Convert the message as symbol indices. */
+    @Benchmark
+    public int[] convertIndices() {
+        _machine.convert(_symbols, 0, LENGTH, _result, 0);
+        return _result;
+    }
+
+    /** Message length. */
+    private static final int LENGTH = 4096;
+
+    /** Machine measured. */
+    private Machine _machine;
+    /** Message as indices. */
+    private int[] _symbols;
+    /** Result of convertIndices. */
+    private int[] _result;
+}
@@ -0,0 +1,72 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of Rotor.convertForward and Rotor.convertBackward at
+ *  varying positions.
+ *  @author Albert Abudumijitiaji
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RotorBench {
+
+    /** Alphabet size. */
+    @Param({ "26", "64", "256" })
+    public int size;
+
+    /** Set up a random rotor, inputs, and positions. */
+    @Setup
+    public void setUp() {
+        Alphabet alpha = BenchUtils.alphabet(size);
+        _rotor = BenchUtils.rotors(alpha, 1, 1, new Random(BenchUtils.SEED))
+            .get(4);
+        _inputs = BenchUtils.message(size, OPS);
+        _posns = BenchUtils.shuffled(OPS, new Random(BenchUtils.SEED));
+        for (int i = 0; i < OPS; i += 1) {
+            _posns[i] %= size;
+        }
+    }
+
+    /** Convert OPS indices forward. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int convertForward() {
+        int sum = 0;
+        for (int i = 0; i < OPS; i += 1) {
+            sum += _rotor.convertForward(_inputs[i], _posns[i]);
+        }
+        return sum;
+    }
+
+    /** Convert OPS indices backward. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int convertBackward() {
+        int sum = 0;
+        for (int i = 0; i < OPS; i += 1) {
+            sum += _rotor.convertBackward(_inputs[i], _posns[i]);
+        }
+        return sum;
+    }
+
+    /** Indices converted per invocation. */
+    private static final int OPS = 1024;
+
+    /** Rotor measured. */
+    private Rotor _rotor;
+    /** Indices converted. */
+    private int[] _inputs;
+    /** Rotor position for each conversion. */
+    private int[] _posns;
+}
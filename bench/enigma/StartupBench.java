@@ -0,0 +1,65 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** Benchmarks of loading a configuration from text and from a compiled
+ *  image (see ConfigImage), for rotor libraries of several sizes.
+ *  @author Albert Abudumijitiaji
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StartupBench {
+
+    /** Number of moving rotors in the library. */
+    @Param({ "8", "2000" })
+    public int rotors;
+
+    /** Write the configuration as text and as an image. */
+    @Setup
+    public void setUp() throws IOException {
+        Alphabet alpha = BenchUtils.alphabet(26);
+        _text = Files.createTempFile("enigma-bench", ".conf");
+        _image = Files.createTempFile("enigma-bench", ".img");
+        Files.writeString(_text, BenchUtils.config(alpha, BenchUtils.rotors(
+            alpha, rotors, 1, new Random(BenchUtils.SEED))));
+        ConfigImage.write(Main.configure(_text.toString()), _image);
+    }
+
+    /** Remove the files. */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(_text);
+        Files.deleteIfExists(_image);
+    }
+
+    /** Parse the text configuration. */
+    @Benchmark
+    public Machine text() {
+        return Main.configure(_text.toString());
+    }
+
+    /** Load the image. */
+    @Benchmark
+    public Machine image() {
+        return Main.configure(_image.toString());
+    }
+
+    /** Configuration file. */
+    private Path _text;
+    /** Compiled image of _text. */
+    private Path _image;
+}
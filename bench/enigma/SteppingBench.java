@@ -0,0 +1,50 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of rotor stepping alone (Machine.advanceRotors), with
+ *  single-notch rotors and with the two-notch rotors VI-VIII.
+ *  @author Albert Abudumijitiaji
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SteppingBench {
+
+    /** Rotors inserted, as in a settings line. */
+    @Param({ "B Beta III IV I", "B Gamma VI VII VIII" })
+    public String rotors;
+
+    /** Set up the naval machine with ROTORS. */
+    @Setup
+    public void setUp() {
+        _machine = BenchUtils.configure(BenchUtils.NAVAL_CONFIG);
+        _machine.insertRotors(rotors.split(" "));
+        _machine.setRotors("AXLE");
+    }
+
+    /** Advance the rotors OPS times. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int advance() {
+        for (int i = 0; i < OPS; i += 1) {
+            _machine.advanceRotors();
+        }
+        return _machine.setting(4);
+    }
+
+    /** Keystrokes per invocation. */
+    private static final int OPS = 1024;
+
+    /** Machine stepped. */
+    private Machine _machine;
+}
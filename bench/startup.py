@@ -0,0 +1,140 @@
+#!/usr/bin/env python3
+"""Measure the startup of enigma.Main on the acceptance tests.
+
+Usage: python3 startup.py [--runs N] [--output FILE] [CASE.in ...]
+
+Runs "java enigma.Main CONFIG CASE.in" for each case (by default,
+../correct/*.in, each with its .conf file if there is one and otherwise
+default.conf, as test-correct does), N times (default 10) per way of
+launching, and reports the median time from starting the JVM to the
+first byte of output, and to exit.  The ways of launching are
+
+    plain   java -cp ..:$CLASSPATH enigma.Main ...
+    cds     java -XX:SharedArchiveFile=../enigma/enigma.jsa
+                 -cp ../enigma/enigma.jar enigma.Main ...
+    cds-c1  the same, with -XX:TieredStopAtLevel=1 (no C2 compiler,
+            which a short run never benefits from)
+
+where the last two are tried only if "make cds" in ../enigma has built
+the archive.  With --output, also writes the results as FILE in the
+format of JMH's JSON results, each case being a benchmark
+"startup.CASE" with parameter "launch", so that compare.py can compare
+two runs.  Exits with code 1 if any run fails.
+"""
+
+import glob
+import json
+import os
+import subprocess
+import sys
+import time
+
+HERE = os.path.dirname(os.path.abspath(__file__))
+ROOT = os.path.dirname(HERE)
+ARCHIVE = os.path.join(ROOT, "enigma", "enigma.jsa")
+JAR = os.path.join(ROOT, "enigma", "enigma.jar")
+
+
+def launchers():
+    """Return the ways of launching Main, as (name, java options)
+    pairs."""
+    classpath = os.pathsep.join([ROOT] + [entry for entry in
+                                          os.environ.get("CLASSPATH", "")
+                                          .split(os.pathsep) if entry])
+    result = [("plain", ["-cp", classpath])]
+    if os.path.exists(ARCHIVE) and os.path.exists(JAR):
+        cds = ["-XX:SharedArchiveFile=" + ARCHIVE, "-cp", JAR]
+        result.append(("cds", cds))
+        result.append(("cds-c1", cds + ["-XX:TieredStopAtLevel=1"]))
+    return result
+
+
+def config(case):
+    """Return the configuration file for the input file CASE."""
+    conf = case[:-len(".in")] + ".conf"
+    if os.path.exists(conf):
+        return conf
+    return os.path.join(os.path.dirname(case), "default.conf")
+
+
+def measure(options, case):
+    """Return the seconds to the first byte of output and to exit of one
+    run of Main on CASE with java options OPTIONS, or None if it
+    fails."""
+    start = time.perf_counter()
+    proc = subprocess.Popen(["java"] + options
+                            + ["enigma.Main", config(case), case],
+                            stdout=subprocess.PIPE,
+                            stderr=subprocess.DEVNULL)
+    first = proc.stdout.read(1)
+    first_time = time.perf_counter() - start
+    proc.stdout.read()
+    code = proc.wait()
+    total = time.perf_counter() - start
+    if code != 0:
+        return None
+    return (first_time if first else total), total
+
+
+def median(values):
+    """Return the median of VALUES."""
+    values = sorted(values)
+    mid = len(values) // 2
+    if len(values) % 2:
+        return values[mid]
+    return (values[mid - 1] + values[mid]) / 2
+
+
+def result(case, launch, first, total):
+    """Return a JMH-style result for CASE launched as LAUNCH, with
+    median times FIRST and TOTAL in milliseconds."""
+    return {
+        "benchmark": "startup." + os.path.basename(case)[:-len(".in")],
+        "mode": "ss",
+        "params": {"launch": launch},
+        "primaryMetric": {"score": first, "scoreUnit": "ms"},
+        "secondaryMetrics": {"total": {"score": total,
+                                       "scoreUnit": "ms"}},
+    }
+
+
+def main(args):
+    runs, output = 10, None
+    while args and args[0].startswith("--"):
+        if args[0] == "--runs" and len(args) > 1:
+            runs = int(args[1])
+        elif args[0] == "--output" and len(args) > 1:
+            output = args[1]
+        else:
+            sys.stderr.write(__doc__)
+            return 2
+        args = args[2:]
+    cases = args or sorted(glob.glob(os.path.join(ROOT, "correct",
+                                                  "*.in")))
+    results = []
+    failures = 0
+    width = max(len(os.path.basename(case)) for case in cases)
+    print("%-*s %-8s %12s %10s" % (width, "case", "launch",
+                                   "first (ms)", "exit (ms)"))
+    for case in cases:
+        for launch, options in launchers():
+            times = [measure(options, case) for _ in range(runs)]
+            if None in times:
+                failures += 1
+                print("%-*s %-8s FAILED" % (width, os.path.basename(case),
+                                            launch))
+                continue
+            first = 1000 * median([t[0] for t in times])
+            total = 1000 * median([t[1] for t in times])
+            print("%-*s %-8s %12.1f %10.1f" % (width,
+                                               os.path.basename(case),
+                                               launch, first, total))
+            results.append(result(case, launch, first, total))
+    if output:
+        with open(output, "w") as out:
+            json.dump(results, out, indent=2)
+    return 1 if failures else 0
+
+
+if __name__ == "__main__":
+    sys.exit(main(sys.argv[1:]))
@@ -1,18 +1,48 @@
 package enigma;
 
+import static enigma.EnigmaException.*;
+
 /** An alphabet of encodable characters.  Provides a mapping from characters
- *  to and from indices into the alphabet.
+ *  to and from indices into the alphabet.  Characters are Unicode code
+ *  points, so an alphabet may include supplementary characters; the char
+ *  methods are conveniences for those in the Basic Multilingual Plane.
+ *  Lookups by character take constant time (see SymbolIndex).
  *  @author Albert Abudumijitiaji
  */
 class Alphabet {
-    /** Alphabet string that is passed in as input. */
-    private final String _chars;
 
     /** A new alphabet containing CHARS. The K-th character has index
      *  K (numbering from 0). No character may be duplicated. */
     Alphabet(String chars) {
-        _chars = chars;
+        this(codePoints(chars));
+    }
+
+    /** Return the code points of CHARS.  (A loop rather than a stream,
+     *  as this runs while starting up.) */
+    private static int[] codePoints(String chars) {
+        int[] result = new int[chars.codePointCount(0, chars.length())];
+        for (int i = 0, k = 0; k < result.length; k += 1) {
+            result[k] = chars.codePointAt(i);
+            i += Character.charCount(result[k]);
+        }
+        return result;
+    }
+
+    /** A new alphabet whose K-th character is the code point
+     *  CODEPOINTS[K]. No code point may be duplicated. */
+    Alphabet(int[] codePoints) {
+        _codePoints = codePoints.clone();
+        _index = SymbolIndex.of(_codePoints);
+        if (_index == null) {
+            throw error("duplicate character in alphabet");
+        }
+        boolean bmp = true;
+        for (int cp : _codePoints) {
+            bmp &= Character.isBmpCodePoint(cp);
+        }
+        _bmp = bmp;
     }
+
     /** A default alphabet of all upper-case characters. */
     Alphabet() {
         this("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
@@ -20,24 +50,63 @@ class Alphabet {
 
     /** Returns the size of the alphabet. */
     int size() {
-        return _chars.length();
+        return _codePoints.length;
+    }
+
+    /** Returns true iff every character is in the Basic Multilingual
+     *  Plane, and so is one char long. */
+    boolean bmp() {
+        return _bmp;
     }
 
     /** Returns true if CH is in this alphabet. */
     boolean contains(char ch) {
-        return _chars.indexOf(ch) >= 0;
+        return _index.get(ch) >= 0;
+    }
+
+    /** Returns true if code point CP is in this alphabet. */
+    boolean contains(int cp) {
+        return _index.get(cp) >= 0;
     }
 
     /** Returns character number INDEX in the alphabet, where
-     *  0 <= INDEX < size(). */
+     *  0 <= INDEX < size().  Only meaningful for characters in the
+     *  Basic Multilingual Plane; see codePoint. */
     char toChar(int index) {
-        return _chars.charAt(index);
+        return (char) _codePoints[index];
+    }
+
+    /** Returns the code point of character number INDEX in the
+     *  alphabet, where 0 <= INDEX < size(). */
+    int codePoint(int index) {
+        return _codePoints[index];
     }
 
     /** Returns the index of character CH which must be in
      *  the alphabet. This is the inverse of toChar(). */
     int toInt(char ch) {
-        return _chars.indexOf(ch);
+        return _index.get(ch);
     }
 
+    /** Returns the index of code point CP, or -1 if it is not in the
+     *  alphabet.  This is the inverse of codePoint(). */
+    int indexOf(int cp) {
+        return _index.get(cp);
+    }
+
+    /** Returns the characters of this alphabet, in order. */
+    @Override
+    public String toString() {
+        return new String(_codePoints, 0, _codePoints.length);
+    }
+
+    /** The code points of this alphabet, in index order. */
+    private final int[] _codePoints;
+
+    /** True iff all my characters are in the BMP. */
+    private final boolean _bmp;
+
+    /** Maps code points to indices. */
+    private final SymbolIndex _index;
+
 }
@@ -0,0 +1,74 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Alphabet class.
+ *  @author Albert Abudumijitiaji
+ */
+public class AlphabetTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Check that ALPHA maps each of its code points to its index and
+     *  back, and rejects ABSENT. */
+    private void checkRoundTrip(Alphabet alpha, int absent) {
+        for (int k = 0; k < alpha.size(); k += 1) {
+            int cp = alpha.codePoint(k);
+            assertEquals(k, alpha.indexOf(cp));
+            assertTrue(alpha.contains(cp));
+        }
+        assertEquals(-1, alpha.indexOf(absent));
+        assertFalse(alpha.contains(absent));
+    }
+
+    @Test
+    public void checkDefault() {
+        assertEquals(26, UPPER.size());
+        assertEquals('Q', UPPER.toChar(16));
+        assertEquals(16, UPPER.toInt('Q'));
+        assertEquals(-1, UPPER.toInt('a'));
+        assertFalse(UPPER.contains('*'));
+        checkRoundTrip(UPPER, '@');
+    }
+
+    @Test
+    public void checkSparseUnicode() {
+        int[] cps = new int[3000];
+        for (int k = 0; k < cps.length; k += 1) {
+            cps[k] = 0x10000 + k * 97;
+        }
+        checkRoundTrip(new Alphabet(cps), 0x10001);
+    }
+
+    @Test
+    public void checkLargeDense() {
+        int[] cps = new int[70000];
+        for (int k = 0; k < cps.length; k += 1) {
+            cps[k] = 0x20000 + cps.length - k;
+        }
+        checkRoundTrip(new Alphabet(cps), 0x20000);
+    }
+
+    @Test
+    public void checkSupplementaryString() {
+        Alphabet alpha = new Alphabet("AB\uD83D\uDE00C");
+        assertEquals(4, alpha.size());
+        assertEquals(0x1F600, alpha.codePoint(2));
+        assertEquals(3, alpha.toInt('C'));
+        Permutation perm = new Permutation("(A\uD83D\uDE00)", alpha);
+        assertEquals(2, perm.permute(0));
+        assertEquals(0, perm.invert(2));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkDuplicate() {
+        new Alphabet("ABCA");
+    }
+}
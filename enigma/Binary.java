@@ -0,0 +1,285 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import ucb.util.CommandArgs;
+
+import static java.nio.file.StandardOpenOption.*;
+import static enigma.EnigmaException.*;
+
+/** Conversion of arbitrary files, byte by byte, by a machine whose
+ *  alphabet has 256 symbols: byte B stands for the symbol with index B,
+ *  whatever character the configuration uses for it.  Files are read
+ *  and written through memory mappings of at most a window's size at a
+ *  time, so that files of any size may be converted, with no decoding,
+ *  no line structure, and no copying beyond the conversion itself.
+ *  Since the machine is reciprocal, converting a file twice with the
+ *  same settings restores it.
+ *
+ *  A conversion may record Checkpoints as it goes.  With them, part of
+ *  a file can be converted starting from the nearest checkpoint, and a
+ *  conversion that was interrupted can be resumed from the last.
+ *  @author Albert Abudumijitiaji
+ */
+class Binary {
+
+    /** Convert a file as specified by ARGS, where 3 <= ARGS.length <=
+     *  4: ARGS[0] names a configuration file (or image) whose alphabet
+     *  has 256 symbols, ARGS[1] is a settings line (as in the input to
+     *  Main), and ARGS[2] names the input file.  ARGS[3], if present,
+     *  names the output file; otherwise the input is converted in
+     *  place.  With --index=INDEX, checkpoints are recorded in the file
+     *  INDEX every --interval=K bytes (default INTERVAL).  With
+     *  --resume, a conversion to OUTPUT interrupted while recording
+     *  INDEX continues from its last checkpoint.  With --from=START and
+     *  --to=END (each optional), only bytes START .. END-1 of the input
+     *  are converted, starting from the nearest checkpoint in INDEX if
+     *  given; the output holds just those bytes.  Exits with code 1 on
+     *  errors. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--index=(.+) --interval=(\\d+) --resume "
+                                + "--from=(\\d+) --to=(\\d+) --=(.*){3,4}",
+                                args);
+            boolean range = options.contains("--from")
+                || options.contains("--to");
+            if (!options.ok()
+                || !options.contains("--index")
+                   && (options.contains("--interval")
+                       || options.contains("--resume"))
+                || range && (options.contains("--resume")
+                             || options.contains("--interval"))) {
+                throw error("Usage: java enigma.Binary [--index=INDEX "
+                            + "[--interval=K | --resume]] CONFIG SETTINGS "
+                            + "INPUT [OUTPUT]\n"
+                            + "       java enigma.Binary [--index=INDEX] "
+                            + "[--from=START] [--to=END] CONFIG SETTINGS "
+                            + "INPUT [OUTPUT]");
+            }
+            List<String> names = options.get("--");
+            Machine machine = Main.configure(names.get(0));
+            String settings = names.get(1);
+            Main.applySettings(machine, settings);
+            Binary binary = new Binary(machine, WINDOW);
+            Path input = Paths.get(names.get(2));
+            Path output = names.size() > 3 ? Paths.get(names.get(3)) : null;
+            Path index = options.contains("--index")
+                ? Paths.get(options.getFirst("--index")) : null;
+            if (range) {
+                long size = size(input);
+                long start = options.contains("--from")
+                    ? Long.parseLong(options.getFirst("--from")) : 0;
+                long end = options.contains("--to")
+                    ? Long.parseLong(options.getFirst("--to")) : size;
+                try (Checkpoints checkpoints = index == null ? null
+                         : Checkpoints.open(index)) {
+                    binary.setIndex(checkpoints, settings);
+                    binary.convert(input, start, Math.min(end, size),
+                                   output);
+                }
+            } else if (options.contains("--resume")) {
+                try (Checkpoints checkpoints = Checkpoints.open(index)) {
+                    binary.setIndex(checkpoints, settings);
+                    binary.resume(input, output);
+                }
+            } else if (index != null) {
+                long interval = options.contains("--interval")
+                    ? Long.parseLong(options.getFirst("--interval"))
+                    : INTERVAL;
+                try (Checkpoints checkpoints =
+                     Checkpoints.create(index, machine, settings,
+                                        interval)) {
+                    binary.setIndex(checkpoints, settings);
+                    binary.convert(input, output);
+                }
+            } else {
+                binary.convert(input, output);
+            }
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        } catch (NumberFormatException excp) {
+            System.err.printf("Error: number too large: %s%n",
+                              excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** A converter applying MACHINE, which must be set up and have an
+     *  alphabet of Machine.BYTE_SYMBOLS symbols, through mappings of at
+     *  most WINDOW bytes.  The state of MACHINE now is taken to be its
+     *  state at the start of every file. */
+    Binary(Machine machine, int window) {
+        if (machine.alphabet().size() != Machine.BYTE_SYMBOLS) {
+            throw error("binary conversion needs an alphabet of %d "
+                        + "symbols", Machine.BYTE_SYMBOLS);
+        }
+        if (window <= 0) {
+            throw error("bad window size %d", window);
+        }
+        _machine = machine;
+        _window = window;
+        _start = machine.positions();
+    }
+
+    /** Record checkpoints in INDEX while converting whole files, and use
+     *  them to start converting elsewhere.  INDEX must be for the
+     *  settings line SETTINGS, which must be the one my machine was set
+     *  up with.  INDEX may be null, for no index. */
+    void setIndex(Checkpoints index, String settings) {
+        if (index != null && !index.settings().equals(settings)) {
+            throw error("index is for settings \"%s\"", index.settings());
+        }
+        _index = index;
+    }
+
+    /** Convert the contents of the file INPUT into the file OUTPUT,
+     *  which is created or replaced, or into INPUT itself if OUTPUT is
+     *  null, recording checkpoints in my index, if any, which must be
+     *  empty. */
+    void convert(Path input, Path output) {
+        if (_index != null && _index.count() > 0) {
+            throw error("index already has checkpoints");
+        }
+        convert(input, output, 0, true);
+    }
+
+    /** Finish a conversion of INPUT into OUTPUT that was interrupted,
+     *  starting from the last checkpoint in my index and recording more
+     *  as it goes.  A conversion in place cannot be resumed, since the
+     *  bytes after the last checkpoint may already have been converted. */
+    void resume(Path input, Path output) {
+        if (_index == null || _index.count() == 0) {
+            throw error("no checkpoint to resume from");
+        }
+        if (output == null) {
+            throw error("cannot resume a conversion in place");
+        }
+        long start = (_index.count() - 1) * _index.interval();
+        convert(input, output, Math.min(start, size(input)), false);
+    }
+
+    /** Convert bytes START .. END-1 of the file INPUT, as they would be
+     *  converted as part of the whole file, into the file OUTPUT, which
+     *  is created or replaced and holds only those bytes, or in place if
+     *  OUTPUT is null.  Starts from the nearest checkpoint in my index,
+     *  if any, and records none. */
+    void convert(Path input, long start, long end, Path output) {
+        if (start < 0 || start > end || end > size(input)) {
+            throw error("bad range %d .. %d", start, end);
+        }
+        seek(start);
+        try (FileChannel in = output == null
+                 ? FileChannel.open(input, READ, WRITE)
+                 : FileChannel.open(input, READ);
+             FileChannel out = output == null ? in
+                 : FileChannel.open(output, CREATE, READ, WRITE,
+                                    TRUNCATE_EXISTING)) {
+            convert(in, start, end, out, output == null ? start : 0, false);
+        } catch (IOException excp) {
+            throw error("could not convert %s: %s", input,
+                        excp.getMessage());
+        }
+    }
+
+    /** Convert INPUT from offset START to its end into the same place in
+     *  OUTPUT (or INPUT if OUTPUT is null), replacing OUTPUT iff FRESH,
+     *  and recording the checkpoints my index lacks. */
+    private void convert(Path input, Path output, long start,
+                         boolean fresh) {
+        seek(start);
+        try (FileChannel in = output == null
+                 ? FileChannel.open(input, READ, WRITE)
+                 : FileChannel.open(input, READ);
+             FileChannel out = output == null ? in
+                 : fresh ? FileChannel.open(output, CREATE, READ, WRITE,
+                                            TRUNCATE_EXISTING)
+                 : FileChannel.open(output, CREATE, READ, WRITE)) {
+            convert(in, start, in.size(), out, start, _index != null);
+        } catch (IOException excp) {
+            throw error("could not convert %s: %s", input,
+                        excp.getMessage());
+        }
+    }
+
+    /** Convert bytes START .. END-1 of IN into OUT from offset TO, a
+     *  window at a time.  If RECORD, append to my index a checkpoint for
+     *  each multiple of its interval reached that it lacks, once the
+     *  bytes before it are safely in OUT. */
+    private void convert(FileChannel in, long start, long end,
+                         FileChannel out, long to, boolean record)
+        throws IOException {
+        for (long pos = start; pos < end; pos += _window) {
+            long length = Math.min(_window, end - pos);
+            MappedByteBuffer src, dst;
+            if (in == out && start == to) {
+                src = in.map(FileChannel.MapMode.READ_WRITE, pos, length);
+                dst = (MappedByteBuffer) src.duplicate();
+            } else {
+                src = in.map(FileChannel.MapMode.READ_ONLY, pos, length);
+                dst = out.map(FileChannel.MapMode.READ_WRITE,
+                              pos - start + to, length);
+            }
+            while (record) {
+                long next = _index.count() * _index.interval();
+                if (next >= pos + length) {
+                    break;
+                }
+                src.limit((int) (next - pos));
+                _machine.convert(src, dst);
+                dst.force();
+                _index.append(_machine.positions());
+                src.limit((int) length);
+            }
+            _machine.convert(src, dst);
+            if (record) {
+                dst.force();
+            }
+        }
+    }
+
+    /** Put my machine in its state before the byte at OFFSET of a file,
+     *  from the nearest checkpoint in my index at or before OFFSET, or
+     *  else from the start. */
+    private void seek(long offset) {
+        long from = 0;
+        int[] posns = _start;
+        if (_index != null && _index.count() > 0) {
+            int k = (int) Math.min(offset / _index.interval(),
+                                   _index.count() - 1);
+            from = k * _index.interval();
+            posns = _index.positions(k);
+        }
+        _machine.setRotors(posns);
+        _machine.seek(offset - from);
+    }
+
+    /** Return the size of the file at PATH. */
+    private static long size(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException excp) {
+            throw error("could not open %s", path);
+        }
+    }
+
+    /** Largest number of bytes mapped at once by main. */
+    static final int WINDOW = 1 << 28;
+    /** Default number of bytes between checkpoints. */
+    static final long INTERVAL = 1L << 26;
+
+    /** Machine applied. */
+    private final Machine _machine;
+    /** Largest number of bytes mapped at once. */
+    private final int _window;
+    /** Settings of my machine's rotors at the start of a file. */
+    private final int[] _start;
+    /** Checkpoints recorded and used, or null. */
+    private Checkpoints _index;
+}
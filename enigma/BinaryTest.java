@@ -0,0 +1,220 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Binary class.
+ *  @author Albert Abudumijitiaji
+ */
+public class BinaryTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Settings line used throughout: every rotor at its first
+     *  position, the middle rotor's ring turned, and two plugs. */
+    private static final String SETTINGS =
+        "* R F M0 M1 M2 \u0100\u0100\u0100\u0100 \u0100\u0100\u0105\u0100 "
+        + "(\u0141\u0142) (\u01ff\u0100)";
+
+    /** Return a machine over the 256 characters U+0100 .. U+01FF, with
+     *  reflector R, fixed rotor F, and moving rotors M0 .. M2 with one
+     *  notch each, all drawn from a fixed seed. */
+    private static Machine machine() {
+        int[] codePoints = new int[Machine.BYTE_SYMBOLS];
+        for (int i = 0; i < codePoints.length; i += 1) {
+            codePoints[i] = 0x100 + i;
+        }
+        Alphabet alpha = new Alphabet(codePoints);
+        Random random = new Random(23);
+        List<Rotor> rotors = new ArrayList<>();
+        int[] order = shuffled(random);
+        int[] reflection = new int[order.length];
+        for (int i = 0; i < order.length; i += 2) {
+            reflection[order[i]] = order[i + 1];
+            reflection[order[i + 1]] = order[i];
+        }
+        rotors.add(new Reflector("R", new Permutation(alpha, reflection)));
+        rotors.add(new FixedRotor("F",
+                                  new Permutation(alpha, shuffled(random))));
+        for (int k = 0; k < 3; k += 1) {
+            rotors.add(new MovingRotor("M" + k,
+                                       new Permutation(alpha,
+                                                       shuffled(random)),
+                                       alpha.toChar(random.nextInt(256))
+                                       + ""));
+        }
+        Machine result = new Machine(alpha, 5, 3, rotors);
+        Main.applySettings(result, SETTINGS);
+        return result;
+    }
+
+    /** Return a random permutation of 0 .. 255 drawn using RANDOM. */
+    private static int[] shuffled(Random random) {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < Machine.BYTE_SYMBOLS; i += 1) {
+            list.add(i);
+        }
+        Collections.shuffle(list, random);
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testConvert() throws IOException {
+        byte[] data = new byte[200000];
+        new Random(5).nextBytes(data);
+        Machine reference = machine();
+        byte[] expected = new byte[data.length];
+        for (int i = 0; i < data.length; i += 1) {
+            expected[i] = (byte) reference.convert(data[i] & 0xff);
+        }
+        Path input = Files.createTempFile("enigma-binary", ".in");
+        Path output = Files.createTempFile("enigma-binary", ".out");
+        try {
+            Files.write(input, data);
+            new Binary(machine(), 4099).convert(input, output);
+            assertArrayEquals(expected, Files.readAllBytes(output));
+            new Binary(machine(), 1 << 20).convert(output, null);
+            assertArrayEquals(data, Files.readAllBytes(output));
+        } finally {
+            Files.delete(input);
+            Files.delete(output);
+        }
+    }
+
+    @Test
+    public void testCheckpoints() throws IOException {
+        byte[] data = new byte[20500];
+        new Random(7).nextBytes(data);
+        Path input = Files.createTempFile("enigma-binary", ".in");
+        Path output = Files.createTempFile("enigma-binary", ".out");
+        Path part = Files.createTempFile("enigma-binary", ".part");
+        Path index = Files.createTempFile("enigma-binary", ".idx");
+        try {
+            Files.write(input, data);
+            Binary binary = new Binary(machine(), 4099);
+            try (Checkpoints checkpoints =
+                 Checkpoints.create(index, machine(), SETTINGS, 1000)) {
+                binary.setIndex(checkpoints, SETTINGS);
+                binary.convert(input, output);
+                assertEquals(21, checkpoints.count());
+            }
+            byte[] expected = Files.readAllBytes(output);
+            new Binary(machine(), 4099).convert(input, 6543, 17001, part);
+            assertArrayEquals(Arrays.copyOfRange(expected, 6543, 17001),
+                              Files.readAllBytes(part));
+            try (Checkpoints checkpoints = Checkpoints.open(index)) {
+                binary = new Binary(machine(), 4099);
+                binary.setIndex(checkpoints, SETTINGS);
+                binary.convert(input, 6543, 17001, part);
+                assertArrayEquals(Arrays.copyOfRange(expected, 6543, 17001),
+                                  Files.readAllBytes(part));
+                binary.convert(input, 20000, 20500, part);
+                assertArrayEquals(Arrays.copyOfRange(expected, 20000, 20500),
+                                  Files.readAllBytes(part));
+            }
+
+            try (Checkpoints checkpoints =
+                 Checkpoints.create(index, machine(), SETTINGS, 1000)) {
+                checkpoints.append(machine().positions());
+                checkpoints.append(checkpointAt(1000));
+                checkpoints.append(checkpointAt(2000));
+            }
+            byte[] interrupted = Arrays.copyOf(expected, 2500);
+            Arrays.fill(interrupted, 2100, 2500, (byte) 0);
+            Files.write(output, interrupted);
+            try (Checkpoints checkpoints = Checkpoints.open(index)) {
+                binary = new Binary(machine(), 4099);
+                binary.setIndex(checkpoints, SETTINGS);
+                binary.resume(input, output);
+                assertEquals(21, checkpoints.count());
+            }
+            assertArrayEquals(expected, Files.readAllBytes(output));
+        } finally {
+            Files.delete(input);
+            Files.delete(output);
+            Files.delete(part);
+            Files.delete(index);
+        }
+    }
+
+    @Test
+    public void testIndexFile() throws IOException {
+        Path path = Files.createTempFile("enigma-binary", ".idx");
+        try {
+            try (Checkpoints index =
+                 Checkpoints.create(path, machine(), SETTINGS, 7)) {
+                assertEquals(0, index.count());
+                index.append(new int[] { 0, 0, 255, 4 });
+                index.append(new int[] { 0, 0, 255, 5 });
+                assertArrayEquals(new int[] { 0, 0, 255, 5 },
+                                  index.positions(1));
+            }
+            Files.write(path, new byte[] { 1, 2 }, StandardOpenOption.APPEND);
+            try (Checkpoints index = Checkpoints.open(path)) {
+                assertEquals(7, index.interval());
+                assertEquals(SETTINGS, index.settings());
+                assertEquals(2, index.count());
+                assertArrayEquals(new int[] { 0, 0, 255, 4 },
+                                  index.positions(0));
+                index.append(new int[] { 0, 1, 0, 6 });
+            }
+            try (Checkpoints index = Checkpoints.open(path)) {
+                assertEquals(3, index.count());
+                assertArrayEquals(new int[] { 0, 1, 0, 6 },
+                                  index.positions(2));
+            }
+            Files.write(path, new byte[64]);
+            try {
+                Checkpoints.open(path).close();
+                fail("opened a file that is not an index");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testWrongSettings() throws IOException {
+        Path index = Files.createTempFile("enigma-binary", ".idx");
+        try (Checkpoints checkpoints =
+             Checkpoints.create(index, machine(), SETTINGS, 1000)) {
+            new Binary(machine(), 4099).setIndex(checkpoints, SETTINGS + " ");
+        } finally {
+            Files.delete(index);
+        }
+    }
+
+    /** Return the rotor settings of a fresh machine() after converting
+     *  N symbols. */
+    private static int[] checkpointAt(long n) {
+        Machine result = machine();
+        result.seek(n);
+        return result.positions();
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testWrongAlphabet() {
+        Alphabet alpha = new Alphabet();
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation("", alpha)));
+        rotors.add(new MovingRotor("I", new Permutation("", alpha), "Q"));
+        new Binary(new Machine(alpha, 2, 1, rotors), 1 << 20);
+    }
+}
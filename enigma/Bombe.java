@@ -0,0 +1,655 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** A known-plaintext attack in the manner of the Bombe: given a crib
+ *  (a guess at part of a message) and the ciphertext, finds the rotor
+ *  orders, settings, and plugboard pairs consistent with the crib's
+ *  appearing at a given position.
+ *
+ *  The crib and ciphertext letters are joined into a menu: a graph
+ *  with an edge between the plain and cipher letters at each position,
+ *  labeled by the position.  Hypothesizing that the plugboard takes
+ *  the menu's most connected letter to some letter fixes, through the
+ *  rotors' substitution at each edge, what it takes the neighboring
+ *  letters to, and so on.  The closure of a hypothesis is kept as a
+ *  bit matrix with a bit for each (letter, plugboard image) pair.
+ *  Since the plugboard is an involution, every implication holds in
+ *  both directions, so a closure in which any letter has two images
+ *  refutes every hypothesis in it at once.  A position at which some
+ *  closure is consistent is a "stop", reported with the plugboard pairs
+ *  the closure determines.
+ *
+ *  The search covers every rotor order and every setting of the rotors
+ *  other than the reflector, split into tasks run on a ForkJoinPool.
+ *  @author Albert Abudumijitiaji
+ */
+class Bombe {
+
+    /** Search for the settings of a message, as specified by ARGS, where
+     *  2 <= ARGS.length <= 3.  ARGS[0] names a configuration file (or
+     *  image) describing the machine, ARGS[1] is the crib, and ARGS[2],
+     *  if present, names a file containing the ciphertext, which
+     *  otherwise comes from the standard input.  With --position=P, only
+     *  offset P of the ciphertext is tried for the crib; otherwise every
+     *  possible offset is.  Each stop is printed as a settings line,
+     *  and progress and throughput are reported on the standard error
+     *  every second.  Exits with code 1 on errors. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--position=(\\d+) --=(.*){2,3}", args);
+            if (!options.ok() || options.get("--").size() < 2) {
+                throw error("Usage: java enigma.Bombe [--position=P] "
+                            + "CONFIG CRIB [CIPHERTEXT]");
+            }
+            List<String> names = options.get("--");
+            Machine machine = Main.configure(names.get(0));
+            String ciphertext = Main.readText(names.size() > 2 ? names.get(2)
+                                              : null);
+            String crib = names.get(1);
+            List<Integer> positions;
+            if (options.contains("--position")) {
+                positions = Arrays.asList(
+                    Integer.parseInt(options.getFirst("--position")));
+            } else {
+                positions = cribPositions(machine.alphabet(), crib,
+                                          ciphertext);
+            }
+            for (int p : positions) {
+                Bombe bombe = new Bombe(machine, crib, ciphertext, p);
+                System.err.printf("position %d: %d rotor orders%n", p,
+                                  bombe.orders().size());
+                for (Stop stop : bombe.run(ForkJoinPool.commonPool(),
+                                           System.err)) {
+                    System.out.println(stop);
+                }
+            }
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** A Bombe for the crib CRIB at offset POSITION in the ciphertext
+     *  CIPHERTEXT, using the alphabet, rotor slots, and available rotors
+     *  of MACHINE.  Whitespace in CRIB and CIPHERTEXT is ignored. */
+    Bombe(Machine machine, String crib, String ciphertext, int position) {
+        _machine = machine;
+        _alphabet = machine.alphabet();
+        _plain = indices(crib);
+        _cipher = indices(ciphertext);
+        if (_plain.length == 0) {
+            throw error("empty crib");
+        }
+        if (!cribFits(position)) {
+            throw error("crib cannot appear at position %d", position);
+        }
+        _position = position;
+        _orders = machine.rotorOrders();
+        _menu = new Menu(_plain, Arrays.copyOfRange(_cipher, position,
+                                                    position
+                                                    + _plain.length),
+                         _alphabet.size());
+    }
+
+    /** Return the positions in CIPHERTEXT at which CRIB may appear in a
+     *  message enciphered with ALPHABET: those at which no letter of
+     *  CRIB would encipher to itself, which no Enigma machine does. */
+    static List<Integer> cribPositions(Alphabet alphabet, String crib,
+                                       String ciphertext) {
+        int[] plain = indices(alphabet, crib);
+        int[] cipher = indices(alphabet, ciphertext);
+        List<Integer> result = new ArrayList<>();
+        for (int p = 0; p + plain.length <= cipher.length; p += 1) {
+            if (fits(plain, cipher, p)) {
+                result.add(p);
+            }
+        }
+        return result;
+    }
+
+    /** Search the whole keyspace, dividing the work among the threads
+     *  of POOL, and return the stops found, ordered by rotor order and
+     *  setting. */
+    List<Stop> run(ForkJoinPool pool) {
+        _tested.reset();
+        _stops.clear();
+        pool.invoke(new Search(0, _orders.size() * _alphabet.size()));
+        List<Stop> result = new ArrayList<>(_stops);
+        result.sort(Comparator.comparingInt((Stop s) -> s._order)
+                    .thenComparing(s -> s._setting));
+        return result;
+    }
+
+    /** As for run(POOL), but also report progress and throughput on
+     *  PROGRESS every second. */
+    List<Stop> run(ForkJoinPool pool, PrintStream progress) {
+        ScheduledExecutorService reporter =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "enigma-bombe-progress");
+                thread.setDaemon(true);
+                return thread;
+            });
+        long start = System.nanoTime();
+        reporter.scheduleAtFixedRate(() -> report(progress, start),
+                                     1, 1, TimeUnit.SECONDS);
+        try {
+            return run(pool);
+        } finally {
+            reporter.shutdownNow();
+            report(progress, start);
+        }
+    }
+
+    /** Print the progress of a run begun at System.nanoTime() START on
+     *  OUT. */
+    private void report(PrintStream out, long start) {
+        long tested = tested();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        out.printf("tested %d of %d settings (%.1f%%), %.0f/s, %d stops%n",
+                   tested, keyspace(), 100.0 * tested / keyspace(),
+                   tested / Math.max(seconds, 1e-9), stopsFound());
+    }
+
+    /** Return the number of (rotor order, setting) pairs to be tested. */
+    long keyspace() {
+        long settings = 1;
+        for (int k = 2; k < _machine.numRotors(); k += 1) {
+            settings *= _alphabet.size();
+        }
+        return settings * _alphabet.size() * _orders.size();
+    }
+
+    /** Return the number of (rotor order, setting) pairs tested so far
+     *  by the current or last run.  May be called from any thread. */
+    long tested() {
+        return _tested.sum();
+    }
+
+    /** Return the number of stops found so far by the current or last
+     *  run.  May be called from any thread. */
+    int stopsFound() {
+        return _stops.size();
+    }
+
+    /** Return the rotor orders to be tried. */
+    List<String[]> orders() {
+        return _orders;
+    }
+
+    /** A setting at which the crib is consistent with the rotors. */
+    static final class Stop {
+        /** A stop for rotor order ORDER (the index of ROTORS among those
+         *  tried), the settings line SETTING for the start of the
+         *  message, and the plugboard cycles PLUGBOARD. */
+        Stop(int order, String[] rotors, String setting, String plugboard) {
+            _order = order;
+            _rotors = rotors;
+            _setting = setting;
+            _plugboard = plugboard;
+        }
+
+        /** Return the names of the rotors, reflector first. */
+        String[] rotors() {
+            return _rotors.clone();
+        }
+
+        /** Return the rotor settings at the start of the message. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return the plugboard pairs the crib determines, as cycles.
+         *  Letters the crib does not reach are shown unplugged. */
+        String plugboard() {
+            return _plugboard;
+        }
+
+        /** Return this stop as a settings line. */
+        @Override
+        public String toString() {
+            StringBuilder line = new StringBuilder("*");
+            for (String name : _rotors) {
+                line.append(' ').append(name);
+            }
+            line.append(' ').append(_setting);
+            if (!_plugboard.isEmpty()) {
+                line.append(' ').append(_plugboard);
+            }
+            return line.toString();
+        }
+
+        /** Index of the rotor order among those tried. */
+        private final int _order;
+        /** Rotor names, reflector first. */
+        private final String[] _rotors;
+        /** Rotor settings at the start of the message. */
+        private final String _setting;
+        /** Plugboard cycles. */
+        private final String _plugboard;
+    }
+
+    /** The graph of crib letters, with adjacency lists in flat arrays. */
+    private static final class Menu {
+        /** The menu for plain letters PLAIN enciphered as CIPHER, over
+         *  an alphabet of N letters. */
+        Menu(int[] plain, int[] cipher, int n) {
+            start = new int[n + 1];
+            int[] component = new int[n];
+            for (int a = 0; a < n; a += 1) {
+                component[a] = a;
+            }
+            for (int i = 0; i < plain.length; i += 1) {
+                start[plain[i] + 1] += 1;
+                start[cipher[i] + 1] += 1;
+                component[find(component, plain[i])] =
+                    find(component, cipher[i]);
+            }
+            int[] edges = new int[n];
+            int[] root = new int[n];
+            Arrays.fill(root, -1);
+            for (int a = 0; a < n; a += 1) {
+                int c = find(component, a);
+                edges[c] += start[a + 1];
+                if (start[a + 1] > 0
+                    && (root[c] < 0 || start[a + 1] > start[root[c] + 1])) {
+                    root[c] = a;
+                }
+            }
+            roots = Arrays.stream(root).filter(a -> a >= 0).boxed()
+                .sorted(Comparator.comparingInt(
+                            (Integer a) -> -edges[find(component, a)]))
+                .mapToInt(Integer::intValue).toArray();
+            for (int a = 0; a < n; a += 1) {
+                start[a + 1] += start[a];
+            }
+            other = new int[2 * plain.length];
+            step = new int[2 * plain.length];
+            int[] next = Arrays.copyOf(start, n);
+            for (int i = 0; i < plain.length; i += 1) {
+                other[next[plain[i]]] = cipher[i];
+                step[next[plain[i]]] = i;
+                next[plain[i]] += 1;
+                other[next[cipher[i]]] = plain[i];
+                step[next[cipher[i]]] = i;
+                next[cipher[i]] += 1;
+            }
+        }
+
+        /** Return the representative of A's component in the union-find
+         *  forest PARENT. */
+        private static int find(int[] parent, int a) {
+            while (parent[a] != a) {
+                parent[a] = parent[parent[a]];
+                a = parent[a];
+            }
+            return a;
+        }
+
+        /** The edges of letter A are other[start[A] .. start[A+1]-1]. */
+        private final int[] start;
+        /** The letter at the far end of each edge. */
+        private final int[] other;
+        /** The crib position labeling each edge. */
+        private final int[] step;
+        /** The letter with the most edges in each connected component
+         *  of the menu, largest component first. */
+        private final int[] roots;
+    }
+
+    /** A task testing the units [_lo .. _hi-1], where unit U is rotor
+     *  order U / N with its leftmost rotor at setting U % N. */
+    private final class Search extends RecursiveAction {
+        /** A task for units LO .. HI-1. */
+        Search(int lo, int hi) {
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > 1) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Search(_lo, mid), new Search(mid, _hi));
+            } else {
+                new Tester().test(_lo);
+            }
+        }
+
+        /** Range of units. */
+        private final int _lo, _hi;
+    }
+
+    /** The state used by one thread to test settings. */
+    private final class Tester {
+        /** A tester with its own machine and tables. */
+        Tester() {
+            int n = _alphabet.size();
+            _words = (n + Long.SIZE - 1) / Long.SIZE;
+            _machine1 = _machine.newMachine();
+            _table = new int[_plain.length * n];
+            _bits = new long[n * _words];
+            _work = new long[n * _words];
+            _tried = new long[_menu.roots.length][_words];
+            _added = new int[_menu.roots.length][2 * n];
+            _queue = new int[2 * n * n];
+            _settings = new int[_machine.numRotors() - 1];
+        }
+
+        /** Test every setting of unit UNIT (see Search). */
+        void test(int unit) {
+            int n = _alphabet.size();
+            int order = unit / n;
+            _machine1.insertRotors(_orders.get(order));
+            _machine1.setPlugboard(new Permutation("", _alphabet));
+            Arrays.fill(_settings, 0);
+            _settings[0] = unit % n;
+            long count = 0;
+            do {
+                _machine1.setRotors(_settings);
+                _machine1.seek(_position);
+                _machine1.scramblers(_plain.length, _table);
+                count += 1;
+                if (stops()) {
+                    _stops.add(new Stop(order, _orders.get(order),
+                                        settingString(), plugboard()));
+                }
+            } while (nextSetting());
+            _tested.add(count);
+        }
+
+        /** Advance _settings[1 ..] like an odometer, and return false
+         *  once they have all been visited. */
+        private boolean nextSetting() {
+            int n = _alphabet.size();
+            for (int k = _settings.length - 1; k > 0; k -= 1) {
+                _settings[k] += 1;
+                if (_settings[k] < n) {
+                    return true;
+                }
+                _settings[k] = 0;
+            }
+            return false;
+        }
+
+        /** Return true iff every component of the menu has a
+         *  hypothesis for its root whose closure under the current
+         *  _table is consistent, and consistent with those chosen for
+         *  the other components, leaving their union in _bits. */
+        private boolean stops() {
+            Arrays.fill(_bits, 0);
+            return solve(0);
+        }
+
+        /** Find hypotheses for the roots of components LEVEL and after
+         *  whose closures are consistent, and compatible with each other
+         *  and with _bits, add their closures to _bits, and return true,
+         *  or return false, leaving _bits as it was, if there are none.
+         *  A consistent hypothesis for one component may still be wrong,
+         *  and rule out the true one of a later component, so each
+         *  consistent hypothesis is tried in turn until the later
+         *  components can be solved with it. */
+        private boolean solve(int level) {
+            if (level == _menu.roots.length) {
+                return true;
+            }
+            int n = _alphabet.size();
+            int root = _menu.roots[level];
+            long[] tried = _tried[level];
+            int[] added = _added[level];
+            Arrays.fill(tried, 0);
+            for (int x = 0; x < n; x += 1) {
+                if (has(tried, 0, x)) {
+                    continue;
+                }
+                boolean found = close(root, x) && compatible();
+                int numAdded = 0;
+                for (int i = 0; i < _tail; i += 2) {
+                    int c = _queue[i], w = _queue[i + 1];
+                    if (found && !has(_bits, c * _words, w)) {
+                        add(_bits, c, w);
+                        added[numAdded++] = c;
+                        added[numAdded++] = w;
+                    }
+                    if (c == root) {
+                        set(tried, 0, w);
+                    }
+                    Arrays.fill(_work, c * _words, (c + 1) * _words, 0);
+                }
+                if (found) {
+                    if (solve(level + 1)) {
+                        return true;
+                    }
+                    for (int i = 0; i < numAdded; i += 2) {
+                        remove(_bits, added[i], added[i + 1]);
+                    }
+                }
+            }
+            return false;
+        }
+
+        /** Compute in _work the closure of the hypothesis that the
+         *  plugboard takes letter A to V, leaving the pairs added in
+         *  _queue[0 .. _tail-1], and return true iff no letter in it has
+         *  two images.  Stops at the first letter found with two, since
+         *  every pair in a closure implies all the others: they are all
+         *  refuted together. */
+        private boolean close(int a, int v) {
+            int n = _alphabet.size();
+            int head = 0;
+            _tail = 0;
+            enqueue(a, v);
+            while (head < _tail) {
+                int b = _queue[head++], u = _queue[head++];
+                for (int e = _menu.start[b]; e < _menu.start[b + 1]; e += 1) {
+                    int c = _menu.other[e];
+                    int w = _table[_menu.step[e] * n + u];
+                    if (!has(_work, c * _words, w)) {
+                        if (!empty(_work, c) || !empty(_work, w)) {
+                            return false;
+                        }
+                        enqueue(c, w);
+                    }
+                }
+            }
+            return true;
+        }
+
+        /** Add the pair A, V to _work and its consequences, in both
+         *  directions, to _queue. */
+        private void enqueue(int a, int v) {
+            add(_work, a, v);
+            _queue[_tail++] = a;
+            _queue[_tail++] = v;
+            if (a != v) {
+                _queue[_tail++] = v;
+                _queue[_tail++] = a;
+            }
+        }
+
+        /** Return true iff each pair in _queue[0 .. _tail-1] is in _bits
+         *  or involves only letters without images in _bits. */
+        private boolean compatible() {
+            for (int i = 0; i < _tail; i += 2) {
+                int c = _queue[i], w = _queue[i + 1];
+                if (!has(_bits, c * _words, w) && !empty(_bits, c)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Record in the bit matrix BITS that A and V are plugged
+         *  together. */
+        private void add(long[] bits, int a, int v) {
+            set(bits, a * _words, v);
+            set(bits, v * _words, a);
+        }
+
+        /** Record in the bit matrix BITS that A and V are not plugged
+         *  together. */
+        private void remove(long[] bits, int a, int v) {
+            clear(bits, a * _words, v);
+            clear(bits, v * _words, a);
+        }
+
+        /** Return true iff letter A has no images in the bit matrix
+         *  BITS. */
+        private boolean empty(long[] bits, int a) {
+            for (int w = 0; w < _words; w += 1) {
+                if (bits[a * _words + w] != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Set bit X of the bitset in BITS starting at word BASE. */
+        private void set(long[] bits, int base, int x) {
+            bits[base + (x >>> LOG_WORD)] |= 1L << x;
+        }
+
+        /** Clear bit X of the bitset in BITS starting at word BASE. */
+        private void clear(long[] bits, int base, int x) {
+            bits[base + (x >>> LOG_WORD)] &= ~(1L << x);
+        }
+
+        /** Return true iff bit X of the bitset in BITS starting at word
+         *  BASE is set. */
+        private boolean has(long[] bits, int base, int x) {
+            return (bits[base + (x >>> LOG_WORD)] & (1L << x)) != 0;
+        }
+
+        /** Return the rotor settings of the message start as letters. */
+        private String settingString() {
+            StringBuilder result = new StringBuilder();
+            for (int s : _settings) {
+                result.appendCodePoint(_alphabet.codePoint(s));
+            }
+            return result.toString();
+        }
+
+        /** Return the plugboard pairs in _bits as cycles. */
+        private String plugboard() {
+            StringBuilder result = new StringBuilder();
+            int n = _alphabet.size();
+            for (int a = 0; a < n; a += 1) {
+                for (int v = a + 1; v < n; v += 1) {
+                    if (has(_bits, a * _words, v)) {
+                        if (result.length() > 0) {
+                            result.append(' ');
+                        }
+                        result.append('(')
+                            .appendCodePoint(_alphabet.codePoint(a))
+                            .appendCodePoint(_alphabet.codePoint(v))
+                            .append(')');
+                    }
+                }
+            }
+            return result.toString();
+        }
+
+        /** Words in each row of _bits. */
+        private final int _words;
+        /** Machine with identity plugboard for the current order. */
+        private final Machine _machine1;
+        /** Rotor substitutions at each crib position (see
+         *  Machine.scramblers). */
+        private final int[] _table;
+        /** Closures chosen for the components tested so far: row A
+         *  holds the plugboard image of letter A, if any. */
+        private final long[] _bits;
+        /** Closure of the current hypothesis, in the form of _bits. */
+        private final long[] _work;
+        /** For each component being solved, the images of its root
+         *  already refuted or tried. */
+        private final long[][] _tried;
+        /** For each component being solved, the pairs (letter, image)
+         *  that the closure chosen for it added to _bits, so that they
+         *  can be taken out again. */
+        private final int[][] _added;
+        /** Pairs (letter, image) in the current closure, in the order
+         *  added; those from _queue[head] on have consequences
+         *  pending. */
+        private final int[] _queue;
+        /** Number of entries used in _queue. */
+        private int _tail;
+        /** Settings of rotors 1 .. numRotors()-1. */
+        private final int[] _settings;
+    }
+
+    /** Return true iff CRIB may appear at offset POSITION. */
+    private boolean cribFits(int position) {
+        return position >= 0 && position + _plain.length <= _cipher.length
+            && fits(_plain, _cipher, position);
+    }
+
+    /** Return true iff no letter of PLAIN equals the letter at the same
+     *  place in CIPHER, starting at offset P. */
+    private static boolean fits(int[] plain, int[] cipher, int p) {
+        for (int i = 0; i < plain.length; i += 1) {
+            if (plain[i] == cipher[p + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the indices of the characters of S in my alphabet. */
+    private int[] indices(String s) {
+        return indices(_alphabet, s);
+    }
+
+    /** Return the indices in ALPHABET of the characters of S, skipping
+     *  whitespace. */
+    private static int[] indices(Alphabet alphabet, String s) {
+        return s.codePoints().filter(cp -> !Character.isWhitespace(cp))
+            .map(cp -> {
+                int c = alphabet.indexOf(cp);
+                if (c < 0) {
+                    throw error("character %s not in alphabet",
+                                new String(Character.toChars(cp)));
+                }
+                return c;
+            }).toArray();
+    }
+
+    /** Base-2 logarithm of the number of bits in a long. */
+    private static final int LOG_WORD = 6;
+
+    /** Supplies the alphabet, slots, and rotors. */
+    private final Machine _machine;
+    /** My alphabet. */
+    private final Alphabet _alphabet;
+    /** The crib, as indices. */
+    private final int[] _plain;
+    /** The ciphertext, as indices. */
+    private final int[] _cipher;
+    /** Offset of the crib in _cipher. */
+    private final int _position;
+    /** The rotor orders tried. */
+    private final List<String[]> _orders;
+    /** The crib menu. */
+    private final Menu _menu;
+    /** Number of settings tested. */
+    private final LongAdder _tested = new LongAdder();
+    /** Stops found. */
+    private final ConcurrentLinkedQueue<Stop> _stops =
+        new ConcurrentLinkedQueue<>();
+}
@@ -0,0 +1,99 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Bombe class.
+ *  @author Albert Abudumijitiaji
+ */
+public class BombeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTS ***** */
+
+    private static final Alphabet AZ = new Alphabet(TestUtils.UPPER_STRING);
+
+    private static final String CRIB = "WETTERVORHERSAGEFUERDIE";
+
+    /** Return a machine with three slots, two pawls, reflector B, and
+     *  rotors I, II, and III. */
+    private Machine machine() {
+        HashMap<String, String> nav = TestUtils.NAVALA;
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(nav.get("B"), AZ)));
+        rotors.add(new MovingRotor("I", new Permutation(nav.get("I"), AZ),
+                                   "Q"));
+        rotors.add(new MovingRotor("II", new Permutation(nav.get("II"), AZ),
+                                   "E"));
+        rotors.add(new MovingRotor("III",
+                                   new Permutation(nav.get("III"), AZ),
+                                   "V"));
+        return new Machine(AZ, 3, 2, rotors);
+    }
+
+    /** Return MSG enciphered by machine() with rotors III and I at
+     *  setting SETTING and plugboard PLUGBOARD. */
+    private String encipher(String msg, String setting, String plugboard) {
+        Machine mach = machine();
+        mach.insertRotors(new String[] { "B", "III", "I" });
+        mach.setRotors(setting);
+        mach.setPlugboard(new Permutation(plugboard, AZ));
+        return mach.convert(msg);
+    }
+
+    @Test
+    public void testCribPositions() {
+        List<Integer> positions =
+            Bombe.cribPositions(AZ, "ABC", "XAYCBZ");
+        assertEquals(List.of(0, 2), positions);
+    }
+
+    @Test
+    public void testFindsSettings() {
+        String plugboard = "(AQ) (EP) (RT) (SZ) (DW)";
+        String cipher = encipher("XX" + CRIB + "ZZZ", "KD", plugboard);
+        Bombe bombe = new Bombe(machine(), CRIB, cipher, 2);
+        assertEquals(6, bombe.orders().size());
+        List<Bombe.Stop> stops = bombe.run(new ForkJoinPool(2));
+        assertEquals(bombe.keyspace(), bombe.tested());
+        assertEquals(1, stops.size());
+        Bombe.Stop stop = stops.get(0);
+        assertArrayEquals(new String[] { "B", "III", "I" }, stop.rotors());
+        assertEquals("KD", stop.setting());
+        assertEquals("* B III I KD " + stop.plugboard(), stop.toString());
+        for (String pair : plugboard.split(" ")) {
+            if (CRIB.indexOf(pair.charAt(1)) >= 0
+                || CRIB.indexOf(pair.charAt(2)) >= 0) {
+                assertTrue(pair, stop.plugboard().contains(pair));
+            }
+        }
+    }
+
+    @Test
+    public void testShortCrib() {
+        String crib = "MZHRXYQS";
+        String cipher = encipher(crib, "LC", "(WY) (VA) (CS) (IQ) (FM) (XZ) "
+                                 + "(HT) (EG) (LJ) (PB)");
+        assertEquals("IXLUBKEN", cipher);
+        Bombe bombe = new Bombe(machine(), crib, cipher, 0);
+        boolean found = false;
+        for (Bombe.Stop stop : bombe.run(new ForkJoinPool(2))) {
+            found |= stop.toString().startsWith("* B III I LC ");
+        }
+        assertTrue("true setting missed", found);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testCribDoesNotFit() {
+        new Bombe(machine(), "ABC", "XAYCBZ", 1);
+    }
+}
@@ -0,0 +1,238 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+import static enigma.EnigmaException.*;
+
+/** A sidecar index of the states of a machine converting a long stream
+ *  of symbols under one settings line: the settings of its rotors before
+ *  every INTERVAL'th symbol.  With it, a reader can start converting at
+ *  any offset from the nearest checkpoint rather than from the start,
+ *  and an interrupted conversion can resume from the last one.
+ *
+ *  The file is a header followed by fixed-size records, one per
+ *  checkpoint, so that it may be mapped and indexed directly, and is
+ *  only ever appended to.  The header consists of big-endian ints
+ *  MAGIC, VERSION, the number of rotor settings per record (one fewer
+ *  than the number of rotor slots), and the bytes per setting (1 if the
+ *  alphabet has at most 256 symbols, else 2), the long INTERVAL, and the
+ *  settings line as an int byte count and UTF-8 bytes, padded to a
+ *  multiple of ALIGNMENT.  Record I holds the settings of rotors 1 ..
+ *  numRotors-1 before symbol I * INTERVAL; offsets are implicit.  A
+ *  trailing partial record, left by an interrupted append, is ignored
+ *  and overwritten by the next.
+ *  @author Albert Abudumijitiaji
+ */
+class Checkpoints implements AutoCloseable {
+
+    /** Create an empty index at PATH, replacing any file there, for
+     *  MACHINE (which gives the alphabet size and number of rotors)
+     *  converting under the settings line SETTINGS, with a checkpoint
+     *  every INTERVAL symbols. */
+    static Checkpoints create(Path path, Machine machine, String settings,
+                              long interval) {
+        if (interval <= 0) {
+            throw error("bad checkpoint interval %d", interval);
+        }
+        byte[] line = settings.getBytes(StandardCharsets.UTF_8);
+        int rotors = machine.numRotors() - 1;
+        int width = machine.alphabet().size() <= 1 << Byte.SIZE ? 1 : 2;
+        int size = (HEADER_INTS + 1) * Integer.BYTES + Long.BYTES
+            + line.length;
+        size = (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+        ByteBuffer header = ByteBuffer.allocate(size);
+        header.putInt(MAGIC).putInt(VERSION).putInt(rotors).putInt(width)
+            .putLong(interval).putInt(line.length).put(line);
+        header.rewind();
+        try {
+            FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE,
+                                                   TRUNCATE_EXISTING);
+            try {
+                channel.write(header, 0);
+                return new Checkpoints(path, channel);
+            } catch (IOException | EnigmaException excp) {
+                channel.close();
+                throw excp;
+            }
+        } catch (IOException excp) {
+            throw error("could not write index %s: %s", path,
+                        excp.getMessage());
+        }
+    }
+
+    /** Open the existing index at PATH, to read its checkpoints or to
+     *  append more. */
+    static Checkpoints open(Path path) {
+        try {
+            FileChannel channel = FileChannel.open(path, READ, WRITE);
+            try {
+                return new Checkpoints(path, channel);
+            } catch (EnigmaException excp) {
+                channel.close();
+                throw excp;
+            }
+        } catch (IOException excp) {
+            throw error("could not open index %s: %s", path,
+                        excp.getMessage());
+        }
+    }
+
+    /** An index held in CHANNEL, the file at PATH, which must contain at
+     *  least a valid header. */
+    private Checkpoints(Path path, FileChannel channel) throws IOException {
+        _path = path;
+        _channel = channel;
+        map();
+        if (_map.limit() < (HEADER_INTS + 1) * Integer.BYTES + Long.BYTES
+            || _map.getInt(0) != MAGIC) {
+            throw error("%s is not a checkpoint index", path);
+        }
+        if (_map.getInt(Integer.BYTES) != VERSION) {
+            throw error("%s has unsupported version %d", path,
+                        _map.getInt(Integer.BYTES));
+        }
+        _rotors = _map.getInt(2 * Integer.BYTES);
+        _width = _map.getInt(3 * Integer.BYTES);
+        _interval = _map.getLong(HEADER_INTS * Integer.BYTES);
+        int length = _map.getInt(HEADER_INTS * Integer.BYTES + Long.BYTES);
+        int start = (HEADER_INTS + 1) * Integer.BYTES + Long.BYTES;
+        if (_rotors <= 0 || _width < 1 || _width > 2 || _interval <= 0
+            || length < 0 || length > _map.limit() - start) {
+            throw error("%s has a corrupt header", path);
+        }
+        byte[] line = new byte[length];
+        _map.get(start, line);
+        _settings = new String(line, StandardCharsets.UTF_8);
+        _dataOffset = (start + length + ALIGNMENT - 1) / ALIGNMENT
+            * ALIGNMENT;
+        _count = (int) Math.max(0, (channel.size() - _dataOffset)
+                                / recordSize());
+    }
+
+    /** Return the number of symbols between checkpoints. */
+    long interval() {
+        return _interval;
+    }
+
+    /** Return the settings line of the conversion indexed. */
+    String settings() {
+        return _settings;
+    }
+
+    /** Return the number of checkpoints recorded. */
+    int count() {
+        return _count;
+    }
+
+    /** Return the settings of rotors 1 .. numRotors-1 at checkpoint K,
+     *  before symbol K * interval(), as for Machine.setRotors(int[]). */
+    int[] positions(int k) {
+        if (k < 0 || k >= _count) {
+            throw error("no checkpoint %d in %s", k, _path);
+        }
+        long offset = _dataOffset + (long) k * recordSize();
+        if (offset + recordSize() > _map.limit()) {
+            map();
+        }
+        int[] result = new int[_rotors];
+        int pos = (int) offset;
+        for (int i = 0; i < _rotors; i += 1) {
+            result[i] = _width == 1 ? _map.get(pos + i) & BYTE_MASK
+                : _map.getShort(pos + 2 * i) & SHORT_MASK;
+        }
+        return result;
+    }
+
+    /** Append a checkpoint with the rotor settings POSNS, which applies
+     *  to the symbol at offset count() * interval(). */
+    void append(int[] posns) {
+        if (posns.length != _rotors) {
+            throw error("checkpoint has the wrong number of rotors");
+        }
+        ByteBuffer record = ByteBuffer.allocate(recordSize());
+        for (int posn : posns) {
+            if (_width == 1) {
+                record.put((byte) posn);
+            } else {
+                record.putShort((short) posn);
+            }
+        }
+        record.flip();
+        long offset = _dataOffset + (long) _count * recordSize();
+        try {
+            while (record.hasRemaining()) {
+                _channel.write(record, offset + record.position());
+            }
+        } catch (IOException excp) {
+            throw error("could not write index %s: %s", _path,
+                        excp.getMessage());
+        }
+        _count += 1;
+    }
+
+    @Override
+    public void close() {
+        try {
+            _channel.close();
+        } catch (IOException excp) {
+            throw error("could not close index %s", _path);
+        }
+    }
+
+    /** Return the size in bytes of each record. */
+    private int recordSize() {
+        return _rotors * _width;
+    }
+
+    /** Map the whole of my file as it now stands into _map. */
+    private void map() {
+        try {
+            long size = _channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw error("index %s too large", _path);
+            }
+            _map = _channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (IOException excp) {
+            throw error("could not read index %s: %s", _path,
+                        excp.getMessage());
+        }
+    }
+
+    /** Value of the first int of an index ("ENCK"). */
+    static final int MAGIC = 0x454e434b;
+    /** Version of the file format. */
+    static final int VERSION = 1;
+    /** Number of ints at the start of the header. */
+    private static final int HEADER_INTS = 4;
+    /** Alignment of the first record. */
+    private static final int ALIGNMENT = 8;
+    /** Mask giving the unsigned value of a byte. */
+    private static final int BYTE_MASK = 0xff;
+    /** Mask giving the unsigned value of a short. */
+    private static final int SHORT_MASK = 0xffff;
+
+    /** Location of my file. */
+    private final Path _path;
+    /** My open file. */
+    private final FileChannel _channel;
+    /** Mapping of my file, as of when it was last mapped. */
+    private MappedByteBuffer _map;
+    /** Number of settings per record. */
+    private final int _rotors;
+    /** Bytes per setting. */
+    private final int _width;
+    /** Symbols between checkpoints. */
+    private final long _interval;
+    /** Settings line of the conversion. */
+    private final String _settings;
+    /** Offset of the first record. */
+    private final long _dataOffset;
+    /** Number of complete records. */
+    private int _count;
+}
@@ -0,0 +1,141 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** A client of Server: sends it inputs for Main and returns the
+ *  outputs.
+ *  @author Albert Abudumijitiaji
+ */
+class Client implements AutoCloseable {
+
+    /** Process an input file with a running Server, as specified by
+     *  ARGS, where ARGS.length <= 2, writing exactly what Main would.
+     *  ARGS[0], if present, names the input file, and otherwise input
+     *  comes from the standard input.  ARGS[1], if present, names the
+     *  output file, and otherwise output goes to the standard output.
+     *  --socket and --port give the server's address, as for Server.
+     *  Exits with code 1 on errors, including errors in the input. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--socket=(.+) --port=(\\d+) --=(.*){0,2}",
+                                args);
+            if (!options.ok() || options.contains("--socket")
+                && options.contains("--port")) {
+                throw error("Usage: java enigma.Client [--socket=PATH | "
+                            + "--port=PORT] [INPUT [OUTPUT]]");
+            }
+            List<String> names = options.get("--");
+            String input = Main.readText(names.isEmpty() ? null
+                                         : names.get(0));
+            byte[] output;
+            try (Client client =
+                 new Client(Server.address(options.getFirst("--socket"),
+                                           options.getFirst("--port")))) {
+                output = client.process(input.getBytes(
+                    Charset.defaultCharset()));
+            }
+            if (names.size() > 1) {
+                try (PrintStream out = new PrintStream(names.get(1))) {
+                    out.write(output);
+                }
+            } else {
+                System.out.write(output);
+                System.out.flush();
+            }
+            return;
+        } catch (IOException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** A client connected to the server at ADDRESS. */
+    Client(SocketAddress address) {
+        try {
+            _channel = address instanceof UnixDomainSocketAddress
+                ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                : SocketChannel.open();
+            _channel.connect(address);
+        } catch (IOException excp) {
+            throw error("could not connect to %s: %s", address,
+                        excp.getMessage());
+        }
+        _in = new DataInputStream(new BufferedInputStream(
+            Channels.newInputStream(_channel)));
+        _out = new DataOutputStream(new BufferedOutputStream(
+            Channels.newOutputStream(_channel)));
+    }
+
+    /** Return the output for the input file contents INPUT.  Errors in
+     *  INPUT are reported as EnigmaExceptions with the server's
+     *  message. */
+    byte[] process(byte[] input) {
+        send(input);
+        return receive();
+    }
+
+    /** Send the input file contents INPUT as a request.  Requests may
+     *  be sent ahead of receiving the responses to earlier ones. */
+    void send(byte[] input) {
+        try {
+            _out.writeInt(input.length);
+            _out.write(input);
+            _out.flush();
+        } catch (IOException excp) {
+            throw error("could not send request: %s", excp.getMessage());
+        }
+    }
+
+    /** Return the output in the response to the oldest request sent
+     *  and not yet received. */
+    byte[] receive() {
+        try {
+            byte status = _in.readByte();
+            byte[] body = new byte[_in.readInt()];
+            _in.readFully(body);
+            if (status != Server.OK) {
+                throw new EnigmaException(new String(body,
+                                                     StandardCharsets.UTF_8));
+            }
+            return body;
+        } catch (IOException excp) {
+            throw error("could not receive response: %s",
+                        excp.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            _channel.close();
+        } catch (IOException excp) {
+            throw error("could not close connection");
+        }
+    }
+
+    /** Connection to the server. */
+    private final SocketChannel _channel;
+    /** Responses from the server. */
+    private final DataInputStream _in;
+    /** Requests to the server. */
+    private final DataOutputStream _out;
+}
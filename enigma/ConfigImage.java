@@ -0,0 +1,196 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** A precompiled binary form of a configuration file, which loads
+ *  without any text parsing.  An image holds, in big-endian order:
+ *
+ *      int MAGIC, int VERSION
+ *      int alphabet size N, then N code points
+ *      int numRotors, int pawls
+ *      byte table width W (1, 2, or 4 bytes per entry)
+ *      int number of rotors, then for each rotor:
+ *          byte kind ('M', 'N', or 'R')
+ *          int name length, then that many bytes of UTF-8 name
+ *          int number of notches, then that many notch indices
+ *          N W-byte entries of its permutation table
+ *
+ *  Images are made by "java enigma.Main --compile CONFIG IMAGE" and may
+ *  be given to Main in place of a configuration file.
+ *  @author Albert Abudumijitiaji
+ */
+class ConfigImage {
+
+    /** Return true iff the file at PATH starts like an image: with
+     *  MAGIC and VERSION, then an alphabet size for which the file has
+     *  room.  Anything else is taken to be a configuration file. */
+    static boolean isImage(Path path) {
+        try (FileChannel in = FileChannel.open(path)) {
+            ByteBuffer head = ByteBuffer.allocate(3 * Integer.BYTES);
+            while (head.hasRemaining() && in.read(head) >= 0) {
+                continue;
+            }
+            if (head.hasRemaining() || head.getInt(0) != MAGIC
+                || head.getInt(Integer.BYTES) != VERSION) {
+                return false;
+            }
+            int n = head.getInt(2 * Integer.BYTES);
+            return n > 0 && HEADER_INTS * Integer.BYTES + 1
+                + (long) n * Integer.BYTES <= in.size();
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Write an image of the configuration of MACHINE to PATH. */
+    static void write(Machine machine, Path path) {
+        Alphabet alpha = machine.alphabet();
+        int n = alpha.size();
+        int width = n <= BYTE_ENTRIES ? 1 : n <= SHORT_ENTRIES ? 2 : 4;
+        List<Rotor> rotors = machine.availableRotors();
+        long size = HEADER_INTS * Integer.BYTES + 1
+            + (long) n * Integer.BYTES;
+        for (Rotor r : rotors) {
+            size += 1 + 2 * Integer.BYTES
+                + r.name().getBytes(StandardCharsets.UTF_8).length
+                + (long) notches(r).length * Integer.BYTES
+                + (long) n * width;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw error("configuration too large for an image");
+        }
+        ByteBuffer out = ByteBuffer.allocate((int) size);
+        out.putInt(MAGIC).putInt(VERSION).putInt(n);
+        for (int k = 0; k < n; k += 1) {
+            out.putInt(alpha.codePoint(k));
+        }
+        out.putInt(machine.numRotors()).putInt(machine.numPawls());
+        out.put((byte) width).putInt(rotors.size());
+        for (Rotor r : rotors) {
+            byte[] name = r.name().getBytes(StandardCharsets.UTF_8);
+            int[] notches = notches(r);
+            out.put((byte) (r.reflecting() ? 'R' : r.rotates() ? 'M' : 'N'));
+            out.putInt(name.length).put(name).putInt(notches.length);
+            for (int notch : notches) {
+                out.putInt(notch);
+            }
+            for (int c : r.permutation().toArray()) {
+                if (width == 1) {
+                    out.put((byte) c);
+                } else if (width == 2) {
+                    out.putShort((short) c);
+                } else {
+                    out.putInt(c);
+                }
+            }
+        }
+        out.flip();
+        try (FileChannel ch = FileChannel.open(path,
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                ch.write(out);
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s", path);
+        }
+    }
+
+    /** Return a machine with the configuration in the image at PATH. */
+    static Machine read(Path path) {
+        MappedByteBuffer in;
+        try (FileChannel ch = FileChannel.open(path)) {
+            in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (IOException excp) {
+            throw error("could not open %s", path);
+        }
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw error("%s is not a configuration image", path);
+            }
+            int[] codePoints = new int[in.getInt()];
+            for (int k = 0; k < codePoints.length; k += 1) {
+                codePoints[k] = in.getInt();
+            }
+            Alphabet alpha = new Alphabet(codePoints);
+            int numRotors = in.getInt(), pawls = in.getInt();
+            int width = in.get();
+            int count = in.getInt();
+            List<Rotor> rotors = new ArrayList<>();
+            int[] table = new int[alpha.size()];
+            for (int i = 0; i < count; i += 1) {
+                rotors.add(readRotor(in, alpha, width, table));
+            }
+            return new Machine(alpha, numRotors, pawls, rotors);
+        } catch (RuntimeException excp) {
+            if (excp instanceof EnigmaException) {
+                throw excp;
+            }
+            throw error("corrupt configuration image %s", path);
+        }
+    }
+
+    /** Return the rotor described next in IN, over ALPHA, with table
+     *  entries WIDTH bytes wide.  TABLE is scratch space. */
+    private static Rotor readRotor(ByteBuffer in, Alphabet alpha, int width,
+                                   int[] table) {
+        char kind = (char) in.get();
+        byte[] nameBytes = new byte[in.getInt()];
+        in.get(nameBytes);
+        String name = new String(nameBytes, StandardCharsets.UTF_8);
+        StringBuilder notches = new StringBuilder();
+        for (int k = in.getInt(); k > 0; k -= 1) {
+            notches.appendCodePoint(alpha.codePoint(in.getInt()));
+        }
+        for (int k = 0; k < table.length; k += 1) {
+            table[k] = width == 1 ? in.get() & BYTE_MASK
+                : width == 2 ? in.getShort() & SHORT_MASK : in.getInt();
+        }
+        Permutation perm = new Permutation(alpha, table);
+        switch (kind) {
+        case 'M':
+            return new MovingRotor(name, perm, notches.toString());
+        case 'N':
+            return new FixedRotor(name, perm);
+        case 'R':
+            return new Reflector(name, perm);
+        default:
+            throw error("bad rotor kind in configuration image");
+        }
+    }
+
+    /** Return the indices of the notches of R. */
+    private static int[] notches(Rotor r) {
+        String notches = r.notches();
+        if (notches == null) {
+            return new int[0];
+        }
+        return notches.codePoints().map(r.alphabet()::indexOf)
+            .filter(k -> k >= 0).toArray();
+    }
+
+    /** First word of every image: the byte 0x89 and "ENG".  As in PNG,
+     *  the first byte is not ASCII, nor a character in any encoding of
+     *  a configuration file, so no configuration file starts this
+     *  way. */
+    static final int MAGIC = 0x89454e47;
+    /** Number of int fields in the header, outside the alphabet. */
+    private static final int HEADER_INTS = 6;
+    /** Version of the image format. */
+    static final int VERSION = 2;
+    /** Largest alphabet sizes whose table entries fit in unsigned bytes
+     *  and shorts. */
+    private static final int BYTE_ENTRIES = 256, SHORT_ENTRIES = 65536;
+    /** Masks for reading unsigned bytes and shorts. */
+    private static final int BYTE_MASK = 0xff, SHORT_MASK = 0xffff;
+}
@@ -0,0 +1,96 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the ConfigImage class.
+ *  @author Albert Abudumijitiaji
+ */
+public class ConfigImageTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    private static final Alphabet AZ = new Alphabet(TestUtils.UPPER_STRING);
+
+    private static final HashMap<String, Rotor> ROTORS = new HashMap<>();
+
+    static {
+        HashMap<String, String> nav = TestUtils.NAVALA;
+        ROTORS.put("B", new Reflector("B", new Permutation(nav.get("B"), AZ)));
+        ROTORS.put("Beta",
+                new FixedRotor("Beta",
+                        new Permutation(nav.get("Beta"), AZ)));
+        ROTORS.put("III",
+                new MovingRotor("III",
+                        new Permutation(nav.get("III"), AZ), "VC"));
+        ROTORS.put("IV",
+                new MovingRotor("IV", new Permutation(nav.get("IV"), AZ),
+                        "JZ"));
+        ROTORS.put("I",
+                new MovingRotor("I", new Permutation(nav.get("I"), AZ),
+                        "Q"));
+    }
+
+    private static final String[] ROTORS1 = { "B", "Beta", "III", "IV", "I" };
+    private static final String SETTING1 = "AXLE";
+
+    @Test
+    public void testConfigImage() throws IOException {
+        Path image = Files.createTempFile("enigma", ".img");
+        try {
+            ConfigImage.write(new Machine(AZ, 5, 3, ROTORS.values()), image);
+            assertTrue(ConfigImage.isImage(image));
+            Machine mach = ConfigImage.read(image);
+            assertEquals(5, mach.numRotors());
+            assertEquals(3, mach.numPawls());
+            mach.insertRotors(ROTORS1);
+            mach.setRotors(SETTING1);
+            mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                                              mach.alphabet()));
+            assertTrue(mach.getRotor(0).reflecting());
+            assertEquals("VC", mach.getRotor(2).notches());
+            assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                    mach.convert("FROMHISSHOULDERHIAWATHA"));
+            Files.write(image, Arrays.copyOf(Files.readAllBytes(image), 12));
+            assertFalse(ConfigImage.isImage(image));
+        } finally {
+            Files.delete(image);
+        }
+    }
+
+    @Test
+    public void testConfigLikeImage() throws IOException {
+        Path config = Files.createTempFile("enigma", ".conf");
+        try {
+            Files.write(config, ("ENIGMABCDFHJKLOPQRSTUVWXYZ 5 3\n"
+                                 + " B R (AE) (BN) (CK) (DQ) (FU) (GY) (HW) "
+                                 + "(IJ) (LO) (MP) (RX) (SZ) (TV)\n"
+                                 + " Beta N (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+                                 + " III MV (ABDHPEJT) (CFLVMZOYQIRWUKXSG)\n"
+                                 + " IV MJ (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+                                 + " I MQ (AELTPHQXRU) (BKNW) (CMOY) (DFG) "
+                                 + "(IV) (JZ)\n").getBytes("US-ASCII"));
+            assertFalse(ConfigImage.isImage(config));
+            Machine mach = Main.configure(config.toString());
+            assertEquals("ENIGMABCDFHJKLOPQRSTUVWXYZ",
+                         mach.alphabet().toString());
+            Main.applySettings(mach, "* B Beta III IV I AXLE");
+            String cipher = mach.convert("HELLO");
+            Main.applySettings(mach, "* B Beta III IV I AXLE");
+            assertEquals("HELLO", mach.convert(cipher));
+        } finally {
+            Files.delete(config);
+        }
+    }
+}
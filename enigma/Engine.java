@@ -0,0 +1,198 @@
+package enigma;
+
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** A way of running the signal path of a Machine over a run of
+ *  keystrokes.  All engines give the same results as converting each
+ *  keystroke in turn; which is fastest depends on the size of the
+ *  alphabet, the number of rotors, and the length of the message.
+ *  Machine.convert hands each run of keystrokes to the machine's engine,
+ *  except for those it traces or replays from a keystream, which it
+ *  makes one by one.  An EngineSelector chooses among the engines.
+ *  Engines keep no state, so one may serve any number of machines and
+ *  threads.
+ *  @author Albert Abudumijitiaji
+ */
+abstract class Engine {
+
+    /** An engine called NAME. */
+    Engine(String name) {
+        _name = name;
+    }
+
+    /** Convert the symbol indices SRC[FROM .. TO-1] into DST starting at
+     *  DSTPOS, as consecutive keystrokes of MACHINE, leaving MACHINE in
+     *  the state it would then be in.  MACHINE has its rotors and
+     *  plugboard set, and neither is tracing nor replaying a keystream.
+     *  SRC and DST may be the same array only if DSTPOS is FROM or the
+     *  ranges do not overlap; Machine.convert sees to that. */
+    abstract void convert(Machine machine, int[] src, int from, int to,
+                          int[] dst, int dstPos);
+
+    /** Return the name by which I am chosen. */
+    String name() {
+        return _name;
+    }
+
+    @Override
+    public String toString() {
+        return _name;
+    }
+
+    /** Return all the engines. */
+    static List<Engine> all() {
+        return ENGINES;
+    }
+
+    /** Return the engine called NAME. */
+    static Engine forName(String name) {
+        for (Engine engine : ENGINES) {
+            if (engine.name().equals(name)) {
+                return engine;
+            }
+        }
+        throw error("no engine named %s", name);
+    }
+
+    /** Return the engine likely to be fastest for MACHINE, with rotors
+     *  inserted, on a message of about LENGTH characters, judging from
+     *  sizes alone.  Fusing the rotors costs a pass of the whole alphabet
+     *  through all but the fast one before the first keystroke, and
+     *  again whenever a slower rotor moves, after which each keystroke
+     *  is a few lookups rather than two per rotor.  Both sides grow with
+     *  the number of rotors, so the balance turns on the size of the
+     *  alphabet: messages shorter than a FUSING_RATIO'th of it go through
+     *  the rotors' tables one by one, and longer ones are fused.  The
+     *  batch engine is chosen only by calibration. */
+    static Engine choose(Machine machine, long length) {
+        return length * FUSING_RATIO < machine.alphabet().size() ? TABLES
+            : FUSED;
+    }
+
+    /** Passes each keystroke through the Permutation of each rotor, as
+     *  the rotors themselves do; the reference against which the others
+     *  are measured. */
+    private static final class Rotors extends Engine {
+        /** The rotors engine. */
+        Rotors() {
+            super("rotors");
+        }
+
+        @Override
+        void convert(Machine machine, int[] src, int from, int to,
+                     int[] dst, int dstPos) {
+            Permutation plugboard = machine.plugboard();
+            int fast = machine.numRotors() - 1;
+            for (int i = from; i < to; i += 1) {
+                machine.advanceRotors();
+                int c = plugboard.permute(src[i]);
+                for (int k = fast; k >= 0; k -= 1) {
+                    c = machine.getRotor(k).convertForward(c,
+                                                           machine.setting(k));
+                }
+                for (int k = 1; k <= fast; k += 1) {
+                    c = machine.getRotor(k).convertBackward(c,
+                                                            machine.setting(k));
+                }
+                dst[dstPos + i - from] = plugboard.permute(c);
+            }
+        }
+    }
+
+    /** Passes each keystroke through dense tables of each rotor's wiring,
+     *  with no setup cost. */
+    private static final class Tables extends Engine {
+        /** The tables engine. */
+        Tables() {
+            super("tables");
+        }
+
+        @Override
+        void convert(Machine machine, int[] src, int from, int to,
+                     int[] dst, int dstPos) {
+            machine.convertDense(src, from, to, dst, dstPos);
+        }
+    }
+
+    /** Fuses all rotors but the fast one into one table, and converts the
+     *  keystrokes between movements of the slower rotors in tight
+     *  loops. */
+    private static final class Fused extends Engine {
+        /** The fused engine. */
+        Fused() {
+            super("fused");
+        }
+
+        @Override
+        void convert(Machine machine, int[] src, int from, int to,
+                     int[] dst, int dstPos) {
+            machine.convertFused(src, from, to, dst, dstPos);
+        }
+    }
+
+    /** Splits the message into up to LANES segments and runs them as the
+     *  lanes of a MultiKeyMachine, each lane starting where the machine
+     *  would be on reaching its segment.  The lanes are run in step, with
+     *  the Vector API when it is present.  Messages too short to give
+     *  each lane MIN_SEGMENT keystrokes are fused. */
+    private static final class Batch extends Engine {
+        /** The batch engine. */
+        Batch() {
+            super("batch");
+        }
+
+        @Override
+        void convert(Machine machine, int[] src, int from, int to,
+                     int[] dst, int dstPos) {
+            int length = to - from;
+            int lanes = Math.min(LANES, length / MIN_SEGMENT);
+            if (lanes < 2) {
+                FUSED.convert(machine, src, from, to, dst, dstPos);
+                return;
+            }
+            int steps = (length + lanes - 1) / lanes;
+            MultiKeyMachine batch = new MultiKeyMachine(machine, lanes);
+            Machine lane = machine.copy();
+            for (int l = 1; l < lanes; l += 1) {
+                lane.seek(steps);
+                batch.setRotors(l, lane.positions());
+            }
+            int[] text = new int[steps * lanes];
+            for (int i = 0; i < length; i += 1) {
+                text[i % steps * lanes + i / steps] = src[from + i];
+            }
+            batch.convert(text, text, steps);
+            for (int i = 0; i < length; i += 1) {
+                dst[dstPos + i] = text[i % steps * lanes + i / steps];
+            }
+            machine.seek(length);
+        }
+
+        /** Most lanes run at once. */
+        private static final int LANES = 16;
+        /** Fewest keystrokes per lane. */
+        private static final int MIN_SEGMENT = 256;
+    }
+
+    /** The engine passing keystrokes through each rotor's Permutation. */
+    static final Engine ROTORS = new Rotors();
+    /** The engine passing keystrokes through each rotor's table. */
+    static final Engine TABLES = new Tables();
+    /** The engine passing keystrokes through fused tables. */
+    static final Engine FUSED = new Fused();
+    /** The engine running segments of a message in step. */
+    static final Engine BATCH = new Batch();
+
+    /** Ratio of the alphabet size to the shortest message that choose
+     *  fuses. */
+    private static final int FUSING_RATIO = 4;
+
+    /** All the engines. */
+    private static final List<Engine> ENGINES =
+        List.of(ROTORS, TABLES, FUSED, BATCH);
+
+    /** My name. */
+    private final String _name;
+}
@@ -0,0 +1,107 @@
+package enigma;
+
+import java.util.List;
+import java.util.Random;
+
+/** Chooses the Engine with which a machine converts each section of its
+ *  input (a settings line and the messages after it).  Unless an engine
+ *  is forced, the choice is made from the message length and the sizes
+ *  of the machine by Engine.choose, or, once calibrate has been called,
+ *  by the engine found fastest on a message of similar length.
+ *  @author Albert Abudumijitiaji
+ */
+class EngineSelector {
+
+    /** A selector that always chooses FORCED, or that chooses for each
+     *  section if FORCED is null. */
+    EngineSelector(Engine forced) {
+        _forced = forced;
+    }
+
+    /** Return the engine I always choose, or null if I choose for each
+     *  section. */
+    Engine forced() {
+        return _forced;
+    }
+
+    /** Return the engine for MACHINE, with rotors inserted, to convert a
+     *  section of about LENGTH characters. */
+    Engine select(Machine machine, long length) {
+        if (_forced != null) {
+            return _forced;
+        }
+        if (_fastest != null) {
+            for (int i = 0; i < LENGTHS.length; i += 1) {
+                if (length <= LENGTHS[i] || i == LENGTHS.length - 1) {
+                    return _fastest[i];
+                }
+            }
+        }
+        return Engine.choose(machine, length);
+    }
+
+    /** Time each engine converting random messages of each of LENGTHS
+     *  with MACHINE, a configured machine, and remember the fastest for
+     *  each length.  The rotors used are the first assignment that
+     *  MACHINE allows, with no plugboard, which take as long as any
+     *  other.  MACHINE itself is unchanged.  Does nothing if an engine
+     *  is forced or MACHINE has no valid assignment of rotors. */
+    void calibrate(Machine machine) {
+        List<String[]> orders = machine.rotorOrders();
+        if (_forced != null || orders.isEmpty()) {
+            return;
+        }
+        Machine sample = machine.newMachine();
+        sample.insertRotors(orders.get(0));
+        sample.setPlugboard(new Permutation("", sample.alphabet()));
+        Random random = new Random(SEED);
+        Engine[] fastest = new Engine[LENGTHS.length];
+        for (int i = 0; i < LENGTHS.length; i += 1) {
+            int[] text = new int[LENGTHS[i]];
+            for (int j = 0; j < text.length; j += 1) {
+                text[j] = random.nextInt(sample.alphabet().size());
+            }
+            int[] result = new int[text.length];
+            long best = Long.MAX_VALUE;
+            for (Engine engine : Engine.all()) {
+                long time = time(sample, engine, text, result);
+                if (time < best) {
+                    best = time;
+                    fastest[i] = engine;
+                }
+            }
+        }
+        _fastest = fastest;
+    }
+
+    /** Return the least time in nanoseconds, over REPEATS runs, that
+     *  ENGINE takes to convert TEXT into RESULT with a copy of
+     *  MACHINE. */
+    private static long time(Machine machine, Engine engine, int[] text,
+                             int[] result) {
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < REPEATS; r += 1) {
+            Machine copy = machine.copy();
+            copy.setEngine(engine);
+            long start = System.nanoTime();
+            copy.convert(text, 0, text.length, result, 0);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    /** Message lengths timed by calibrate, in increasing order.  A
+     *  section is converted with the engine fastest on the first of
+     *  these that is at least its length, or on the last. */
+    private static final int[] LENGTHS = { 1 << 6, 1 << 10, 1 << 14 };
+    /** Number of times each engine is timed on each length. */
+    private static final int REPEATS = 5;
+    /** Seed of the random messages used by calibrate. */
+    private static final long SEED = 25;
+
+    /** The engine always chosen, or null. */
+    private final Engine _forced;
+    /** The fastest engine found by calibrate for each of LENGTHS, or
+     *  null if it has not been called. */
+    private Engine[] _fastest;
+}
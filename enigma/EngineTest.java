@@ -0,0 +1,146 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Engine and EngineSelector
+ *  classes.
+ *  @author Albert Abudumijitiaji
+ */
+public class EngineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Settings line used throughout, with rings and plugs. */
+    private static final String SETTINGS =
+        "* B Beta III IV I AXLE BCFG (YF) (ZH)";
+
+    /** Return a machine with the naval rotors B, Beta, III, IV, and I,
+     *  set up as SETTINGS says. */
+    private static Machine machine() {
+        Alphabet az = new Alphabet(UPPER_STRING);
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"), az)));
+        rotors.add(new FixedRotor("Beta",
+                                  new Permutation(NAVALA.get("Beta"), az)));
+        rotors.add(new MovingRotor("III",
+                                   new Permutation(NAVALA.get("III"), az),
+                                   "V"));
+        rotors.add(new MovingRotor("IV",
+                                   new Permutation(NAVALA.get("IV"), az),
+                                   "J"));
+        rotors.add(new MovingRotor("I",
+                                   new Permutation(NAVALA.get("I"), az),
+                                   "Q"));
+        Machine result = new Machine(az, 5, 3, rotors);
+        Main.applySettings(result, SETTINGS);
+        return result;
+    }
+
+    /** Return LENGTH random symbol indices of UPPER_STRING. */
+    private static int[] text(int length) {
+        Random random = new Random(length);
+        int[] result = new int[length];
+        for (int i = 0; i < length; i += 1) {
+            result[i] = random.nextInt(UPPER_STRING.length());
+        }
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testEnginesAgree() {
+        for (int length : new int[] { 0, 1, 25, 700, 9000 }) {
+            int[] text = text(length);
+            Machine reference = machine();
+            int[] expected = new int[length];
+            for (int i = 0; i < length; i += 1) {
+                expected[i] = reference.convert(text[i]);
+            }
+            for (Engine engine : Engine.all()) {
+                Machine mach = machine();
+                mach.setEngine(engine);
+                int[] result = new int[length + 3];
+                mach.convert(text, 0, length / 2, result, 3);
+                mach.convert(text, length / 2, length, result,
+                             3 + length / 2);
+                for (int i = 0; i < length; i += 1) {
+                    assertEquals(msg("testEnginesAgree", "%s at %d of %d",
+                                     engine, i, length),
+                                 expected[i], result[i + 3]);
+                }
+                assertArrayEquals(engine.name(), reference.positions(),
+                                  mach.positions());
+            }
+        }
+    }
+
+    @Test
+    public void testInPlace() {
+        int[] text = text(5000);
+        Machine reference = machine();
+        int[] expected = text.clone();
+        reference.convert(expected, 0, expected.length, expected, 0);
+        for (Engine engine : Engine.all()) {
+            Machine mach = machine();
+            mach.setEngine(engine);
+            int[] result = text.clone();
+            mach.convert(result, 0, result.length, result, 0);
+            assertArrayEquals(engine.name(), expected, result);
+        }
+    }
+
+    @Test
+    public void testChars() {
+        String msg = "FROMHISSHOULDERHIAWATHA TOOKTHECAMERAOFROSEWOOD";
+        for (Engine engine : Engine.all()) {
+            Machine mach = machine();
+            mach.setEngine(engine);
+            String cipher = mach.convert(msg);
+            Machine back = machine();
+            back.setEngine(engine);
+            assertEquals(engine.name(), msg.replace(" ", ""),
+                         back.convert(cipher));
+        }
+    }
+
+    @Test
+    public void testForName() {
+        for (Engine engine : Engine.all()) {
+            assertSame(engine, Engine.forName(engine.name()));
+        }
+        try {
+            Engine.forName("warp");
+            fail("unknown engine accepted");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testSelect() {
+        Machine mach = machine();
+        EngineSelector forced = new EngineSelector(Engine.ROTORS);
+        assertSame(Engine.ROTORS, forced.select(mach, 1));
+        assertSame(Engine.ROTORS, forced.select(mach, 1 << 20));
+        EngineSelector auto = new EngineSelector(null);
+        assertNull(auto.forced());
+        assertSame(Engine.FUSED, auto.select(mach, 10));
+        assertSame(Engine.TABLES, auto.select(mach, 0));
+        assertSame(Engine.FUSED, auto.select(mach, 1 << 20));
+        auto.calibrate(mach);
+        assertTrue(Engine.all().contains(auto.select(mach, 10)));
+        assertTrue(Engine.all().contains(auto.select(mach, 1 << 20)));
+        assertArrayEquals(machine().positions(), mach.positions());
+    }
+}
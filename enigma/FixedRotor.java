@@ -18,6 +18,11 @@ class FixedRotor extends Rotor {
         _perm = perm;
     }
 
+    @Override
+    Rotor rewired(Permutation perm) {
+        return new FixedRotor(_name, perm);
+    }
+
     @Override
     String notches() {
         return null;
@@ -0,0 +1,211 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import static enigma.EnigmaException.*;
+
+/** Writes converted message lines to a byte channel in groups of letters
+ *  separated by spaces, optionally wrapping long lines.  Output is
+ *  encoded into a reusable direct buffer, which is written to the channel
+ *  only when full or when flushed.  When the charset encodes each letter
+ *  of the alphabet and the space as a single byte, letters are encoded
+ *  by table lookup, a group at a time; otherwise they go through a
+ *  CharsetEncoder.
+ *  @author Albert Abudumijitiaji
+ */
+class GroupWriter {
+
+    /** A writer of messages in ALPHABET to OUT, encoded in CHARSET, in
+     *  groups of GROUP letters (GROUP > 0) with at most WIDTH letters per
+     *  output line (WIDTH > 0), or with no limit if WIDTH is 0. */
+    GroupWriter(WritableByteChannel out, Alphabet alphabet, Charset charset,
+                int group, int width) {
+        if (group <= 0 || width < 0) {
+            throw error("bad group size %d or line width %d", group, width);
+        }
+        _out = out;
+        _group = group;
+        _width = width == 0 ? Long.MAX_VALUE : width;
+        _encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _newline = System.lineSeparator().getBytes(charset);
+        _codes = byteCodes(alphabet, charset);
+        _chars = _codes == null ? CharBuffer.allocate(BUFFER_SIZE) : null;
+    }
+
+    /** Write the chars of MSG, which must be letters of my alphabet,
+     *  continuing the current output line. */
+    void write(CharBuffer msg) {
+        if (_codes == null) {
+            writeChars(msg);
+            return;
+        }
+        ByteBuffer buffer = _buffer;
+        byte[] codes = _codes;
+        while (msg.hasRemaining()) {
+            if (buffer.remaining() <= _newline.length) {
+                drain();
+            }
+            if (_column == _width) {
+                buffer.put(_newline);
+                _column = 0;
+                _inGroup = 0;
+            } else if (_inGroup == _group) {
+                buffer.put(SPACE);
+                _inGroup = 0;
+            }
+            int run = (int) Math.min(Math.min(_group - _inGroup,
+                                              _width - _column),
+                                     Math.min(msg.remaining(),
+                                              buffer.remaining()));
+            for (int i = 0; i < run; i += 1) {
+                buffer.put(codes[msg.get()]);
+            }
+            _inGroup += run;
+            _column += run;
+        }
+    }
+
+    /** End the current output line. */
+    void endLine() {
+        if (_codes == null) {
+            putChars(System.lineSeparator());
+        } else {
+            if (_buffer.remaining() < _newline.length) {
+                drain();
+            }
+            _buffer.put(_newline);
+        }
+        _column = 0;
+        _inGroup = 0;
+    }
+
+    /** Write everything written to me so far to my channel. */
+    void flush() {
+        if (_codes == null) {
+            encode(true);
+        }
+        drain();
+    }
+
+    /** Return a table giving the byte that encodes each letter of
+     *  ALPHABET in CHARSET, indexed by char, or null if some letter or
+     *  the space does not have a single-byte encoding. */
+    private static byte[] byteCodes(Alphabet alphabet, Charset charset) {
+        if (!alphabet.bmp() || " ".getBytes(charset).length != 1
+            || " ".getBytes(charset)[0] != SPACE) {
+            return null;
+        }
+        int max = 0;
+        for (int i = 0; i < alphabet.size(); i += 1) {
+            max = Math.max(max, alphabet.codePoint(i));
+        }
+        byte[] result = new byte[max + 1];
+        for (int i = 0; i < alphabet.size(); i += 1) {
+            char c = alphabet.toChar(i);
+            byte[] code = String.valueOf(c).getBytes(charset);
+            if (code.length != 1
+                || !new String(code, charset).equals(String.valueOf(c))) {
+                return null;
+            }
+            result[c] = code[0];
+        }
+        return result;
+    }
+
+    /** Write MSG as write does, through my encoder. */
+    private void writeChars(CharBuffer msg) {
+        while (msg.hasRemaining()) {
+            char c = msg.get();
+            if (!Character.isLowSurrogate(c)) {
+                if (_column == _width) {
+                    putChars(System.lineSeparator());
+                    _column = 0;
+                    _inGroup = 0;
+                } else if (_inGroup == _group) {
+                    putChars(" ");
+                    _inGroup = 0;
+                }
+                _inGroup += 1;
+                _column += 1;
+            }
+            if (!_chars.hasRemaining()) {
+                encode(false);
+            }
+            _chars.put(c);
+        }
+    }
+
+    /** Append TEXT to the chars awaiting my encoder. */
+    private void putChars(String text) {
+        for (int i = 0; i < text.length(); i += 1) {
+            if (!_chars.hasRemaining()) {
+                encode(false);
+            }
+            _chars.put(text.charAt(i));
+        }
+    }
+
+    /** Encode the chars awaiting my encoder into my buffer, leaving any
+     *  trailing high surrogate unless ALL. */
+    private void encode(boolean all) {
+        _chars.flip();
+        while (true) {
+            CoderResult result = _encoder.encode(_chars, _buffer, all);
+            if (!result.isOverflow()) {
+                break;
+            }
+            drain();
+        }
+        _chars.compact();
+    }
+
+    /** Write the contents of my buffer to my channel and empty it. */
+    private void drain() {
+        _buffer.flip();
+        try {
+            while (_buffer.hasRemaining()) {
+                _out.write(_buffer);
+            }
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        }
+        _buffer.clear();
+    }
+
+    /** The encoding of a space in every single-byte charset handled by
+     *  table lookup. */
+    private static final byte SPACE = ' ';
+    /** Size of my buffers. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Destination of output. */
+    private final WritableByteChannel _out;
+    /** Number of letters per group. */
+    private final int _group;
+    /** Most letters per output line. */
+    private final long _width;
+    /** Encoder used when _codes is null. */
+    private final CharsetEncoder _encoder;
+    /** Encoding of a line separator. */
+    private final byte[] _newline;
+    /** Single-byte encodings of the letters, indexed by char, or null if
+     *  they need _encoder. */
+    private final byte[] _codes;
+    /** Chars awaiting _encoder, or null if _codes is not. */
+    private final CharBuffer _chars;
+    /** Encoded output not yet written to _out. */
+    private final ByteBuffer _buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    /** Number of letters on the current output line. */
+    private long _column;
+    /** Number of letters in the current group. */
+    private int _inGroup;
+}
@@ -0,0 +1,80 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the GroupWriter class.
+ *  @author Albert Abudumijitiaji
+ */
+public class GroupWriterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return what a GroupWriter for ALPHA in CHARSET, with group size
+     *  GROUP and line width WIDTH, writes for LINES, each given in
+     *  pieces. */
+    private String write(Alphabet alpha, Charset charset, int group,
+                         int width, String[]... lines) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GroupWriter out = new GroupWriter(Channels.newChannel(bytes), alpha,
+                                          charset, group, width);
+        for (String[] line : lines) {
+            for (String piece : line) {
+                out.write(CharBuffer.wrap(piece));
+            }
+            out.endLine();
+        }
+        out.flush();
+        return new String(bytes.toByteArray(), charset)
+            .replace(System.lineSeparator(), "\n");
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testGroups() {
+        Alphabet alpha = new Alphabet();
+        Charset ascii = StandardCharsets.US_ASCII;
+        assertEquals("HELLO WORLD\nABCDE FG\n\n",
+                     write(alpha, ascii, 5, 0,
+                           new String[] {"HEL", "LOWOR", "LD"},
+                           new String[] {"ABCDEFG"}, new String[0]));
+        assertEquals("ABC DEF G\n",
+                     write(alpha, ascii, 3, 0, new String[] {"ABCDEFG"}));
+        assertEquals("ABCD E\nFGHI J\nK\n",
+                     write(alpha, ascii, 4, 5,
+                           new String[] {"ABCDE", "FGHIJK"}));
+    }
+
+    @Test
+    public void testLongLine() {
+        String text = "ABCDEFGHIJ".repeat(20000);
+        String result = write(new Alphabet(), StandardCharsets.US_ASCII,
+                              5, 0, new String[] {text});
+        assertEquals(text.length() / 5 * 6, result.length());
+        assertEquals(text, result.replace(" ", "").replace("\n", ""));
+    }
+
+    @Test
+    public void testEncoder() {
+        Alphabet alpha = new Alphabet("AB\u00c4\u00d6");
+        assertEquals("AB\u00c4 \u00d6A\n",
+                     write(alpha, StandardCharsets.UTF_8, 3, 0,
+                           new String[] {"AB\u00c4\u00d6A"}));
+        assertEquals("AB\u00c4 \u00d6A\n",
+                     write(alpha, StandardCharsets.ISO_8859_1, 3, 0,
+                           new String[] {"AB\u00c4\u00d6A"}));
+        assertEquals("AB\nBA\n",
+                     write(alpha, StandardCharsets.UTF_16BE, 5, 2,
+                           new String[] {"ABBA"}));
+    }
+}
@@ -0,0 +1,166 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import static enigma.EnigmaException.*;
+
+/** Reads enigma input (settings lines and message lines) from a byte
+ *  channel in fixed-size blocks, decoding it into a reusable char buffer.
+ *  Message lines are passed on in pieces as they arrive, so memory use
+ *  does not depend on line length.  A line is a settings line if its
+ *  first non-blank character is '*'.
+ *  @author Albert Abudumijitiaji
+ */
+class InputReader {
+
+    /** Receives the input, in order. */
+    interface Handler {
+        /** Process the settings line LINE. */
+        void settings(String line);
+
+        /** Process the next piece of a message line: the remaining chars
+         *  of CHUNK, which must all be consumed.  A line's pieces start at
+         *  its first non-blank character and never include its line
+         *  terminator. */
+        void message(CharBuffer chunk);
+
+        /** Finish the current message line. */
+        void endMessage();
+    }
+
+    /** A reader of IN, which is encoded in CHARSET. */
+    InputReader(ReadableByteChannel in, Charset charset) {
+        _in = in;
+        _decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /** Record the reading and decoding of each block in STATS. */
+    void setStats(Stats stats) {
+        _stats = stats;
+    }
+
+    /** Read all of my input, passing it to HANDLER. */
+    void read(Handler handler) {
+        ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        boolean eof = false, done = false;
+        try {
+            while (!done) {
+                long start = _stats.start(Stats.Stage.INPUT);
+                int count = 0;
+                if (!eof) {
+                    count = _in.read(bytes);
+                    eof = count < 0;
+                }
+                bytes.flip();
+                CoderResult result = _decoder.decode(bytes, chars, eof);
+                done = eof && result.isUnderflow();
+                if (done) {
+                    _decoder.flush(chars);
+                }
+                bytes.compact();
+                _stats.record(Stats.Stage.INPUT, start, Math.max(count, 0));
+                chars.flip();
+                scan(chars, handler, done);
+                chars.compact();
+            }
+        } catch (IOException excp) {
+            throw error("could not read input: %s", excp.getMessage());
+        }
+        if (_state == SETTINGS) {
+            handler.settings(_settings.toString());
+        } else if (_state == MESSAGE || _midLine) {
+            handler.endMessage();
+        }
+    }
+
+    /** Pass the complete lines and line pieces in CHARS to HANDLER,
+     *  leaving any unconsumed chars in CHARS.  EOF is true iff no more
+     *  input follows. */
+    private void scan(CharBuffer chars, Handler handler, boolean eof) {
+        while (chars.hasRemaining()) {
+            int pos = chars.position();
+            if (_state == LINE_START) {
+                char c = chars.get(pos);
+                if (c == '\n') {
+                    chars.position(pos + 1);
+                    _midLine = false;
+                    handler.endMessage();
+                } else if (Character.isWhitespace(c)) {
+                    chars.position(pos + 1);
+                    _midLine = true;
+                } else {
+                    _state = c == '*' ? SETTINGS : MESSAGE;
+                }
+                continue;
+            }
+            int limit = chars.limit();
+            int end = pos;
+            while (end < limit && chars.get(end) != '\n') {
+                end += 1;
+            }
+            if (end == limit && !eof && _state == MESSAGE
+                && Character.isHighSurrogate(chars.get(end - 1))) {
+                end -= 1;
+                if (end == pos) {
+                    return;
+                }
+            }
+            if (_state == SETTINGS) {
+                if (_settings.length() + end - pos > MAX_SETTINGS) {
+                    throw error("settings line too long");
+                }
+                _settings.append(chars.array(), chars.arrayOffset() + pos,
+                                 end - pos);
+            } else {
+                chars.limit(end);
+                handler.message(chars);
+                chars.limit(limit);
+            }
+            chars.position(end);
+            if (end < limit && chars.get(end) == '\n') {
+                chars.position(end + 1);
+                if (_state == SETTINGS) {
+                    handler.settings(_settings.toString());
+                    _settings.setLength(0);
+                } else {
+                    handler.endMessage();
+                }
+                _state = LINE_START;
+                _midLine = false;
+            } else if (end < limit) {
+                return;
+            }
+        }
+    }
+
+    /** Scanner states: before the first non-blank character of a line,
+     *  in a settings line, and in a message line. */
+    private static final int LINE_START = 0, SETTINGS = 1, MESSAGE = 2;
+    /** Size of the byte and char buffers. */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Longest settings line accepted. */
+    private static final int MAX_SETTINGS = 1 << 20;
+
+    /** Source of input. */
+    private final ReadableByteChannel _in;
+    /** Decoder for the input's charset. */
+    private final CharsetDecoder _decoder;
+    /** Current scanner state. */
+    private int _state = LINE_START;
+    /** True iff some of the current line has been consumed. */
+    private boolean _midLine;
+    /** The part of the current settings line read so far. */
+    private final StringBuilder _settings = new StringBuilder();
+    /** Statistics on reading. */
+    private Stats _stats = Stats.OFF;
+}
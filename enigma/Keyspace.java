@@ -0,0 +1,312 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import ucb.util.CommandArgs;
+
+import static java.nio.file.StandardOpenOption.*;
+import static enigma.EnigmaException.*;
+
+/** An enumeration of the output of every rotor order and every setting
+ *  of the rotors other than the reflector on a fixed text, written to a
+ *  file.
+ *
+ *  Keys are numbered in order: by rotor order (as Machine.rotorOrders
+ *  lists them), then by the settings of slots 1 .. numRotors()-1 read
+ *  as a base-N number, N being the alphabet size.  The file is a header
+ *  followed by one record per key, in key order, holding the symbol
+ *  index of each output character in WIDTH bytes (1 if N <= 256, else
+ *  2).  The header consists of big-endian ints MAGIC, VERSION, the
+ *  number of rotor slots, N, the text length, WIDTH, the number of rotor
+ *  orders, and the offset of the first record, followed by each order's
+ *  rotor names, each as a short byte count and UTF-8 bytes.
+ *
+ *  The work is split into units, each a rotor order with a given
+ *  setting of its leftmost rotor, run as tasks on a ForkJoinPool.  A
+ *  unit is a contiguous range of records, written through its own
+ *  mapping of the file.  Within a unit, the keys are run LANES at a
+ *  time on a MultiKeyMachine, whose settings are produced by counting
+ *  from one key to the next.
+ *  @author Albert Abudumijitiaji
+ */
+class Keyspace {
+
+    /** Enumerate the keyspace specified by ARGS, where ARGS.length is 2:
+     *  ARGS[0] names a configuration file (or image) describing the
+     *  machine and ARGS[1] the output file.  With --text=TEXT, each key
+     *  enciphers TEXT; otherwise it enciphers --length=L (default 16)
+     *  copies of the first character of the alphabet.  Exits with code
+     *  1 on errors. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--length=(\\d+) --text=(.+) --=(.*){2}",
+                                args);
+            if (!options.ok()) {
+                throw error("Usage: java enigma.Keyspace [--length=L] "
+                            + "[--text=TEXT] CONFIG OUTPUT");
+            }
+            List<String> names = options.get("--");
+            Machine machine = Main.configure(names.get(0));
+            String text;
+            if (options.contains("--text")) {
+                text = options.getFirst("--text");
+            } else {
+                int length = options.contains("--length")
+                    ? Integer.parseInt(options.getFirst("--length")) : 16;
+                text = new String(Character.toChars(
+                    machine.alphabet().codePoint(0))).repeat(length);
+            }
+            Keyspace keyspace = new Keyspace(machine, text);
+            long start = System.nanoTime();
+            keyspace.write(Paths.get(names.get(1)),
+                           ForkJoinPool.commonPool());
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.err.printf("%d keys in %.1f s (%.0f keys/s)%n",
+                              keyspace.keys(), seconds,
+                              keyspace.keys() / seconds);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** The keyspace of the rotor orders available to MACHINE, each key
+     *  enciphering TEXT (whose whitespace is ignored) with no plugboard
+     *  pairs. */
+    Keyspace(Machine machine, String text) {
+        _machine = machine;
+        _alphabet = machine.alphabet();
+        _text = text.codePoints().filter(c -> !Character.isWhitespace(c))
+            .map(this::symbol).toArray();
+        if (_text.length == 0) {
+            throw error("empty text");
+        }
+        if (_alphabet.size() > 1 << Short.SIZE) {
+            throw error("alphabet too large for keyspace records");
+        }
+        _width = _alphabet.size() <= 1 << Byte.SIZE ? 1 : 2;
+        _orders = machine.rotorOrders();
+        int n = _alphabet.size();
+        long perUnit = 1;
+        for (int k = 2; k < machine.numRotors(); k += 1) {
+            perUnit *= n;
+        }
+        _unitKeys = perUnit;
+        if (_unitKeys * recordSize() > Integer.MAX_VALUE) {
+            throw error("too many keys per rotor order and setting");
+        }
+    }
+
+    /** Return the rotor orders enumerated. */
+    List<String[]> orders() {
+        return _orders;
+    }
+
+    /** Return the number of keys enumerated. */
+    long keys() {
+        return _orders.size() * _alphabet.size() * _unitKeys;
+    }
+
+    /** Return the size in bytes of each record. */
+    int recordSize() {
+        return _text.length * _width;
+    }
+
+    /** Return the settings line for key KEY, as in the input to Main,
+     *  with no plugboard pairs. */
+    String settings(long key) {
+        int n = _alphabet.size();
+        int numRotors = _machine.numRotors();
+        long perOrder = n * _unitKeys;
+        StringBuilder result = new StringBuilder("*");
+        for (String name : _orders.get((int) (key / perOrder))) {
+            result.append(' ').append(name);
+        }
+        result.append(' ');
+        long posns = key % perOrder;
+        char[] setting = new char[numRotors - 1];
+        for (int i = setting.length - 1; i >= 0; i -= 1) {
+            setting[i] = _alphabet.toChar((int) (posns % n));
+            posns /= n;
+        }
+        return result.append(setting).toString();
+    }
+
+    /** Write the records of all keys, with the header, to the file
+     *  OUTPUT, dividing the work among the threads of POOL. */
+    void write(Path output, ForkJoinPool pool) {
+        try (FileChannel channel = FileChannel.open(output, CREATE, READ,
+                                                    WRITE,
+                                                    TRUNCATE_EXISTING)) {
+            ByteBuffer header = header();
+            _dataOffset = header.remaining();
+            channel.write(header, 0);
+            _channel = channel;
+            pool.invoke(new Enumeration(0, _orders.size()
+                                        * _alphabet.size()));
+        } catch (IOException excp) {
+            throw error("could not write %s: %s", output,
+                        excp.getMessage());
+        } finally {
+            _channel = null;
+        }
+    }
+
+    /** Return my file header, as described above, ready to be
+     *  written. */
+    private ByteBuffer header() {
+        int size = HEADER_INTS * Integer.BYTES;
+        for (String[] order : _orders) {
+            for (String name : order) {
+                size += Short.BYTES
+                    + name.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        size = (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+        ByteBuffer result = ByteBuffer.allocate(size);
+        result.putInt(MAGIC).putInt(VERSION)
+            .putInt(_machine.numRotors()).putInt(_alphabet.size())
+            .putInt(_text.length).putInt(_width).putInt(_orders.size())
+            .putInt(size);
+        for (String[] order : _orders) {
+            for (String name : order) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                result.putShort((short) bytes.length).put(bytes);
+            }
+        }
+        result.rewind();
+        return result;
+    }
+
+    /** Return the index of code point CP in my alphabet. */
+    private int symbol(int cp) {
+        int c = _alphabet.indexOf(cp);
+        if (c < 0) {
+            throw error("character %s not in alphabet",
+                        new String(Character.toChars(cp)));
+        }
+        return c;
+    }
+
+    /** A task writing the units [_lo .. _hi-1], where unit U is rotor
+     *  order U / N with its leftmost rotor at setting U % N. */
+    private final class Enumeration extends RecursiveAction {
+        /** A task for units LO .. HI-1. */
+        Enumeration(int lo, int hi) {
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > 1) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Enumeration(_lo, mid),
+                          new Enumeration(mid, _hi));
+            } else {
+                try {
+                    writeUnit(_lo);
+                } catch (IOException excp) {
+                    throw error("could not write keyspace: %s",
+                                excp.getMessage());
+                }
+            }
+        }
+
+        /** Range of units. */
+        private final int _lo, _hi;
+    }
+
+    /** Write the records of UNIT through a mapping of my file. */
+    private void writeUnit(int unit) throws IOException {
+        int n = _alphabet.size();
+        int len = _text.length;
+        long bytes = _unitKeys * recordSize();
+        MappedByteBuffer out =
+            _channel.map(FileChannel.MapMode.READ_WRITE,
+                         _dataOffset + unit * bytes, bytes);
+        out.order(ByteOrder.BIG_ENDIAN);
+        Machine proto = _machine.newMachine();
+        proto.insertRotors(_orders.get(unit / n));
+        proto.setPlugboard(new Permutation("", _alphabet));
+        int lanes = (int) Math.min(LANES, _unitKeys);
+        MultiKeyMachine multi = new MultiKeyMachine(proto, lanes);
+        int[] src = new int[len * lanes];
+        for (int t = 0; t < len; t += 1) {
+            for (int l = 0; l < lanes; l += 1) {
+                src[t * lanes + l] = _text[t];
+            }
+        }
+        int[] dst = new int[src.length];
+        int[] posns = new int[proto.numRotors() - 1];
+        posns[0] = unit % n;
+        for (long key = 0; key < _unitKeys; key += lanes) {
+            int batch = (int) Math.min(lanes, _unitKeys - key);
+            for (int l = 0; l < batch; l += 1) {
+                multi.setRotors(l, posns);
+                increment(posns, n);
+            }
+            multi.convert(src, dst, len);
+            for (int l = 0; l < batch; l += 1) {
+                for (int t = 0; t < len; t += 1) {
+                    if (_width == 1) {
+                        out.put((byte) dst[t * lanes + l]);
+                    } else {
+                        out.putShort((short) dst[t * lanes + l]);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Advance POSNS[1 ..] to the next setting in counting order, modulo
+     *  N, leaving POSNS[0] (the unit's leftmost setting) alone. */
+    private static void increment(int[] posns, int n) {
+        for (int i = posns.length - 1; i > 0; i -= 1) {
+            posns[i] += 1;
+            if (posns[i] < n) {
+                return;
+            }
+            posns[i] = 0;
+        }
+    }
+
+    /** Value of the first int of a keyspace file ("ENKS"). */
+    static final int MAGIC = 0x454e4b53;
+    /** Version of the file format. */
+    static final int VERSION = 1;
+    /** Number of ints at the start of the header. */
+    private static final int HEADER_INTS = 8;
+    /** Alignment of the first record. */
+    private static final int ALIGNMENT = 8;
+    /** Number of keys run at once by each thread. */
+    private static final int LANES = 1024;
+
+    /** Machine whose rotor orders are enumerated. */
+    private final Machine _machine;
+    /** Alphabet of _machine. */
+    private final Alphabet _alphabet;
+    /** Symbol indices of the text each key enciphers. */
+    private final int[] _text;
+    /** Bytes per output symbol. */
+    private final int _width;
+    /** Rotor orders enumerated. */
+    private final List<String[]> _orders;
+    /** Number of keys in each unit. */
+    private final long _unitKeys;
+    /** File being written, during write. */
+    private FileChannel _channel;
+    /** Offset of the first record in _channel. */
+    private long _dataOffset;
+}
@@ -0,0 +1,88 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Keyspace class.
+ *  @author Albert Abudumijitiaji
+ */
+public class KeyspaceTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTS ***** */
+
+    private static final Alphabet AZ = new Alphabet(TestUtils.UPPER_STRING);
+
+    /** Return a machine with three slots, two pawls, reflector B, and
+     *  rotors I, II, and III. */
+    private Machine machine() {
+        HashMap<String, String> nav = TestUtils.NAVALA;
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(nav.get("B"), AZ)));
+        rotors.add(new MovingRotor("I", new Permutation(nav.get("I"), AZ),
+                                   "Q"));
+        rotors.add(new MovingRotor("II", new Permutation(nav.get("II"), AZ),
+                                   "E"));
+        rotors.add(new MovingRotor("III",
+                                   new Permutation(nav.get("III"), AZ),
+                                   "V"));
+        return new Machine(AZ, 3, 2, rotors);
+    }
+
+    @Test
+    public void testSettings() {
+        Keyspace keyspace = new Keyspace(machine(), "HELLO");
+        assertEquals(6 * 26 * 26, keyspace.keys());
+        assertEquals(5, keyspace.recordSize());
+        String[] first = keyspace.orders().get(0);
+        assertEquals("* " + String.join(" ", first) + " AA",
+                     keyspace.settings(0));
+        assertEquals("* " + String.join(" ", first) + " BC",
+                     keyspace.settings(28));
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        String text = "HELLOWORLD";
+        Keyspace keyspace = new Keyspace(machine(), text);
+        Path file = Files.createTempFile("keyspace", ".bin");
+        try {
+            keyspace.write(file, ForkJoinPool.commonPool());
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+            assertEquals(Keyspace.MAGIC, data.getInt(0));
+            assertEquals(10, data.getInt(16));
+            assertEquals(1, data.getInt(20));
+            int offset = data.getInt(28);
+            assertEquals(offset + keyspace.keys() * 10, data.capacity());
+            for (long key = 0; key < keyspace.keys(); key += 1) {
+                String[] line = keyspace.settings(key).split(" ");
+                Machine mach = machine();
+                mach.insertRotors(Arrays.copyOfRange(line, 1, 4));
+                mach.setRotors(line[4]);
+                mach.setPlugboard(new Permutation("", AZ));
+                String expected = mach.convert(text);
+                for (int t = 0; t < 10; t += 1) {
+                    assertEquals("key " + key, AZ.toInt(expected.charAt(t)),
+                                 data.get((int) (offset + key * 10 + t)));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package enigma;
+
+/** The substitutions performed by a machine on each of a fixed number of
+ *  keystrokes following some setting, together with the rotor settings
+ *  it reaches afterwards.  Replaying a Keystream is equivalent to running
+ *  the machine, at the cost of one table lookup per character.
+ *  Keystreams are immutable and may be shared between threads.
+ *  @author Albert Abudumijitiaji
+ */
+class Keystream {
+
+    /** A keystream over an alphabet of SIZE characters covering STEPS
+     *  keystrokes.  TABLES holds, at STEP * SIZE + C, the result of the
+     *  (STEP+1)-th keystroke on index C.  ENDSETTINGS holds the settings
+     *  of rotors 1 .. numRotors()-1 after the last of those keystrokes. */
+    Keystream(int size, int steps, Slots tables, int[] endSettings) {
+        _size = size;
+        _steps = steps;
+        _tables = tables;
+        _endSettings = endSettings;
+    }
+
+    /** Return the number of keystrokes I cover. */
+    int steps() {
+        return _steps;
+    }
+
+    /** Return the result of keystroke number STEP (numbering from 0)
+     *  on the character with index C. */
+    int convert(int step, int c) {
+        return _tables.get(step * _size + c);
+    }
+
+    /** Return the setting of rotor K, for 1 <= K < numRotors(), once
+     *  all my keystrokes have been made. */
+    int endSetting(int k) {
+        return _endSettings[k - 1];
+    }
+
+    /** Size of the alphabet. */
+    private final int _size;
+    /** Number of keystrokes covered. */
+    private final int _steps;
+    /** Per-keystroke substitution tables, one after the other. */
+    private final Slots _tables;
+    /** Rotor settings after the last keystroke. */
+    private final int[] _endSettings;
+}
@@ -0,0 +1,111 @@
+package enigma;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/** A size-bounded, least-recently-used cache of Keystreams, keyed by the
+ *  full machine setting (rotor order, rotor settings, and plugboard).
+ *  The cache is split into independently locked stripes, so it may be
+ *  shared by any number of threads.
+ *
+ *  Building a keystream costs many times more than running the machine
+ *  over a short message, so a key is only worth building the first
+ *  time it repeats.  The first lookup of a key therefore just records
+ *  it; the second builds and stores its keystream.
+ *  @author Albert Abudumijitiaji
+ */
+class KeystreamCache {
+
+    /** A cache holding at most about CAPACITY keys. */
+    KeystreamCache(int capacity) {
+        int perStripe = Math.max(1, (capacity + STRIPES - 1) / STRIPES);
+        _stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i += 1) {
+            _stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    /** Return the keystream cached for KEY.  If there is none, and KEY
+     *  has been looked up before, compute it as BUILD.apply(KEY), cache
+     *  it, and return it.  Otherwise, remember KEY and return null. */
+    Keystream get(String key, Function<String, Keystream> build) {
+        Stripe stripe = _stripes[(key.hashCode() * SPREAD) >>> STRIPE_SHIFT];
+        synchronized (stripe) {
+            Keystream result = stripe.get(key);
+            if (result != null) {
+                _hits.increment();
+                return result;
+            }
+            _misses.increment();
+            if (!stripe.containsKey(key)) {
+                stripe.put(key, null);
+                return null;
+            }
+        }
+        Keystream result = build.apply(key);
+        synchronized (stripe) {
+            stripe.put(key, result);
+        }
+        return result;
+    }
+
+    /** Return the number of lookups that found a keystream. */
+    long hits() {
+        return _hits.sum();
+    }
+
+    /** Return the number of lookups that did not. */
+    long misses() {
+        return _misses.sum();
+    }
+
+    /** Return the number of keys dropped to make room for others. */
+    long evictions() {
+        return _evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("keystream cache: %d hits, %d misses, "
+                             + "%d evictions", hits(), misses(),
+                             evictions());
+    }
+
+    /** One independently locked part of the cache.  A key mapped to
+     *  null has been seen once but has no keystream yet. */
+    private final class Stripe extends LinkedHashMap<String, Keystream> {
+        /** A stripe holding at most CAPACITY keys. */
+        Stripe(int capacity) {
+            super(capacity, LOAD_FACTOR, true);
+            _capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Keystream> e) {
+            if (size() > _capacity) {
+                _evictions.increment();
+                return true;
+            }
+            return false;
+        }
+
+        /** Maximum number of keys. */
+        private final int _capacity;
+    }
+
+    /** Number of stripes (a power of two), and the shift that reduces a
+     *  32-bit hash to a stripe number. */
+    private static final int STRIPES = 16, STRIPE_SHIFT = 28;
+    /** Multiplier that spreads key hashes over the stripes. */
+    private static final int SPREAD = 0x9e3779b9;
+    /** Load factor of each stripe's table. */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /** The stripes. */
+    private final Stripe[] _stripes;
+    /** Event counters. */
+    private final LongAdder _hits = new LongAdder(),
+        _misses = new LongAdder(), _evictions = new LongAdder();
+}
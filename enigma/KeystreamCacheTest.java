@@ -0,0 +1,69 @@
+package enigma;
+
+import java.util.HashMap;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the KeystreamCache class.
+ *  @author Albert Abudumijitiaji
+ */
+public class KeystreamCacheTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    private static final Alphabet AZ = new Alphabet(TestUtils.UPPER_STRING);
+
+    private static final HashMap<String, Rotor> ROTORS = new HashMap<>();
+
+    static {
+        HashMap<String, String> nav = TestUtils.NAVALA;
+        ROTORS.put("B", new Reflector("B", new Permutation(nav.get("B"), AZ)));
+        ROTORS.put("Beta",
+                new FixedRotor("Beta",
+                        new Permutation(nav.get("Beta"), AZ)));
+        ROTORS.put("III",
+                new MovingRotor("III",
+                        new Permutation(nav.get("III"), AZ), "VC"));
+        ROTORS.put("IV",
+                new MovingRotor("IV", new Permutation(nav.get("IV"), AZ),
+                        "JZ"));
+        ROTORS.put("I",
+                new MovingRotor("I", new Permutation(nav.get("I"), AZ),
+                        "Q"));
+    }
+
+    private static final String[] ROTORS1 = { "B", "Beta", "III", "IV", "I" };
+    private static final String SETTING1 = "AXLE";
+
+    /** Return a machine with rotors ROTORS1 inserted and set to
+     *  SETTING1, and no plugboard. */
+    private Machine mach1() {
+        Machine mach = new Machine(AZ, 5, 3, ROTORS.values());
+        mach.insertRotors(ROTORS1);
+        mach.setRotors(SETTING1);
+        return mach;
+    }
+
+    @Test
+    public void testKeystreamReplay() {
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        String expected = mach.convert(msg);
+
+        Machine replay = mach1();
+        replay.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        KeystreamCache cache = new KeystreamCache(4);
+        assertNull(cache.get("k", k -> replay.keystream(10)));
+        replay.useKeystream(cache.get("k", k -> replay.keystream(10)));
+        assertEquals(expected, replay.convert(msg));
+        assertEquals(0, cache.hits());
+        assertEquals(2, cache.misses());
+    }
+}
@@ -1,6 +1,12 @@
 package enigma;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 
 import static enigma.EnigmaException.*;
 
@@ -14,14 +20,50 @@ class Machine {
      *  available rotors. */
     Machine(Alphabet alpha, int numRotors, int pawls,
             Collection<Rotor> allRotors) {
-        _alphabet = alpha;
-        _numRotors = numRotors;
-        _numPawls = pawls;
-        _rotors.addAll(allRotors);
-        _allRotors.addAll(allRotors);
-        if (numRotors <= 1) {
-            throw new EnigmaException("No rotors found.");
+        this(new Config(alpha, numRotors, pawls, allRotors));
+    }
+
+    /** A new Enigma machine with configuration CONFIG and no rotors
+     *  inserted. */
+    private Machine(Config config) {
+        _config = config;
+        _alphabet = config.alphabet;
+        _numRotors = config.numRotors;
+        _numPawls = config.numPawls;
+        _settings = new int[_numRotors];
+    }
+
+    /** The fixed description of a family of machines: its alphabet, rotor
+     *  slots, pawls, and available rotors, indexed by name.  Rotors keep
+     *  no state on behalf of machines, so this is immutable and any
+     *  number of machines may share it. */
+    private static final class Config {
+        /** A configuration with alphabet ALPHA, NUMROTORS rotor slots,
+         *  PAWLS pawls, and available rotors ALLROTORS. */
+        Config(Alphabet alpha, int numRotors, int pawls,
+               Collection<Rotor> allRotors) {
+            if (numRotors <= 1) {
+                throw new EnigmaException("No rotors found.");
+            }
+            alphabet = alpha;
+            this.numRotors = numRotors;
+            numPawls = pawls;
+            this.allRotors = new ArrayList<>(allRotors);
+            for (Rotor r : allRotors) {
+                rotorsByName.putIfAbsent(r.name(), r);
+            }
         }
+
+        /** Common alphabet of the rotors. */
+        private final Alphabet alphabet;
+        /** Total number of rotor slots. */
+        private final int numRotors;
+        /** Number of pawls. */
+        private final int numPawls;
+        /** All available rotors. */
+        private final List<Rotor> allRotors;
+        /** The available rotors, by name. */
+        private final HashMap<String, Rotor> rotorsByName = new HashMap<>();
     }
 
     /** Return the number of rotor slots I have. */
@@ -35,10 +77,55 @@ class Machine {
     }
 
     /** Return Rotor #K, where Rotor #0 is the reflector, and Rotor
-     *  #(numRotors()-1) is the fast Rotor.  Modifying this Rotor has
-     *  undefined results. */
+     *  #(numRotors()-1) is the fast Rotor.  Rotors may be shared with
+     *  other machines: my rotor settings are kept by me (see setting),
+     *  not by the Rotor.  Modifying this Rotor has undefined results. */
     Rotor getRotor(int k) {
-        return _rotors.get(k);
+        if (_slots == null) {
+            return _config.allRotors.get(k);
+        }
+        return _slots[k];
+    }
+
+    /** Return the current setting of Rotor #K. */
+    int setting(int k) {
+        return _settings[k];
+    }
+
+    /** Return all my available rotors, in the order given to my
+     *  constructor. */
+    List<Rotor> availableRotors() {
+        return Collections.unmodifiableList(_config.allRotors);
+    }
+
+    /** Return every assignment of my available rotors to my slots that
+     *  a settings line may give: a reflector, then rotors that neither
+     *  move nor reflect, then numPawls() moving rotors.  Each is an
+     *  array of rotor names, as for insertRotors. */
+    List<String[]> rotorOrders() {
+        List<String[]> result = new ArrayList<>();
+        rotorOrders(new String[_numRotors], 0, result);
+        return result;
+    }
+
+    /** Add to RESULT every completion of ORDER[0 .. K-1] as for
+     *  rotorOrders(). */
+    private void rotorOrders(String[] order, int k, List<String[]> result) {
+        if (k == order.length) {
+            result.add(order.clone());
+            return;
+        }
+        int firstMoving = _numRotors - _numPawls;
+        for (Rotor r : _config.allRotors) {
+            boolean fits = k == 0 ? r.reflecting()
+                : k < firstMoving ? !r.rotates() && !r.reflecting()
+                : r.rotates();
+            if (fits && _config.rotorsByName.get(r.name()) == r
+                && !Arrays.asList(order).subList(0, k).contains(r.name())) {
+                order[k] = r.name();
+                rotorOrders(order, k + 1, result);
+            }
+        }
     }
 
     Alphabet alphabet() {
@@ -49,33 +136,22 @@ class Machine {
      *  available rotors (ROTORS[0] names the reflector).
      *  Initially, all rotors are set at their 0 setting. */
     void insertRotors(String[] rotors) {
-        machineRotors.clear();
-        int numRotorUsed = 0;
         if (rotors.length != _numRotors) {
             throw error("Length doesn't match");
-        } else {
-            for (String rotor : rotors) {
-                for (int j = 0; j < _allRotors.size(); j++) {
-                    if (rotor.equals(_allRotors.get(j).name())) {
-                        machineRotors.add(numRotorUsed, _allRotors.get(j));
-                        numRotorUsed++;
-                        break;
-                    }
-                }
-            }
-        }
-        if (numRotorUsed == 0) {
-            throw error("Rotor doesn't exist");
         }
-        if (numRotorUsed != _numRotors) {
-            throw new EnigmaException(""
-                    + "Number of Rotors used doesn't match the config");
-        }
-
-        _rotors = machineRotors;
+        Rotor[] slots = new Rotor[_numRotors];
         int numMoving = 0;
-        for (Rotor r : machineRotors) {
-            if (r instanceof MovingRotor) {
+        for (int k = 0; k < _numRotors; k += 1) {
+            slots[k] = _config.rotorsByName.get(rotors[k]);
+            if (slots[k] == null) {
+                throw error("Rotor %s doesn't exist", rotors[k]);
+            }
+            for (int j = 0; j < k; j += 1) {
+                if (slots[j] == slots[k]) {
+                    throw error("Rotor %s used twice", rotors[k]);
+                }
+            }
+            if (slots[k].rotates()) {
                 numMoving++;
             }
         }
@@ -83,6 +159,11 @@ class Machine {
             throw new EnigmaException(""
                     + "pawls don't match number of moving rotor");
         }
+        _slots = slots;
+        _stepping = new Stepping(slots, _alphabet.size());
+        Arrays.fill(_settings, 0);
+        _innerValid = _outerValid = false;
+        _keystream = null;
     }
 
     /** Set my rotors according to SETTING, which must be a string of
@@ -91,14 +172,152 @@ class Machine {
     void setRotors(String setting) {
         if (setting.length() != _numRotors - 1) {
             throw error("Wrong size");
-        } else {
-            for (int i = 0; i < setting.length(); i++) {
-                if (_alphabet.contains(setting.charAt(i))) {
-                    getRotor(i + 1).set(setting.charAt(i));
+        }
+        for (int i = 0; i < setting.length(); i++) {
+            int posn = _alphabet.toInt(setting.charAt(i));
+            if (posn < 0) {
+                throw error("Bad character %c in setting", setting.charAt(i));
+            }
+            if (getRotor(i + 1).reflecting() && posn != 0) {
+                throw error("reflector has only one position");
+            }
+            _settings[i + 1] = posn;
+        }
+        _innerValid = _outerValid = false;
+        _keystream = null;
+    }
+
+    /** Set the rings of my rotors according to RINGS, a string of
+     *  numRotors()-1 characters in my alphabet giving the ring settings
+     *  of rotors 1 .. numRotors()-1, as SETTING does for setRotors.
+     *  Each rotor is replaced by one whose permutation is turned to its
+     *  ring (see Rotor.withRing), so that rings cost nothing per
+     *  keystroke.  Rotor settings are those of the letters on the rings,
+     *  so the notches stay where they are.  Inserting rotors resets all
+     *  rings to the first character of my alphabet. */
+    void setRings(String rings) {
+        if (_slots == null) {
+            throw new EnigmaException("Rotor size incorrect.");
+        }
+        if (rings.length() != _numRotors - 1) {
+            throw error("Wrong size");
+        }
+        Rotor[] slots = _slots.clone();
+        for (int i = 0; i < rings.length(); i += 1) {
+            int ring = _alphabet.toInt(rings.charAt(i));
+            if (ring < 0) {
+                throw error("Bad character %c in ring setting",
+                            rings.charAt(i));
+            }
+            if (slots[i + 1].reflecting() && ring != 0) {
+                throw error("reflector has only one position");
+            }
+            slots[i + 1] = _config.rotorsByName.get(slots[i + 1].name())
+                .withRing(ring);
+        }
+        _stepping = new Stepping(_stepping, _slots, slots,
+                                 _alphabet.size());
+        _slots = slots;
+        _innerValid = _outerValid = false;
+        _keystream = null;
+    }
+
+    /** Set my rotors 1 .. numRotors()-1 to the positions POSNS[0 ..
+     *  numRotors()-2], as setRotors(String) does for their
+     *  characters. */
+    void setRotors(int[] posns) {
+        if (posns.length != _numRotors - 1) {
+            throw error("Wrong size");
+        }
+        for (int i = 0; i < posns.length; i += 1) {
+            if (posns[i] < 0 || posns[i] >= _alphabet.size()) {
+                throw error("Bad position %d in setting", posns[i]);
+            }
+            if (getRotor(i + 1).reflecting() && posns[i] != 0) {
+                throw error("reflector has only one position");
+            }
+        }
+        restoreSettings(posns);
+        _keystream = null;
+    }
+
+    /** Return a new machine in the same state as me, sharing my
+     *  (immutable) rotors but with its own settings, so that the two may
+     *  be used independently (for example, by different threads). */
+    Machine copy() {
+        dropKeystream();
+        Machine result = new Machine(_config);
+        result._slots = _slots;
+        result._stepping = _stepping;
+        System.arraycopy(_settings, 0, result._settings, 0, _numRotors);
+        result._plugboard = _plugboard;
+        result._plugTable = _plugTable;
+        result._engine = _engine;
+        return result;
+    }
+
+    /** Return a new machine with my alphabet, rotor slots, pawls, and
+     *  available rotors, with none inserted.  This is cheap: machines
+     *  share their configuration and allocate only their own state. */
+    Machine newMachine() {
+        return new Machine(_config);
+    }
+
+    /** Put me in the state I would reach after K keystrokes, without
+     *  simulating them one by one.  Between keystrokes on which a slower
+     *  rotor moves, only the fast rotor advances, so whole runs of those
+     *  are skipped arithmetically; the cost is proportional to the
+     *  number of times a slower rotor moves.  A seek longer than the
+     *  number of settings of my moving rotors must end in the cycle
+     *  they enter (see period), so it first finds that cycle and skips
+     *  all whole turns of it, which bounds the cost for any K. */
+    void seek(long k) {
+        dropKeystream();
+        int fast = _numRotors - 1;
+        int n = _alphabet.size();
+        if (k > movingStates() && _stepping.untilCarry[0] != Long.MAX_VALUE) {
+            long[] cycle = cycle();
+            k = cycle[0] + (k - cycle[0]) % cycle[1];
+        }
+        while (k > 0) {
+            long run = fastOnlyRun();
+            if (run >= k) {
+                if (getRotor(fast).rotates()) {
+                    _settings[fast] = (int) ((_settings[fast] + k % n) % n);
                 }
+                break;
             }
+            _settings[fast] = (int) ((_settings[fast] + run) % n);
+            advanceRotors();
+            k -= run + 1;
         }
+        _innerValid = _outerValid = false;
     }
+
+    /** Return the number of upcoming keystrokes (possibly
+     *  Long.MAX_VALUE) on which no rotor but the fast one will move. */
+    private long fastOnlyRun() {
+        boolean[][] carries = _stepping.carries;
+        int fastSlot = _numRotors - 1;
+        for (int i = 1; i < fastSlot; i += 1) {
+            if (carries[i] != null && carries[i][_settings[i]]) {
+                return 0;
+            }
+        }
+        return _stepping.untilCarry[_settings[fastSlot]];
+    }
+
+    /** If I am replaying a keystream, stop, first moving my rotors to
+     *  the settings the keystrokes replayed so far would have left
+     *  them in. */
+    private void dropKeystream() {
+        if (_keystream != null) {
+            int steps = _keystreamStep;
+            _keystream = null;
+            seek(steps);
+        }
+    }
+
     /** Return the current plugboard's permutation. */
     Permutation plugboard() {
         return _plugboard;
@@ -107,91 +326,750 @@ class Machine {
     /** Set the plugboard to PLUGBOARD. */
     void setPlugboard(Permutation plugboard) {
         _plugboard = plugboard;
+        _plugTable = plugboard.toArray();
+        _keystream = null;
+    }
+
+    /** Return the engine that runs my signal path over runs of
+     *  keystrokes. */
+    Engine engine() {
+        return _engine;
+    }
+
+    /** Run my signal path with ENGINE from now on.  Every engine gives
+     *  the same results; they differ only in speed. */
+    void setEngine(Engine engine) {
+        _engine = engine;
+    }
+
+    /** Return the substitutions I perform on my next STEPS keystrokes,
+     *  leaving my state unchanged. */
+    Keystream keystream(int steps) {
+        dropKeystream();
+        int n = _alphabet.size();
+        int[] start = settings();
+        Slots tables = Slots.of(steps * n, n - 1);
+        for (int t = 0; t < steps; t += 1) {
+            advanceRotors();
+            for (int x = 0; x < n; x += 1) {
+                tables.set(t * n + x,
+                           plugboard().permute(applyRotors(
+                               plugboard().permute(x))));
+            }
+        }
+        Keystream result = new Keystream(n, steps, tables, settings());
+        restoreSettings(start);
+        return result;
+    }
+
+    /** Store in DST[T * N + X] the result of passing X through my rotors
+     *  alone, without the plugboard, on the T'th of my next STEPS
+     *  keystrokes, for 0 <= T < STEPS and each index X of my alphabet,
+     *  whose size is N.  Advances my rotors by STEPS keystrokes.
+     *  Allocates nothing. */
+    void scramblers(int steps, int[] dst) {
+        dropKeystream();
+        int n = _alphabet.size();
+        for (int t = 0; t < steps; t += 1) {
+            advanceRotors();
+            for (int x = 0; x < n; x += 1) {
+                dst[t * n + x] = applyRotors(x);
+            }
+        }
+    }
+
+    /** Replay KEYSTREAM, which must have been computed for my current
+     *  rotors, settings, and plugboard, for my next keystrokes instead of
+     *  running the rotors.  KEYSTREAM may be null, meaning no keystream.
+     *  Inserting or setting rotors or the plugboard cancels this, and
+     *  it is ignored while I have a trace listener. */
+    void useKeystream(Keystream keystream) {
+        _keystream = _trace == null ? keystream : null;
+        _keystreamStep = 0;
+    }
+
+    /** Return the current settings of rotors 1 .. numRotors()-1, as
+     *  for setRotors(int[]), first catching up with any keystream being
+     *  replayed. */
+    int[] positions() {
+        dropKeystream();
+        return settings();
+    }
+
+    /** Return the settings of rotors 1 .. numRotors()-1. */
+    private int[] settings() {
+        return Arrays.copyOfRange(_settings, 1, _numRotors);
+    }
+
+    /** Set rotors 1 .. numRotors()-1 to SETTINGS, as returned by
+     *  settings(). */
+    private void restoreSettings(int[] settings) {
+        System.arraycopy(settings, 0, _settings, 1, _numRotors - 1);
+        _innerValid = _outerValid = false;
     }
 
     /** Returns the result of converting the input character C (as an
      *  index in the range 0..alphabet size - 1), after first advancing
      *  the machine. */
     int convert(int c) {
-        advanceRotors();
-        if (Main.verbose()) {
-            System.err.printf("[");
-            for (int r = 1; r < numRotors(); r += 1) {
-                System.err.printf("%c",
-                        alphabet().toChar(getRotor(r).setting()));
+        if (_trace != null) {
+            return convertTraced(c);
+        }
+        if (_keystream != null) {
+            c = _keystream.convert(_keystreamStep, c);
+            _keystreamStep += 1;
+            if (_keystreamStep == _keystream.steps()) {
+                for (int k = 1; k < _numRotors; k += 1) {
+                    _settings[k] = _keystream.endSetting(k);
+                }
+                _innerValid = _outerValid = false;
+                _keystream = null;
             }
-            System.err.printf("] %c -> ", alphabet().toChar(c));
+            return c;
         }
+        advanceRotors();
         c = plugboard().permute(c);
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(c));
-        }
         c = applyRotors(c);
+        return plugboard().permute(c);
+    }
+
+    /** Return convert(C), reporting each stage to my trace listener. */
+    private int convertTraced(int c) {
+        advanceRotors();
+        if (_traceSettings == null
+            || _traceSettings.length != _numRotors - 1) {
+            _traceSettings = new int[_numRotors - 1];
+        }
+        System.arraycopy(_settings, 1, _traceSettings, 0, _numRotors - 1);
+        _trace.keystroke(_traceSettings, c);
         c = plugboard().permute(c);
-        if (Main.verbose()) {
-            System.err.printf("%c%n", alphabet().toChar(c));
+        _trace.signal(c);
+        for (int i = _numRotors - 1; i >= 0; i--) {
+            c = getRotor(i).convertForward(c, _settings[i]);
+            _trace.signal(contact(i, c));
         }
+        for (int j = 1; j < _numRotors; j++) {
+            c = getRotor(j).convertBackward(c, _settings[j]);
+            _trace.signal(contact(j, c));
+        }
+        c = plugboard().permute(c);
+        _trace.output(c);
         return c;
     }
 
-    /** Advance all rotors to their next position. */
-    private void advanceRotors() {
-        if (_rotors.size() <= 0) {
+    /** Return the contact on rotor K's wiring through which the
+     *  signal C (relative to the machine) leaves it. */
+    private int contact(int k, int c) {
+        return _plugboard.wrap(c + _settings[k]);
+    }
+
+    /** Report the path of each character I convert to LISTENER, or
+     *  stop reporting if LISTENER is null.  Cancels any keystream being
+     *  replayed, so it should be set before the rotors are. */
+    void setTraceListener(TraceListener listener) {
+        _trace = listener;
+        if (listener != null) {
+            _keystream = null;
+        }
+    }
+
+    /** Return true iff I have a trace listener.  Copies do not share it,
+     *  so a traced machine must not be split among copies. */
+    boolean traced() {
+        return _trace != null;
+    }
+
+    /** Advance all rotors to their next position.  Each moving rotor
+     *  advances if it is the fast rotor, if it is at a notch (and so
+     *  pushes the rotor to its left), or if the rotor to its right is at
+     *  a notch; the second gives the double stepping of the middle
+     *  rotor.  Every condition is tested on the settings before any
+     *  rotor moves.  Allocates nothing. */
+    void advanceRotors() {
+        if (_slots == null) {
             throw new EnigmaException("Rotor size incorrect.");
-        } else {
-            boolean[] rotated = new boolean[_numRotors];
+        }
+        boolean[][] carries = _stepping.carries;
+        boolean[] rotates = _stepping.rotates;
+        int fast = _numRotors - 1;
+        int n = _alphabet.size();
+        for (int j = 1; j <= fast; j += 1) {
+            int posn = _settings[j];
+            if (rotates[j]
+                && (j == fast
+                    || carries[j] != null && carries[j][posn]
+                    || carries[j + 1] != null
+                       && carries[j + 1][_settings[j + 1]])) {
+                _settings[j] = posn + 1 == n ? 0 : posn + 1;
+                if (j < fast) {
+                    _innerValid = false;
+                    _outerValid &= j + 1 >= fast;
+                }
+            }
+        }
+    }
+
+    /** Return the number of keystrokes after which the settings of my
+     *  rotors, starting from their current settings, begin to repeat.
+     *  Double stepping can leave some settings unreachable once passed,
+     *  so this is the length of the cycle my rotors eventually enter,
+     *  which may not include the current settings.  The cost is
+     *  proportional to the number of keystrokes in the cycle on which
+     *  a rotor other than the fast one moves. */
+    long period() {
+        if (_slots == null) {
+            throw new EnigmaException("Rotor size incorrect.");
+        }
+        int fast = _numRotors - 1;
+        if (_stepping.untilCarry[0] == Long.MAX_VALUE) {
+            return _stepping.rotates[fast] ? _alphabet.size() : 1;
+        }
+        return cycle()[1];
+    }
+
+    /** Return { MU, LAMBDA }, where LAMBDA is the number of keystrokes
+     *  after which the settings of my rotors begin to repeat, as for
+     *  period, and the settings after MU keystrokes from the current
+     *  ones are in that cycle.  Finds the cycle among the settings after
+     *  each keystroke on which a rotor other than the fast one moves,
+     *  starting with the first, with Brent's algorithm.  There must be
+     *  such keystrokes. */
+    private long[] cycle() {
+        Machine origin = copy();
+        long first = origin.nextCarry();
+        Machine tortoise = origin.copy(), hare = origin.copy();
+        hare.nextCarry();
+        long power = 1, lambda = 1;
+        while (!Arrays.equals(tortoise._settings, hare._settings)) {
+            if (power == lambda) {
+                System.arraycopy(hare._settings, 0, tortoise._settings, 0,
+                                 _numRotors);
+                power *= 2;
+                lambda = 0;
+            }
+            hare.nextCarry();
+            lambda += 1;
+        }
+        tortoise = origin.copy();
+        hare = origin.copy();
+        long length = 0;
+        for (long k = 0; k < lambda; k += 1) {
+            length += hare.nextCarry();
+        }
+        long start = first;
+        while (!Arrays.equals(tortoise._settings, hare._settings)) {
+            start += tortoise.nextCarry();
+            hare.nextCarry();
+        }
+        return new long[] { start, length };
+    }
 
-            for (int i = _numRotors - 1; i > 0; i--) {
-                if (getRotor(i).atNotch() && getRotor(i - 1).rotates()) {
-                    rotated[i] = rotated[i - 1] = true;
+    /** Return the number of combinations of settings of my moving
+     *  rotors, or Long.MAX_VALUE if that is larger. */
+    private long movingStates() {
+        int n = _alphabet.size();
+        long result = 1;
+        for (int i = 1; i < _numRotors; i += 1) {
+            if (_stepping.rotates[i]) {
+                result = result > Long.MAX_VALUE / n ? Long.MAX_VALUE
+                    : result * n;
+            }
+        }
+        return result;
+    }
+
+    /** Advance my rotors through the next keystroke on which a rotor
+     *  other than the fast one moves, returning the number of keystrokes
+     *  taken.  There must be such a keystroke. */
+    private long nextCarry() {
+        int fast = _numRotors - 1;
+        long run = fastOnlyRun();
+        _settings[fast] =
+            (int) ((_settings[fast] + run) % _alphabet.size());
+        advanceRotors();
+        return run + 1;
+    }
+
+    /** The parts of my rotors' stepping and wiring that depend only on
+     *  which rotors are in which slots, computed once by insertRotors
+     *  and updated by setRings.  Immutable, so shared by copies. */
+    private static final class Stepping {
+        /** Stepping for the rotors SLOTS, whose alphabet has N
+         *  symbols. */
+        Stepping(Rotor[] slots, int n) {
+            int fast = slots.length - 1;
+            rotates = new boolean[slots.length];
+            carries = new boolean[slots.length][];
+            forward = new int[slots.length][2 * n];
+            backward = new int[slots.length][2 * n];
+            for (int i = 0; i < slots.length; i += 1) {
+                wire(slots[i].permutation(), forward[i], backward[i], n);
+                rotates[i] = slots[i].rotates();
+                if (i > 0 && slots[i].rotates() && slots[i - 1].rotates()) {
+                    carries[i] = new boolean[n];
+                    for (int p = 0; p < n; p += 1) {
+                        carries[i][p] = slots[i].atNotch(p);
+                    }
                 }
             }
-            rotated[rotated.length - 1] = true;
-            for (int j = rotated.length - 1; j > 0; j--) {
-                if (rotated[j]) {
-                    getRotor(j).advance();
+            untilCarry = new long[n];
+            Arrays.fill(untilCarry, Long.MAX_VALUE);
+            if (carries[fast] != null) {
+                for (int p = 2 * n - 1; p >= 0; p -= 1) {
+                    if (carries[fast][p % n]) {
+                        untilCarry[p % n] = 0;
+                    } else if (untilCarry[(p + 1) % n] != Long.MAX_VALUE) {
+                        untilCarry[p % n] = untilCarry[(p + 1) % n] + 1;
+                    }
                 }
             }
         }
+
+        /** Stepping for the rotors SLOTS, whose alphabet has N symbols,
+         *  where BASE is the stepping for the rotors OLD, which differ
+         *  from SLOTS only in their rings.  The notches ride on the
+         *  rings, so the stepping tables of BASE are shared unchanged,
+         *  as is the wiring of each slot whose rotor is the same. */
+        Stepping(Stepping base, Rotor[] old, Rotor[] slots, int n) {
+            rotates = base.rotates;
+            carries = base.carries;
+            untilCarry = base.untilCarry;
+            forward = base.forward.clone();
+            backward = base.backward.clone();
+            for (int i = 0; i < slots.length; i += 1) {
+                if (slots[i] != old[i]) {
+                    forward[i] = new int[2 * n];
+                    backward[i] = new int[2 * n];
+                    wire(slots[i].permutation(), forward[i], backward[i],
+                         n);
+                }
+            }
+        }
+
+        /** Fill FORWARD and BACKWARD with PERM, on N symbols, and its
+         *  inverse, each twice over. */
+        private static void wire(Permutation perm, int[] forward,
+                                 int[] backward, int n) {
+            for (int x = 0; x < 2 * n; x += 1) {
+                forward[x] = perm.permute(x % n);
+                backward[x] = perm.invert(x % n);
+            }
+        }
+
+        /** Whether the rotor in each slot moves. */
+        private final boolean[] rotates;
+        /** For each slot whose rotor can push the rotor to its left,
+         *  whether it does so at each of its positions; null for the
+         *  other slots. */
+        private final boolean[][] carries;
+        /** For each position of the fast rotor, the number of keystrokes
+         *  before it reaches a notch that pushes another rotor, or
+         *  Long.MAX_VALUE if it never does. */
+        private final long[] untilCarry;
+        /** For each slot, its rotor's permutation, twice over, so that
+         *  a symbol plus a setting indexes it without reduction. */
+        private final int[][] forward;
+        /** For each slot, the inverse of its rotor's permutation, twice
+         *  over. */
+        private final int[][] backward;
+    }
+
+    /** Return the signal C after passing through a rotor at setting P
+     *  whose permutation, twice over, is TABLE, in an alphabet of N
+     *  symbols: TABLE[C + P] - P, modulo N. */
+    private static int pass(int[] table, int c, int p, int n) {
+        int result = table[c + p] - p;
+        return result + (n & (result >> 31));
     }
 
-    /** Return the result of applying the rotors to the character C (as an
-     *  index in the range 0..alphabet size - 1). */
+    /** Return the result of applying the rotors to C using the fused
+     *  table for all rotors but the fast one. */
     private int applyRotors(int c) {
-        int newC = c;
-        for (int i = _numRotors - 1; i >= 0; i--) {
-            newC = getRotor(i).convertForward(newC);
+        if (!_innerValid) {
+            compileInner();
         }
-        for (int j = 1; j < _numRotors; j++) {
-            newC = getRotor(j).convertBackward(newC);
+        int fast = _numRotors - 1;
+        int p = _settings[fast];
+        int n = _alphabet.size();
+        c = _inner[pass(_stepping.forward[fast], c, p, n)];
+        return pass(_stepping.backward[fast], c, p, n);
+    }
+
+    /** Compose the reflector and every rotor to the left of the fast
+     *  rotor, at their current settings, into _inner.  Only the fast
+     *  rotor moves on most keystrokes, so this table stays valid until
+     *  a slower rotor advances or the rotors are reset.  Likewise, the
+     *  rotors to the left of the one next to the fast rotor are composed
+     *  into _outer, which is kept until one of them moves, so that most
+     *  recompilations pass each symbol through only one rotor. */
+    private void compileInner() {
+        int n = _alphabet.size();
+        if (_inner == null || _inner.length != n) {
+            _inner = new int[n];
+            _outer = new int[n];
+            _outerValid = false;
+        }
+        int[][] forward = _stepping.forward, backward = _stepping.backward;
+        int last = _numRotors - 2;
+        if (last == 0) {
+            for (int x = 0; x < n; x += 1) {
+                _inner[x] = pass(forward[0], x, _settings[0], n);
+            }
+            _innerValid = true;
+            return;
+        }
+        if (!_outerValid) {
+            for (int x = 0; x < n; x += 1) {
+                int c = x;
+                for (int i = last - 1; i >= 0; i -= 1) {
+                    c = pass(forward[i], c, _settings[i], n);
+                }
+                for (int j = 1; j < last; j += 1) {
+                    c = pass(backward[j], c, _settings[j], n);
+                }
+                _outer[x] = c;
+            }
+            _outerValid = true;
+        }
+        int p = _settings[last];
+        for (int x = 0; x < n; x += 1) {
+            _inner[x] = pass(backward[last],
+                             _outer[pass(forward[last], x, p, n)], p, n);
         }
-        return newC;
+        _innerValid = true;
     }
 
     /** Returns the encoding/decoding of MSG, updating the state of
-     *  the rotors accordingly. */
+     *  the rotors accordingly.  Whitespace in MSG is skipped. */
     String convert(String msg) {
-        msg = msg.replaceAll(" ", "");
-        char[] newMsg = new char[msg.length()];
-        for (int i = 0; i < newMsg.length; i++) {
-            int charInt = _alphabet.toInt(msg.charAt(i));
-            newMsg[i] = _alphabet.toChar(convert(charInt));
+        char[] src = msg.toCharArray();
+        char[] dst = new char[(_alphabet.bmp() ? 1 : 2) * src.length];
+        return new String(dst, 0, convert(src, 0, src.length, dst, 0));
+    }
+
+    /** Convert the characters SRC[FROM .. TO-1], skipping whitespace,
+     *  into DST starting at DSTPOS, updating the state of the rotors
+     *  accordingly.  Returns the number of chars written.  DST must have
+     *  room for TO - FROM chars, or twice that if my alphabet includes
+     *  supplementary characters.  The characters are converted a block
+     *  of symbol indices at a time by my engine.  Allocates nothing after
+     *  the first call. */
+    int convert(char[] src, int from, int to, char[] dst, int dstPos) {
+        if (_block == null) {
+            _block = new int[BLOCK];
+        }
+        int[] block = _block;
+        int out = dstPos;
+        int i = from;
+        while (i < to) {
+            int count = 0;
+            for (; i < to && count < block.length; i += 1) {
+                int cp = src[i];
+                if (Character.isHighSurrogate(src[i]) && i + 1 < to
+                    && Character.isLowSurrogate(src[i + 1])) {
+                    cp = Character.toCodePoint(src[i], src[i + 1]);
+                    i += 1;
+                }
+                int c = symbol(cp);
+                if (c >= 0) {
+                    block[count] = c;
+                    count += 1;
+                }
+            }
+            convert(block, 0, count, block, 0);
+            for (int j = 0; j < count; j += 1) {
+                out += Character.toChars(_alphabet.codePoint(block[j]),
+                                         dst, out);
+            }
+        }
+        return out - dstPos;
+    }
+
+    /** Convert characters from SRC into DST, skipping whitespace, until
+     *  SRC is exhausted or DST has no room for another character,
+     *  updating the state of the rotors accordingly.  Advances the
+     *  positions of both buffers past the chars consumed and written, and
+     *  returns the number of chars written.  The characters are
+     *  converted by my engine as many at a time as DST has room for, up
+     *  to a block.  On a character not in my alphabet, those before it
+     *  are converted and written before the error is thrown, as if they
+     *  had been converted one by one.  Allocates nothing after the first
+     *  call. */
+    int convert(CharBuffer src, CharBuffer dst) {
+        if (_block == null) {
+            _block = new int[BLOCK];
+        }
+        int[] block = _block;
+        int room = _alphabet.bmp() ? 1 : 2;
+        int start = dst.position();
+        while (src.hasRemaining() && dst.remaining() >= room) {
+            int count = symbols(src, block, 0,
+                                Math.min(block.length,
+                                         dst.remaining() / room));
+            convert(block, 0, count, block, 0);
+            if (dst.hasArray()) {
+                char[] out = dst.array();
+                int pos = dst.arrayOffset() + dst.position();
+                for (int j = 0; j < count; j += 1) {
+                    pos += Character.toChars(_alphabet.codePoint(block[j]),
+                                             out, pos);
+                }
+                dst.position(pos - dst.arrayOffset());
+                continue;
+            }
+            for (int j = 0; j < count; j += 1) {
+                int e = _alphabet.codePoint(block[j]);
+                if (Character.isBmpCodePoint(e)) {
+                    dst.put((char) e);
+                } else {
+                    dst.put(Character.highSurrogate(e));
+                    dst.put(Character.lowSurrogate(e));
+                }
+            }
+        }
+        return dst.position() - start;
+    }
+
+    /** Convert the character indices SRC[FROM .. TO-1] into DST starting
+     *  at DSTPOS, updating the state of the rotors accordingly.  SRC and
+     *  DST may be the same array, and the ranges may overlap.
+     *  Keystrokes that are traced or that replay a keystream are made
+     *  one by one; the rest are run by my engine. */
+    void convert(int[] src, int from, int to, int[] dst, int dstPos) {
+        if (overlaps(src, from, to, dst, dstPos)) {
+            System.arraycopy(src, from, dst, dstPos, to - from);
+            convert(dst, dstPos, dstPos + to - from, dst, dstPos);
+            return;
+        }
+        int i = from;
+        for (; i < to && (_trace != null || _keystream != null); i += 1) {
+            dst[dstPos + i - from] = convert(src[i]);
+        }
+        if (i < to) {
+            _engine.convert(this, src, i, to, dst, dstPos + i - from);
         }
-        return String.valueOf(newMsg);
     }
 
+    /** Return true iff SRC[FROM .. TO-1] and DST[DSTPOS ..] are
+     *  different but overlapping ranges of the same array, so that
+     *  converting one into the other in order could overwrite symbols
+     *  before they are read. */
+    static boolean overlaps(int[] src, int from, int to, int[] dst,
+                            int dstPos) {
+        return src == dst && dstPos != from && dstPos < to
+            && from < dstPos + to - from;
+    }
+
+    /** Convert SRC[FROM .. TO-1] into DST starting at DSTPOS as
+     *  convert(int[], ...) does, passing each keystroke through the table
+     *  of every rotor in turn, so that nothing need be compiled first.
+     *  For Engine.TABLES.  Allocates nothing. */
+    void convertDense(int[] src, int from, int to, int[] dst, int dstPos) {
+        int n = _alphabet.size();
+        int fast = _numRotors - 1;
+        int[][] forward = _stepping.forward, backward = _stepping.backward;
+        int[] plug = _plugTable;
+        int[] settings = _settings;
+        for (int i = from; i < to; i += 1) {
+            advanceRotors();
+            int c = plug[src[i]];
+            for (int k = fast; k >= 0; k -= 1) {
+                c = pass(forward[k], c, settings[k], n);
+            }
+            for (int k = 1; k <= fast; k += 1) {
+                c = pass(backward[k], c, settings[k], n);
+            }
+            dst[dstPos + i - from] = plug[c];
+        }
+    }
+
+    /** Convert SRC[FROM .. TO-1] into DST starting at DSTPOS as
+     *  convert(int[], ...) does, through the fast rotor and the fused
+     *  table for the others, which is recompiled only when a slower
+     *  rotor moves.  Each run of keystrokes on which only the fast rotor
+     *  moves is converted in a tight loop, as for bytes.  For
+     *  Engine.FUSED.  Allocates only tables the size of my alphabet. */
+    void convertFused(int[] src, int from, int to, int[] dst, int dstPos) {
+        int n = _alphabet.size();
+        int fast = _numRotors - 1;
+        int[] forward = _stepping.forward[fast];
+        int[] backward = _stepping.backward[fast];
+        int[] plug = _plugTable;
+        int shift = dstPos - from;
+        int i = from;
+        while (i < to) {
+            long run = _stepping.rotates[fast] ? fastOnlyRun() : 0;
+            if (run == 0) {
+                advanceRotors();
+                dst[shift + i] = plug[applyRotors(plug[src[i]])];
+                i += 1;
+                continue;
+            }
+            int end = i + (int) Math.min(run, to - i);
+            if (!_innerValid) {
+                compileInner();
+            }
+            int[] inner = _inner;
+            int p = _settings[fast];
+            for (; i < end; i += 1) {
+                p = p + 1 == n ? 0 : p + 1;
+                int c = forward[plug[src[i]] + p] - p;
+                c = inner[c + (n & (c >> 31))];
+                c = backward[c + p] - p;
+                dst[shift + i] = plug[c + (n & (c >> 31))];
+            }
+            _settings[fast] = p;
+        }
+    }
+
+    /** Convert the bytes remaining in SRC into DST, which must have room
+     *  for them, updating the state of the rotors accordingly.  Byte B
+     *  stands for the symbol with index B of my alphabet, which must
+     *  have BYTE_SYMBOLS symbols.  Advances the positions of both
+     *  buffers.  SRC and DST may share their contents (as a buffer and
+     *  its duplicate do) if they start at the same place, to convert in
+     *  place.  On the keystrokes on which only the fast rotor moves,
+     *  each byte is a few table lookups: through the plugboard, the fast
+     *  rotor, the fused table for the others, and back.  Allocates only
+     *  tables the size of my alphabet. */
+    void convert(ByteBuffer src, ByteBuffer dst) {
+        int n = _alphabet.size();
+        if (n != BYTE_SYMBOLS) {
+            throw error("alphabet has %d symbols, not %d", n, BYTE_SYMBOLS);
+        }
+        if (dst.remaining() < src.remaining()) {
+            throw error("no room for converted bytes");
+        }
+        int fast = _numRotors - 1;
+        int[] plug = _plugTable;
+        while (src.hasRemaining()) {
+            long run = _trace != null || _keystream != null
+                || !_stepping.rotates[fast] ? 0 : fastOnlyRun();
+            if (run == 0) {
+                dst.put((byte) convert(src.get() & BYTE_MASK));
+                continue;
+            }
+            int count = (int) Math.min(run, src.remaining());
+            if (!_innerValid) {
+                compileInner();
+            }
+            int[] inner = _inner;
+            int[] forward = _stepping.forward[fast];
+            int[] backward = _stepping.backward[fast];
+            int p = _settings[fast];
+            int in = src.position(), out = dst.position();
+            for (int i = 0; i < count; i += 1) {
+                p = p + 1 == n ? 0 : p + 1;
+                int c = forward[plug[src.get(in + i) & BYTE_MASK] + p] - p;
+                c = inner[c + (n & (c >> 31))];
+                c = backward[c + p] - p;
+                dst.put(out + i, (byte) plug[c + (n & (c >> 31))]);
+            }
+            src.position(in + count);
+            dst.position(out + count);
+            _settings[fast] = p;
+            if (count == run && src.hasRemaining()) {
+                dst.put((byte) convert(src.get() & BYTE_MASK));
+            }
+        }
+    }
+
+    /** Store the indices of the characters in SRC into DST, starting at
+     *  DSTPOS and skipping whitespace, until SRC is exhausted or DST is
+     *  full.  Returns the position in DST after the last index stored.
+     *  Stops at a character not in my alphabet, leaving SRC positioned
+     *  at it, so that the symbols before it may be converted first; if
+     *  DST holds none, throws an error for it instead. */
+    int symbols(CharBuffer src, int[] dst, int dstPos) {
+        return symbols(src, dst, dstPos, dst.length);
+    }
+
+    /** Store indices of the characters in SRC into DST[DSTPOS ..
+     *  END-1] as symbols(SRC, DST, DSTPOS) does into all of DST. */
+    private int symbols(CharBuffer src, int[] dst, int dstPos, int end) {
+        int out = dstPos;
+        while (src.hasRemaining() && out < end) {
+            int mark = src.position();
+            int cp = src.get();
+            if (Character.isHighSurrogate((char) cp) && src.hasRemaining()
+                && Character.isLowSurrogate(src.get(src.position()))) {
+                cp = Character.toCodePoint((char) cp, src.get());
+            }
+            int c = _alphabet.indexOf(cp);
+            if (c >= 0) {
+                dst[out] = c;
+                out += 1;
+            } else if (!Character.isWhitespace(cp)) {
+                src.position(mark);
+                if (out == 0) {
+                    symbol(cp);
+                }
+                break;
+            }
+        }
+        return out;
+    }
+
+    /** Return the index of code point CP in my alphabet, or -1 if CP is
+     *  whitespace not in my alphabet, which is to be skipped. */
+    private int symbol(int cp) {
+        int c = _alphabet.indexOf(cp);
+        if (c < 0 && !Character.isWhitespace(cp)) {
+            throw error("character %s not in alphabet",
+                        new String(Character.toChars(cp)));
+        }
+        return c;
+    }
+
+    /** Size of the alphabet needed to convert bytes. */
+    static final int BYTE_SYMBOLS = 256;
+    /** Mask giving the unsigned value of a byte. */
+    private static final int BYTE_MASK = 0xff;
+    /** Number of symbols converted at once from chars. */
+    private static final int BLOCK = 1 << 13;
+
     /** Common alphabet of my rotors. */
     private final Alphabet _alphabet;
     /** Total number of rotors in the enigma machine. */
     private final int _numRotors;
     /** Number of pawls that match the ratchet of each rotor. */
     private final int _numPawls;
-    /** List of all rotors in the machine. */
-    private ArrayList<Rotor> _rotors = new ArrayList<>();
+    /** Available rotors and other fixed properties, shared with machines
+     *  made by newMachine and copy. */
+    private final Config _config;
+    /** The rotors in my slots, or null before insertRotors.  Never
+     *  modified in place, so it may be shared by copies. */
+    private Rotor[] _slots;
+    /** How the rotors in _slots step, or null before insertRotors. */
+    private Stepping _stepping;
+    /** The current setting of the rotor in each slot. */
+    private final int[] _settings;
     /** Plugboard that permutes. */
     private Permutation _plugboard;
-    /** An arraylist of rotors that will actually be used in the machine. */
-    private final ArrayList<Rotor> machineRotors = new ArrayList<>();
-    /** Second copy of the collection rotors. */
-    private final ArrayList<Rotor> _allRotors = new ArrayList<>();
+    /** The mapping of _plugboard, as a table. */
+    private int[] _plugTable;
+    /** Runs my signal path over runs of keystrokes. */
+    private Engine _engine = Engine.FUSED;
+    /** Symbol indices being converted from chars, or null until
+     *  needed. */
+    private int[] _block;
+    /** The substitution performed by all rotors but the fast one,
+     *  including the reflector, at their current settings. */
+    private int[] _inner;
+    /** True iff _inner reflects the current rotors and settings. */
+    private boolean _innerValid;
+    /** The substitution performed by the reflector and the rotors to
+     *  the left of the one next to the fast rotor, at their current
+     *  settings. */
+    private int[] _outer;
+    /** True iff _outer reflects the current rotors and settings. */
+    private boolean _outerValid;
+    /** Listener for the path of each character, or null. */
+    private TraceListener _trace;
+    /** Rotor settings passed to _trace. */
+    private int[] _traceSettings;
+    /** Keystream being replayed in place of the rotors, or null. */
+    private Keystream _keystream;
+    /** Number of keystrokes of _keystream already replayed. */
+    private int _keystreamStep;
 }
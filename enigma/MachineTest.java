@@ -1,6 +1,10 @@
 package enigma;
 
+import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.Test;
 import org.junit.Rule;
 import org.junit.rules.Timeout;
@@ -76,4 +80,381 @@ public class MachineTest {
         assertEquals("QVPQSOKOILPUBKJZPISFXDW",
                 mach.convert("FROMHISSHOULDERHIAWATHA"));
     }
+
+    @Test
+    public void testConvertBulk() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        char[] src = "xxFROM HIS\tSHOULDER HIAWATHAxx".toCharArray();
+        char[] dst = new char[40];
+        int n = mach.convert(src, 2, src.length - 2, dst, 1);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW", new String(dst, 1, n));
+
+        mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        CharBuffer in = CharBuffer.wrap("FROM HIS SHOULDER HIAWATHA");
+        CharBuffer out = CharBuffer.allocate(12);
+        assertEquals(12, mach.convert(in, out));
+        out.flip();
+        assertEquals("QVPQSOKOILPU", out.toString());
+        out.clear();
+        mach.convert(in, out);
+        out.flip();
+        assertEquals("BKJZPISFXDW", out.toString());
+
+        mach = mach1();
+        mach.setPlugboard(new Permutation("(YF) (HZ)", AZ));
+        int[] syms = { 24, 24 };
+        mach.convert(syms, 0, 1, syms, 1);
+        assertEquals(25, syms[1]);
+    }
+
+    @Test
+    public void testConvertOverlapping() {
+        int[] msg = new int[40000];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = (i * 7 + i / 13) % 26;
+        }
+        Permutation plugs = new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ);
+        Machine reference = mach1();
+        reference.setPlugboard(plugs);
+        int[] expected = new int[msg.length];
+        reference.convert(msg, 0, msg.length, expected, 0);
+        ParallelConverter parallel =
+            new ParallelConverter(ForkJoinPool.commonPool(), 997);
+        for (int shift : new int[] { 5, -5, 20000 }) {
+            for (Engine engine : Engine.all()) {
+                for (boolean split : new boolean[] { false, true }) {
+                    Machine mach = mach1();
+                    mach.setPlugboard(plugs);
+                    mach.setEngine(engine);
+                    int[] buf = new int[msg.length + Math.abs(shift)];
+                    int from = Math.max(0, -shift);
+                    System.arraycopy(msg, 0, buf, from, msg.length);
+                    if (split) {
+                        parallel.convert(mach, buf, from, from + msg.length,
+                                         buf, from + shift);
+                    } else {
+                        mach.convert(buf, from, from + msg.length, buf,
+                                     from + shift);
+                    }
+                    assertArrayEquals(engine + " shifted by " + shift,
+                                      expected,
+                                      Arrays.copyOfRange(buf, from + shift,
+                                                         from + shift
+                                                         + msg.length));
+                    assertArrayEquals(reference.positions(),
+                                      mach.positions());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testConvertBuffers() {
+        Random random = new Random(7);
+        char[] msg = new char[20000];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = i % 9 == 8 ? ' ' : AZ.toChar(random.nextInt(26));
+        }
+        Machine reference = mach1();
+        reference.setPlugboard(new Permutation("(HQ) (EX) (IP)", AZ));
+        String expected = reference.convert(new String(msg));
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP)", AZ));
+        long[] keystrokes = new long[1];
+        mach.setEngine(new Engine("counting") {
+            @Override
+            void convert(Machine machine, int[] src, int from, int to,
+                         int[] dst, int dstPos) {
+                keystrokes[0] += to - from;
+                Engine.FUSED.convert(machine, src, from, to, dst, dstPos);
+            }
+        });
+        CharBuffer in = CharBuffer.wrap(msg);
+        CharBuffer out = CharBuffer.allocate(1000);
+        StringBuilder result = new StringBuilder();
+        while (in.hasRemaining()) {
+            out.clear();
+            mach.convert(in, out);
+            assertFalse(out.hasRemaining() && in.hasRemaining());
+            out.flip();
+            result.append(out);
+        }
+        assertEquals(expected, result.toString());
+        assertEquals(expected.length(), keystrokes[0]);
+
+        mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP)", AZ));
+        in = CharBuffer.wrap((new String(msg, 0, 5000) + "1ABC")
+                             .toCharArray());
+        out = CharBuffer.allocate(msg.length);
+        try {
+            mach.convert(in, out);
+            fail("bad character accepted");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+        out.flip();
+        int letters = new String(msg, 0, 5000).replace(" ", "").length();
+        assertEquals(expected.substring(0, letters), out.toString());
+        assertEquals(5000, in.position());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testConvertBadCharacter() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("", AZ));
+        mach.convert("HELLO world");
+    }
+
+    /** Return the rotor settings of MACH as a string. */
+    private String settings(Machine mach) {
+        StringBuilder result = new StringBuilder();
+        for (int k = 1; k < mach.numRotors(); k += 1) {
+            result.append(AZ.toChar(mach.setting(k)));
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void testSeek() {
+        Machine stepped = mach1();
+        stepped.setPlugboard(new Permutation("", AZ));
+        for (int k = 0; k < 3000; k += 1) {
+            Machine sought = mach1();
+            sought.seek(k);
+            assertEquals("after " + k, settings(stepped), settings(sought));
+            stepped.convert(0);
+        }
+    }
+
+    @Test
+    public void testLongSeek() {
+        Machine stepped = mach1();
+        stepped.setRotors("AXVZ");
+        long period = stepped.period();
+        for (long k = 0; k < 3 * period; k += 1) {
+            if (k % 997 == 0 || k == 17576 || k == 17577) {
+                Machine sought = mach1();
+                sought.setRotors("AXVZ");
+                sought.seek(k);
+                assertEquals("after " + k, settings(stepped),
+                             settings(sought));
+            }
+            stepped.advanceRotors();
+        }
+        Machine far = mach1(), farther = mach1();
+        far.seek(1L << 60);
+        farther.seek((1L << 60) + 5 * period);
+        assertEquals(settings(far), settings(farther));
+        farther.seek(Long.MAX_VALUE);
+        far.seek(Long.MAX_VALUE - 5 * period);
+        far.seek(5 * period);
+        assertEquals(settings(far), settings(farther));
+    }
+
+    @Test
+    public void testDoubleStep() {
+        Machine mach = mach1();
+        mach.setRotors("AXIP");
+        mach.advanceRotors();
+        assertEquals("AXIQ", settings(mach));
+        mach.advanceRotors();
+        assertEquals("AXJR", settings(mach));
+        mach.advanceRotors();
+        assertEquals("AYKS", settings(mach));
+        mach.advanceRotors();
+        assertEquals("AYKT", settings(mach));
+    }
+
+    @Test
+    public void testFusedTables() {
+        Random random = new Random(3);
+        int[] msg = new int[3000];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = random.nextInt(26);
+        }
+        for (String setting : new String[] { "AXIP", "AXIZ", "AUYP",
+                                             "AXLE", "ABCQ" }) {
+            Machine fused = mach1(), dense = mach1();
+            fused.setRotors(setting);
+            dense.setRotors(setting);
+            Permutation plugs = new Permutation("(HQ) (EX) (IP) (TR)", AZ);
+            fused.setPlugboard(plugs);
+            dense.setPlugboard(plugs);
+            int[] expected = new int[msg.length];
+            int[] result = new int[msg.length];
+            int i = 0;
+            while (i < msg.length) {
+                int end = Math.min(msg.length,
+                                   i + (i < 30 ? 1 : 1 + random.nextInt(300)));
+                if (i >= msg.length / 2 && end - i > 1) {
+                    plugs = new Permutation("(AZ) (BY) (CX)", AZ);
+                    fused.setPlugboard(plugs);
+                    dense.setPlugboard(plugs);
+                }
+                dense.convertDense(msg, i, end, expected, i);
+                fused.convertFused(msg, i, end, result, i);
+                assertArrayEquals("from " + setting + " to " + end,
+                                  dense.positions(), fused.positions());
+                i = end;
+            }
+            assertArrayEquals("from " + setting, expected, result);
+        }
+    }
+
+    @Test
+    public void testRings() {
+        String rings = "BCFG";
+        Machine ringed = mach1();
+        ringed.setRings(rings);
+        ringed.setPlugboard(new Permutation("", AZ));
+        Machine plain = mach1();
+        Random random = new Random(22);
+        for (int t = 0; t < 2000; t += 1) {
+            int x = random.nextInt(AZ.size());
+            plain.advanceRotors();
+            int c = x;
+            for (int k = 4; k >= 0; k -= 1) {
+                c = plain.getRotor(k).convertForward(c, offset(plain, k,
+                                                               rings));
+            }
+            for (int k = 1; k <= 4; k += 1) {
+                c = plain.getRotor(k).convertBackward(c, offset(plain, k,
+                                                                rings));
+            }
+            assertEquals(c, ringed.convert(x));
+            assertEquals(settings(plain), settings(ringed));
+        }
+        Machine same = mach1(), other = mach1();
+        same.setRings(rings);
+        same.setRings("AAAA");
+        same.setPlugboard(new Permutation("", AZ));
+        other.setPlugboard(new Permutation("", AZ));
+        assertEquals(other.convert("FROMHISSHOULDER"),
+                     same.convert("FROMHISSHOULDER"));
+        ringed.insertRotors(ROTORS1);
+        assertEquals(ROTORS.get("I"), ringed.getRotor(4));
+        try {
+            same.setRings("ABC");
+            fail("wrong length accepted");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+    /** Return the setting of rotor K of MACH less its ring setting, as
+     *  given by RINGS. */
+    private static int offset(Machine mach, int k, String rings) {
+        if (k == 0) {
+            return 0;
+        }
+        return Math.floorMod(mach.setting(k) - AZ.toInt(rings.charAt(k - 1)),
+                             AZ.size());
+    }
+
+    @Test
+    public void testPeriod() {
+        Machine mach = mach1();
+        HashMap<String, Integer> seen = new HashMap<>();
+        int t;
+        for (t = 0; !seen.containsKey(settings(mach)); t += 1) {
+            seen.put(settings(mach), t);
+            mach.advanceRotors();
+        }
+        long period = t - seen.get(settings(mach));
+        assertEquals(period, mach1().period());
+        assertEquals(period, mach.period());
+        Machine single = new Machine(AZ, 3, 1, ROTORS.values());
+        single.insertRotors(new String[] { "B", "Beta", "I" });
+        assertEquals(26, single.period());
+    }
+
+    @Test
+    public void testParallelConvert() {
+        int[] msg = new int[5000];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = (i * 7 + i / 13) % 26;
+        }
+        Machine seq = mach1();
+        seq.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        int[] expected = new int[msg.length];
+        seq.convert(msg, 0, msg.length, expected, 0);
+
+        Machine par = mach1();
+        par.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        int[] result = msg.clone();
+        new ParallelConverter(ForkJoinPool.commonPool(), 97)
+            .convert(par, result, 0, result.length, result, 0);
+        assertArrayEquals(expected, result);
+        assertEquals(settings(seq), settings(par));
+    }
+
+    @Test
+    public void testParallelTrace() {
+        int[] msg = new int[3000];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = (i * 11 + i / 7) % 26;
+        }
+        StringBuilder expected = new StringBuilder();
+        Machine seq = mach1();
+        seq.setPlugboard(new Permutation("(HQ) (EX)", AZ));
+        seq.setTraceListener(recorder(expected));
+        seq.convert(msg, 0, msg.length, new int[msg.length], 0);
+
+        StringBuilder result = new StringBuilder();
+        Machine par = mach1();
+        par.setPlugboard(new Permutation("(HQ) (EX)", AZ));
+        par.setTraceListener(recorder(result));
+        new ParallelConverter(ForkJoinPool.commonPool(), 97)
+            .convert(par, msg, 0, msg.length, new int[msg.length], 0);
+        assertEquals(expected.toString(), result.toString());
+        assertEquals(settings(seq), settings(par));
+    }
+
+    /** Return a trace listener appending every event it receives to
+     *  LOG. */
+    private static TraceListener recorder(StringBuilder log) {
+        return new TraceListener() {
+            @Override
+            public void keystroke(int[] settings, int input) {
+                log.append(Arrays.toString(settings))
+                    .append(input);
+            }
+
+            @Override
+            public void signal(int c) {
+                log.append(' ').append(c);
+            }
+
+            @Override
+            public void output(int c) {
+                log.append('>').append(c).append('\n');
+            }
+        };
+    }
+
+    @Test
+    public void testSharedRotors() {
+        Machine mach = mach1();
+        Machine other = mach.newMachine();
+        other.insertRotors(new String[] { "B", "Beta", "I", "III", "IV" });
+        other.setRotors("QQQQ");
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        other.setPlugboard(new Permutation("", AZ));
+        StringBuilder result = new StringBuilder();
+        for (char c : "FROMHISSHOULDERHIAWATHA".toCharArray()) {
+            result.append(mach.convert(String.valueOf(c)));
+            other.convert(String.valueOf(c));
+        }
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW", result.toString());
+        assertEquals(0, ROTORS.get("I").setting());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testDuplicateRotor() {
+        Machine mach = new Machine(AZ, 5, 3, ROTORS.values());
+        mach.insertRotors(new String[] { "B", "Beta", "III", "I", "I" });
+    }
 }
@@ -1,14 +1,31 @@
 package enigma;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.OutputStream;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.NoSuchElementException;
-import java.util.Scanner;
-import ucb.util.CommandArgs;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.nio.file.StandardOpenOption.*;
 import static enigma.EnigmaException.*;
 
 /** Enigma simulator.
@@ -24,18 +41,68 @@ public final class Main {
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
      *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  otherwise with code 1.  With --compile, ARGS[0] names a
+     *  configuration file whose image (see ConfigImage) is written to the
+     *  file named by ARGS[1]; images may be given in place of
+     *  configuration files to skip parsing them.  With --stats, the time
+     *  spent in each stage of processing is printed on the standard error
+     *  at exit, and counters are published through JMX while running
+     *  (see Stats).  Output is printed in groups of --group=N letters
+     *  (default 5), with at most --width=N letters per line, or with no
+     *  limit (as by default) if N is 0.  Each section of the input is
+     *  converted by the Engine an EngineSelector chooses for it; with
+     *  --calibrate, the engines are first timed on this configuration to
+     *  inform the choice, and with --engine=NAME, the engine NAME is
+     *  used throughout, without replaying cached keystreams. */
     public static void main(String... args) {
         try {
-            CommandArgs options =
-                new CommandArgs("--verbose --=(.*){1,3}", args);
-            if (!options.ok()) {
+            List<String> names = new ArrayList<>();
+            List<String> options = new ArrayList<>();
+            int group = GROUP_SIZE, width = 0;
+            Engine engine = null;
+            for (String arg : args) {
+                if (arg.startsWith("--group=")) {
+                    group = number(arg);
+                    arg = "--group=";
+                } else if (arg.startsWith("--width=")) {
+                    width = number(arg);
+                    arg = "--width=";
+                } else if (arg.startsWith("--engine=")) {
+                    engine = Engine.forName(arg.substring(arg.indexOf('=')
+                                                          + 1));
+                    arg = "--engine=";
+                }
+                (arg.startsWith("--") ? options : names).add(arg);
+            }
+            if (!OPTIONS.containsAll(options)
+                    || new HashSet<>(options).size() != options.size()
+                    || names.isEmpty() || names.size() > 3
+                    || group <= 0 || width < 0
+                    || engine != null && options.contains("--calibrate")
+                    || options.contains("--compile") && names.size() != 2) {
                 throw error("Usage: java enigma.Main [--verbose] "
-                            + "[INPUT [OUTPUT]]");
+                            + "[--parallel] [--stats] [--group=N] "
+                            + "[--width=N] [--engine=NAME | --calibrate] "
+                            + "CONFIG [INPUT [OUTPUT]]\n"
+                            + "       java enigma.Main --compile CONFIG "
+                            + "IMAGE");
+            }
+            if (options.contains("--compile")) {
+                new Main(names.subList(0, 1)).compile(names.get(1));
+                return;
             }
 
-            _verbose = options.contains("--verbose");
-            new Main(options.get("--")).process();
+            Main main = new Main(names, options.contains("--verbose"));
+            main._parallel = options.contains("--parallel");
+            main._group = group;
+            main._width = width;
+            main._selector = new EngineSelector(engine);
+            main._calibrate = options.contains("--calibrate");
+            if (options.contains("--stats")) {
+                main._stats = new Stats(true);
+                main._stats.register();
+            }
+            main.process();
             return;
         } catch (EnigmaException excp) {
             System.err.printf("Error: %s%n", excp.getMessage());
@@ -43,76 +110,583 @@ public final class Main {
         System.exit(1);
     }
 
+    /** The options main accepts.  They are recognized by hand rather
+     *  than with CommandArgs, which compiles regular expressions that a
+     *  short run cannot afford to wait for. */
+    private static final List<String> OPTIONS =
+        List.of("--verbose", "--parallel", "--compile", "--stats",
+                "--group=", "--width=", "--engine=", "--calibrate");
+
+    /** Return the value of the option OPTION, of the form --NAME=N, or
+     *  -1 if N is not a decimal number in the range of an int. */
+    private static int number(String option) {
+        String value = option.substring(option.indexOf('=') + 1);
+        if (value.isEmpty() || value.length() > 9
+            || !value.chars().allMatch(c -> c >= '0' && c <= '9')) {
+            return -1;
+        }
+        return Integer.parseInt(value);
+    }
+
     /** Open the necessary files for non-option arguments ARGS (see comment
       *  on main). */
     Main(List<String> args) {
-        _config = getInput(args.get(0));
+        this(args, false);
+    }
+
+    /** Open the necessary files for non-option arguments ARGS (see comment
+      *  on main), tracing each character to the standard error iff
+      *  VERBOSE. */
+    Main(List<String> args, boolean verbose) {
+        _verbose = verbose;
+        _machine = null;
+        _keystreams = new KeystreamCache(KEYSTREAM_ENTRIES);
+        _configPath = Paths.get(args.get(0));
+        if (ConfigImage.isImage(_configPath)) {
+            _config = null;
+        } else {
+            _config = getInput(args.get(0));
+        }
 
         if (args.size() > 1) {
-            _input = getInput(args.get(1));
+            _input = getInputChannel(args.get(1));
         } else {
-            _input = new Scanner(System.in);
+            _input = Channels.newChannel(System.in);
         }
 
         if (args.size() > 2) {
             _output = getOutput(args.get(2));
         } else {
-            _output = System.out;
+            _output = Channels.newChannel(System.out);
         }
+        _stdout = args.size() <= 2;
+        _flushLines = args.size() == 1;
     }
 
-    /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
+    /** A Main applying MACHINE, which is already configured, to the
+     *  messages in INPUT, writing the results on OUTPUT and sharing the
+     *  keystreams cached in KEYSTREAMS. */
+    private Main(Machine machine, ReadableByteChannel input,
+                 WritableByteChannel output, KeystreamCache keystreams) {
+        _verbose = false;
+        _machine = machine;
+        _keystreams = keystreams;
+        _configPath = null;
+        _config = null;
+        _input = input;
+        _output = output;
+        _stdout = false;
+        _flushLines = false;
+    }
+
+    /** Return the output that applying MACHINE (configured, and
+     *  possibly with rotors inserted by an earlier call) to the messages
+     *  in INPUT would produce, as main would for an input file
+     *  containing INPUT.  Keystreams are cached in and taken from
+     *  KEYSTREAMS, which may be shared by concurrent calls, but MACHINE
+     *  may not be. */
+    static byte[] process(Machine machine, byte[] input,
+                          KeystreamCache keystreams) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        process(machine, input, output, keystreams, false);
+        return output.toByteArray();
+    }
+
+    /** Apply MACHINE to the messages in INPUT as process(MACHINE, INPUT,
+     *  KEYSTREAMS) does, writing the result on OUTPUT, and converting
+     *  sections on several threads, as with --parallel, iff PARALLEL.
+     *  On an error, OUTPUT holds what main would have written before
+     *  reporting it. */
+    static void process(Machine machine, byte[] input, OutputStream output,
+                        KeystreamCache keystreams, boolean parallel) {
+        Main main =
+            new Main(machine,
+                     Channels.newChannel(new ByteArrayInputStream(input)),
+                     Channels.newChannel(output), keystreams);
+        main._parallel = parallel;
+        main.process();
+    }
+
+    /** Set MACHINE, which must be configured, as the settings line
+     *  SETTINGS in an input file would. */
+    static void applySettings(Machine machine, String settings) {
+        new Main(machine, null, null, new KeystreamCache(1))
+            .setUp(machine, settings);
+    }
+
+    /** Return a machine with the configuration in the file (or image)
+     *  named NAME, with no rotors inserted. */
+    static Machine configure(String name) {
+        return new Main(Collections.singletonList(name)).readConfig();
+    }
+
+    /** Return the contents of the file named NAME, or of the standard
+     *  input if NAME is null. */
+    static String readText(String name) {
+        try {
+            byte[] bytes = name == null ? System.in.readAllBytes()
+                : Files.readAllBytes(Paths.get(name));
+            return new String(bytes, Charset.defaultCharset());
+        } catch (IOException excp) {
+            throw error("could not read %s", name == null ? "input" : name);
+        }
+    }
+
+    /** Return the tokens of the file named NAME. */
+    private Tokens getInput(String name) {
+        return Tokens.read(Paths.get(name));
+    }
+
+    /** Return a channel reading from the file named NAME. */
+    private ReadableByteChannel getInputChannel(String name) {
         try {
-            return new Scanner(new File(name));
+            return FileChannel.open(Paths.get(name));
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
-    private PrintStream getOutput(String name) {
+    /** Return a channel writing to the file named NAME, which is
+     *  created or truncated. */
+    private WritableByteChannel getOutput(String name) {
         try {
-            return new PrintStream(new File(name));
+            return FileChannel.open(Paths.get(name), CREATE, WRITE,
+                                    TRUNCATE_EXISTING);
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
+    /** Write an image of the configuration in _config to the file named
+     *  NAME. */
+    private void compile(String name) {
+        ConfigImage.write(readConfig(), Paths.get(name));
+    }
+
     /** Configure an Enigma machine from the contents of configuration
      *  file _config and apply it to the messages in _input, sending the
      *  results to _output. */
     private void process() {
+        long begin = System.nanoTime();
+        long start = _stats.start(Stats.Stage.CONFIG);
         Machine machine = readConfig();
+        _stats.record(Stats.Stage.CONFIG, start,
+                      machine.availableRotors().size());
+        if (_calibrate) {
+            _selector.calibrate(machine);
+        }
+        TraceRing trace = null;
+        if (_verbose) {
+            trace = new TraceRing(_alphabet, System.err);
+            machine.setTraceListener(trace);
+        }
+        _writer = new GroupWriter(_output, _alphabet,
+                                  Charset.defaultCharset(), _group, _width);
         try {
-            while (_input.hasNextLine()) {
-                String input = _input.nextLine();
-                if (input.contains("*")) {
-                    setUp(machine, input);
-                } else {
-                    String convert = machine.convert(input);
-                    printMessageLine(convert);
+            InputReader reader =
+                new InputReader(_input, Charset.defaultCharset());
+            reader.setStats(_stats);
+            if (_parallel && !_verbose) {
+                Sections sections = new Sections(machine);
+                try {
+                    reader.read(sections);
+                    sections.finish();
+                } finally {
+                    sections.shutdown();
                 }
+            } else {
+                reader.read(new Processor(machine, _writer,
+                                          _parallel && !_verbose));
             }
-
         } catch (NoSuchElementException excp) {
             throw new EnigmaException("Wrong!");
+        } finally {
+            if (trace != null) {
+                trace.close();
+            }
+            close();
+            if (_stats.enabled()) {
+                _stats.print(System.err, System.nanoTime() - begin);
+            }
+        }
+    }
+
+    /** Write any output still buffered, and close my input and output,
+     *  unless they are the standard ones, so that Main may be run many
+     *  times in one program. */
+    private void close() {
+        try {
+            if (_writer != null) {
+                _writer.flush();
+            }
+        } finally {
+            try {
+                if (_stdout) {
+                    System.out.flush();
+                } else {
+                    _output.close();
+                }
+                if (_input instanceof FileChannel) {
+                    _input.close();
+                }
+            } catch (IOException excp) {
+                throw error("could not close input or output");
+            }
+        }
+    }
+
+    /** Applies a machine to the lines of the input as they are read,
+     *  printing each message line in groups. */
+    private class Processor implements InputReader.Handler {
+        /** A processor using MACHINE and printing on OUT.  If SPLIT,
+         *  long message lines are converted on several threads. */
+        Processor(Machine machine, GroupWriter out, boolean split) {
+            _machine = machine;
+            _out = out;
+            _symbols = new int[split ? PARALLEL_BLOCK : 0];
+        }
+
+        @Override
+        public void settings(String line) {
+            setUp(_machine, line);
+            _configured = true;
+            _seen = 0;
+            _expected = 0;
+        }
+
+        @Override
+        public void message(CharBuffer chunk) {
+            if (!_configured) {
+                throw error("message precedes first settings line");
+            }
+            _seen += chunk.remaining();
+            _machine.setEngine(_selector.select(_machine,
+                                                Math.max(_seen, _expected)));
+            if (_symbols.length > 0) {
+                while (chunk.hasRemaining()) {
+                    _symbolCount =
+                        _machine.symbols(chunk, _symbols, _symbolCount);
+                    if (_symbolCount == _symbols.length
+                        || chunk.hasRemaining()) {
+                        flushSymbols();
+                    }
+                }
+                return;
+            }
+            while (chunk.hasRemaining()) {
+                _converted.clear();
+                long start = _stats.start(Stats.Stage.CONVERT);
+                try {
+                    _machine.convert(chunk, _converted);
+                } catch (EnigmaException excp) {
+                    _converted.flip();
+                    printGroups(_converted);
+                    throw excp;
+                }
+                _stats.record(Stats.Stage.CONVERT, start,
+                              _converted.position());
+                _converted.flip();
+                printGroups(_converted);
+            }
+        }
+
+        @Override
+        public void endMessage() {
+            flushSymbols();
+            _out.endLine();
+            if (_flushLines && _out == _writer) {
+                _out.flush();
+            }
+        }
+
+        /** Expect about LENGTH characters in the messages of the
+         *  current section, for the choice of engine. */
+        void expect(long length) {
+            _expected = length;
+        }
+
+        /** Convert and print the characters accumulated in _symbols,
+         *  splitting the work among threads. */
+        private void flushSymbols() {
+            if (_symbolCount == 0) {
+                return;
+            }
+            if (_parallelConverter == null) {
+                _parallelConverter = new ParallelConverter();
+            }
+            long start = _stats.start(Stats.Stage.CONVERT);
+            _parallelConverter.convert(_machine, _symbols, 0, _symbolCount,
+                                       _symbols, 0);
+            _stats.record(Stats.Stage.CONVERT, start, _symbolCount);
+            Alphabet alpha = _machine.alphabet();
+            for (int i = 0; i < _symbolCount; ) {
+                _converted.clear();
+                for (; i < _symbolCount && _converted.remaining() >= 2;
+                     i += 1) {
+                    int cp = alpha.codePoint(_symbols[i]);
+                    if (Character.isBmpCodePoint(cp)) {
+                        _converted.put((char) cp);
+                    } else {
+                        _converted.put(Character.highSurrogate(cp));
+                        _converted.put(Character.lowSurrogate(cp));
+                    }
+                }
+                _converted.flip();
+                printGroups(_converted);
+            }
+            _symbolCount = 0;
+        }
+
+        /** Print the chars of MSG, continuing the current output line in
+         *  groups (except that the last group of a line may have fewer
+         *  letters). */
+        private void printGroups(CharBuffer msg) {
+            long start = _stats.start(Stats.Stage.OUTPUT);
+            int count = msg.remaining();
+            _out.write(msg);
+            _stats.record(Stats.Stage.OUTPUT, start, count);
         }
+
+        /** The machine applied to messages. */
+        private final Machine _machine;
+        /** Destination of converted messages. */
+        private final GroupWriter _out;
+        /** True once a settings line has been seen. */
+        private boolean _configured;
+        /** Number of characters of the current section's messages
+         *  seen so far.  Each chunk is converted with the engine chosen
+         *  for a section of this length, or of the length expected if
+         *  that is more, so that a long section moves on to an engine
+         *  suited to its length as it is read. */
+        private long _seen;
+        /** Expected number of characters in the current section's
+         *  messages, or 0 if unknown. */
+        private long _expected;
+        /** Receives converted message chunks. */
+        private final CharBuffer _converted = CharBuffer.allocate(CHUNK);
+        /** When splitting lines, indices of the characters of the
+         *  current message line not yet converted; otherwise empty. */
+        private final int[] _symbols;
+        /** Number of valid entries in _symbols. */
+        private int _symbolCount;
+        /** Converter used with --parallel, created when first needed. */
+        private ParallelConverter _parallelConverter;
+    }
+
+    /** Processes the sections of the input (each settings line and the
+     *  message lines up to the next) concurrently, since every settings
+     *  line resets the machine.  Each section is converted by a worker
+     *  into a buffer, and the buffers are written in input order.  At
+     *  most MAX_PENDING sections are in progress or awaiting output at
+     *  once; reading stops until the oldest has been written.  A section
+     *  too long to buffer is instead processed as it is read, once all
+     *  sections before it have been written. */
+    private class Sections implements InputReader.Handler {
+        /** Sections of input for MACHINE. */
+        Sections(Machine machine) {
+            _machines = ThreadLocal.withInitial(machine::newMachine);
+            _streamed = new Processor(machine, _writer, true);
+            _pool = Executors.newFixedThreadPool(THREADS, r -> {
+                Thread t = new Thread(r, "enigma-section");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        @Override
+        public void settings(String line) {
+            endSection();
+            _settings = line;
+            _streaming = false;
+        }
+
+        @Override
+        public void message(CharBuffer chunk) {
+            if (!_streaming && _text.length() + chunk.remaining()
+                > SECTION_LIMIT) {
+                startStreaming();
+            }
+            if (_streaming) {
+                _streamed.message(chunk);
+            } else {
+                _text.append(chunk);
+                chunk.position(chunk.limit());
+            }
+        }
+
+        @Override
+        public void endMessage() {
+            if (_streaming) {
+                _streamed.endMessage();
+            } else {
+                _text.append('\n');
+            }
+        }
+
+        /** Process the last section and write all remaining output. */
+        void finish() {
+            endSection();
+            while (!_pending.isEmpty()) {
+                writeOldest();
+            }
+        }
+
+        /** Stop the worker threads. */
+        void shutdown() {
+            _pool.shutdownNow();
+        }
+
+        /** Hand the section read so far, if any, to a worker. */
+        private void endSection() {
+            if (!_streaming && (_settings != null || _text.length() > 0)) {
+                String settings = _settings;
+                char[] text = new char[_text.length()];
+                _text.getChars(0, text.length, text, 0);
+                _pending.add(_pool.submit(() -> convert(settings, text)));
+                while (_pending.size() >= MAX_PENDING
+                       || _pending.peek().isDone()) {
+                    writeOldest();
+                    if (_pending.isEmpty()) {
+                        break;
+                    }
+                }
+            }
+            _text.setLength(0);
+        }
+
+        /** Return the output for the section with settings line SETTINGS
+         *  (null if none) and message lines TEXT, each ended by a
+         *  newline.  If the section has an error, the output is that
+         *  written before it, as in sequential mode, along with the
+         *  error. */
+        private SectionOutput convert(String settings, char[] text) {
+            SectionOutput result = new SectionOutput();
+            Machine machine = _machines.get();
+            GroupWriter out =
+                new GroupWriter(Channels.newChannel(result.bytes),
+                                machine.alphabet(), Charset.defaultCharset(),
+                                _group, _width);
+            Processor processor = new Processor(machine, out, false);
+            try {
+                if (settings != null) {
+                    processor.settings(settings);
+                    processor.expect(text.length);
+                }
+                CharBuffer lines = CharBuffer.wrap(text);
+                for (int i = 0; i < text.length; i += 1) {
+                    if (text[i] == '\n') {
+                        lines.limit(i);
+                        processor.message(lines);
+                        processor.endMessage();
+                        lines.limit(text.length);
+                        lines.position(i + 1);
+                    }
+                }
+            } catch (EnigmaException excp) {
+                result.error = excp;
+            }
+            out.flush();
+            return result;
+        }
+
+        /** Wait for the oldest pending section and write its output,
+         *  after any output of a streamed section still buffered, then
+         *  throw its error, if it had one. */
+        private void writeOldest() {
+            try {
+                SectionOutput section = _pending.remove().get();
+                long start = _stats.start(Stats.Stage.OUTPUT);
+                _writer.flush();
+                section.bytes.writeTo(Channels.newOutputStream(_output));
+                _stats.record(Stats.Stage.OUTPUT, start, 0);
+                if (section.error != null) {
+                    throw section.error;
+                }
+            } catch (ExecutionException excp) {
+                if (excp.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) excp.getCause();
+                }
+                throw error("%s", excp.getCause());
+            } catch (InterruptedException | IOException excp) {
+                throw error("interrupted");
+            }
+        }
+
+        /** Switch to processing the current section as it is read, after
+         *  writing everything before it and the part of it buffered so
+         *  far. */
+        private void startStreaming() {
+            while (!_pending.isEmpty()) {
+                writeOldest();
+            }
+            _streaming = true;
+            if (_settings != null) {
+                _streamed.settings(_settings);
+            }
+            int start = 0;
+            for (int i = 0; i < _text.length(); i += 1) {
+                if (_text.charAt(i) == '\n') {
+                    _streamed.message(CharBuffer.wrap(_text, start, i));
+                    _streamed.endMessage();
+                    start = i + 1;
+                }
+            }
+            _streamed.message(CharBuffer.wrap(_text, start, _text.length()));
+            _text.setLength(0);
+        }
+
+        /** Per-thread machines for the workers. */
+        private final ThreadLocal<Machine> _machines;
+        /** Processor for sections too long to buffer. */
+        private final Processor _streamed;
+        /** The workers. */
+        private final ExecutorService _pool;
+        /** Output of sections handed to workers, oldest first. */
+        private final ArrayDeque<Future<SectionOutput>> _pending =
+            new ArrayDeque<>();
+        /** Settings line of the current section, or null before the
+         *  first. */
+        private String _settings;
+        /** Message lines of the current section read so far. */
+        private final StringBuilder _text = new StringBuilder();
+        /** True iff the current section is being processed as read. */
+        private boolean _streaming;
+    }
+
+    /** The output of a section converted by a worker with --parallel. */
+    private static class SectionOutput {
+        /** The bytes written. */
+        private final ByteArrayOutputStream bytes =
+            new ByteArrayOutputStream();
+        /** The error that ended the section, or null if none did. */
+        private EnigmaException error;
     }
 
     /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
+     *  file _config, or from the image at _configPath if _config is null,
+     *  or return _machine if it was supplied. */
     private Machine readConfig() {
+        if (_machine != null) {
+            _alphabet = _machine.alphabet();
+            return _machine;
+        }
+        if (_config == null) {
+            Machine machine = ConfigImage.read(_configPath);
+            _alphabet = machine.alphabet();
+            return machine;
+        }
         try {
             _alphabet = new Alphabet(_config.next());
             if (_alphabet.contains('*') || _alphabet.contains('(')
                     || _alphabet.contains(')')) {
                 throw new EnigmaException("Alphabet format not correct");
             }
-            if (_config.hasNext("\\D")) {
+            String next = _config.peek();
+            if (next != null && next.length() == 1
+                && (next.charAt(0) < '0' || next.charAt(0) > '9')) {
                 throw new EnigmaException("Alphabet must be one string.");
             }
-            if (!_config.hasNextLine()) {
+            if (!_config.hasRemaining()) {
                 throw new EnigmaException("No data found");
             }
 
@@ -153,7 +727,7 @@ public final class Main {
             String nameRotor = _config.next();
             String rotorTypeAndNotch = _config.next();
             String notch = rotorTypeAndNotch.substring(1);
-            while (_config.hasNext("\\s*\\(.*")) {
+            while (_config.hasNext() && _config.peek().startsWith("(")) {
                 String cycle = _config.next();
                 if (!(cycle.contains("(") && cycle.contains(")"))) {
                     throw new EnigmaException("Bruh parenthesisssss");
@@ -177,9 +751,12 @@ public final class Main {
     }
 
     /** Set M according to the specification given on SETTINGS,
-     *  which must have the format specified in the assignment. */
+     *  which must have the format specified in the assignment, except
+     *  that the rotor setting may be followed by a ring setting of the
+     *  same length (as in "* B Beta III IV I AXLE BCFG"). */
     private void setUp(Machine M, String settings) {
-        Scanner setting = new Scanner(settings);
+        long start = _stats.start(Stats.Stage.SETUP);
+        Tokens setting = new Tokens(settings);
         String[] rotors = new String[M.numRotors()];
         String plugboard = "";
         String temp = setting.next();
@@ -199,6 +776,9 @@ public final class Main {
         M.insertRotors(rotors);
         String set = setting.next();
         M.setRotors(set);
+        if (setting.hasNext() && !setting.peek().startsWith("(")) {
+            M.setRings(setting.next());
+        }
 
         int numRotors = M.numRotors();
         if (numRotors != index) {
@@ -212,38 +792,91 @@ public final class Main {
         }
         Permutation plugboardPerm = new Permutation(plugboard, M.alphabet());
         M.setPlugboard(plugboardPerm);
-    }
-    /** Return true iff verbose option specified. */
-    static boolean verbose() {
-        return _verbose;
-    }
-
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-        StringBuilder result = new StringBuilder();
-        for (int i = 0; i < msg.length(); i++) {
-            if (i % 5 == 0 && i != 0) {
-                result.append(" ").append(msg.charAt(i));
-            } else {
-                result.append(msg.charAt(i));
-            }
+        int steps = KEYSTREAM_CELLS / M.alphabet().size();
+        if (!_verbose && steps > 0 && _selector.forced() == null) {
+            M.useKeystream(_keystreams.get(settings.trim(),
+                                           k -> M.keystream(steps)));
         }
-        _output.println(result);
+        _stats.record(Stats.Stage.SETUP, start, 1);
     }
-
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
 
     /** Source of input messages. */
-    private final Scanner _input;
+    private final ReadableByteChannel _input;
+
+    /** Configured machine supplied in place of a configuration, or
+     *  null. */
+    private final Machine _machine;
+
+    /** Source of machine configuration, or null if it is an image. */
+    private final Tokens _config;
 
-    /** Source of machine configuration. */
-    private final Scanner _config;
+    /** Location of the machine configuration. */
+    private final Path _configPath;
 
     /** File for encoded/decoded messages. */
-    private final PrintStream _output;
+    private final WritableByteChannel _output;
+
+    /** True iff _output is the standard output. */
+    private final boolean _stdout;
+
+    /** True iff the output of each message line is written as soon as it
+     *  is converted, because input and output are the standard ones and
+     *  so may be interactive. */
+    private final boolean _flushLines;
+
+    /** Writes the messages on _output, while processing. */
+    private GroupWriter _writer;
+
+    /** Default number of characters in an output group. */
+    private static final int GROUP_SIZE = 5;
+
+    /** Number of characters in an output group. */
+    private int _group = GROUP_SIZE;
+
+    /** Most characters on an output line, or 0 for no limit. */
+    private int _width;
+
+    /** Size of the buffer for converted message chunks. */
+    private static final int CHUNK = 1 << 13;
+
+    /** Number of characters of a message line converted at once with
+     *  --parallel. */
+    private static final int PARALLEL_BLOCK = 1 << 22;
+
+    /** Number of worker threads used with --parallel. */
+    private static final int THREADS =
+        Runtime.getRuntime().availableProcessors();
+
+    /** Maximum number of sections in progress at once with --parallel. */
+    private static final int MAX_PENDING = 4 * THREADS;
+
+    /** Length of the longest section buffered with --parallel. */
+    private static final int SECTION_LIMIT = 1 << 20;
+
+    /** Keystreams for settings lines seen more than once. */
+    private final KeystreamCache _keystreams;
+
+    /** Maximum number of settings lines in _keystreams. */
+    static final int KEYSTREAM_ENTRIES = 4096;
+
+    /** Number of table entries (steps times alphabet size) in each
+     *  cached keystream. */
+    private static final int KEYSTREAM_CELLS = 1 << 14;
 
     /** True if --verbose specified. */
-    private static boolean _verbose;
+    private final boolean _verbose;
+
+    /** True if --parallel specified. */
+    private boolean _parallel;
+
+    /** Chooses the engine for each section. */
+    private EngineSelector _selector = new EngineSelector(null);
+
+    /** True if --calibrate specified. */
+    private boolean _calibrate;
+
+    /** Statistics on processing, kept if --stats specified. */
+    private Stats _stats = Stats.OFF;
 }
@@ -0,0 +1,144 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Main class, comparing the
+ *  output of --parallel with that of sequential processing.
+ *  @author Albert Abudumijitiaji
+ */
+public class MainTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTS ***** */
+
+    private static final Alphabet AZ = new Alphabet(TestUtils.UPPER_STRING);
+
+    /** Return the naval machine with reflector B and rotors Beta, III,
+     *  IV, and I, and no rotors inserted. */
+    private Machine machine() {
+        HashMap<String, String> nav = TestUtils.NAVALA;
+        return new Machine(AZ, 5, 3, List.of(
+            new Reflector("B", new Permutation(nav.get("B"), AZ)),
+            new FixedRotor("Beta", new Permutation(nav.get("Beta"), AZ)),
+            new MovingRotor("III", new Permutation(nav.get("III"), AZ),
+                            "V"),
+            new MovingRotor("IV", new Permutation(nav.get("IV"), AZ), "J"),
+            new MovingRotor("I", new Permutation(nav.get("I"), AZ), "Q")));
+    }
+
+    /** Return the output of processing INPUT, with --parallel iff
+     *  PARALLEL, followed by the message of the error that ended it, if
+     *  any. */
+    private String run(String input, boolean parallel) {
+        Charset charset = Charset.defaultCharset();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        String error = "";
+        try {
+            Main.process(machine(), input.getBytes(charset), output,
+                         new KeystreamCache(16), parallel);
+        } catch (EnigmaException excp) {
+            error = "Error: " + excp.getMessage();
+        }
+        return new String(output.toByteArray(), charset) + error;
+    }
+
+    /** Append to INPUT a section with a random settings line and LINES
+     *  random message lines of up to LENGTH letters each, drawn from
+     *  RANDOM. */
+    private static void section(StringBuilder input, Random random,
+                                int lines, int length) {
+        input.append("* B Beta III IV I ");
+        for (int i = 0; i < 4; i += 1) {
+            input.append(AZ.toChar(random.nextInt(26)));
+        }
+        input.append(" (").append(AZ.toChar(random.nextInt(13)))
+            .append(AZ.toChar(13 + random.nextInt(13))).append(")\n");
+        for (int j = 0; j < lines; j += 1) {
+            int n = random.nextInt(length + 1);
+            for (int i = 0; i < n; i += 1) {
+                input.append(AZ.toChar(random.nextInt(26)));
+                if (random.nextInt(7) == 0) {
+                    input.append(' ');
+                }
+            }
+            input.append('\n');
+        }
+    }
+
+    /** Check that processing INPUT gives the same output, and the same
+     *  error if any, with and without --parallel, and return the
+     *  output. */
+    private String checkSame(String input) {
+        String expected = run(input, false);
+        assertEquals(expected, run(input, true));
+        return expected;
+    }
+
+    @Test
+    public void testManySections() {
+        Random random = new Random(9);
+        StringBuilder input = new StringBuilder();
+        for (int s = 0; s < 300; s += 1) {
+            section(input, random, random.nextInt(4), 60);
+        }
+        String output = checkSame(input.toString());
+        assertFalse(output.contains("Error"));
+    }
+
+    @Test
+    public void testErrorInSection() {
+        Random random = new Random(10);
+        StringBuilder input = new StringBuilder();
+        for (int s = 0; s < 40; s += 1) {
+            section(input, random, 3, 60);
+        }
+        input.append("* B Beta III IV I AXLE\nFINE\nBAD1\nMORE\n");
+        for (int s = 0; s < 40; s += 1) {
+            section(input, random, 3, 60);
+        }
+        String output = checkSame(input.toString());
+        assertTrue(output.endsWith("HXGJ\nTCEError: character 1 not in "
+                                   + "alphabet"));
+    }
+
+    /** Sections longer than Main buffers with --parallel are converted
+     *  as they are read, after all sections before them. */
+    @Test
+    public void testStreamedSection() {
+        Random random = new Random(11);
+        StringBuilder input = new StringBuilder();
+        for (int s = 0; s < 10; s += 1) {
+            section(input, random, 2, 60);
+        }
+        input.append("* B Beta III IV I AXLE (AZ)\n");
+        for (int j = 0; j < 3; j += 1) {
+            for (int i = 0; i < 400000; i += 1) {
+                input.append(AZ.toChar(random.nextInt(26)));
+            }
+            input.append('\n');
+        }
+        for (int s = 0; s < 10; s += 1) {
+            section(input, random, 2, 60);
+        }
+        checkSame(input.toString());
+        input.append("* B Beta III IV I AXLE\n");
+        for (int i = 0; i < 1500000; i += 1) {
+            input.append(AZ.toChar(random.nextInt(26)));
+        }
+        input.append("1\n");
+        section(input, random, 2, 60);
+        String output = checkSame(input.toString());
+        assertTrue(output.endsWith("Error: character 1 not in alphabet"));
+    }
+}
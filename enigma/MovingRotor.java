@@ -12,6 +12,8 @@ class MovingRotor extends Rotor {
     private final Permutation _perm;
     /** The rotating positions of rotors. */
     private final String _notches;
+    /** Whether each position of mine is at a notch. */
+    private final boolean[] _atNotch;
     /** A rotor named NAME whose permutation in its default setting is
      *  PERM, and whose notches are at the positions indicated in NOTCHES.
      *  The Rotor is initally in its 0 setting (first character of its
@@ -22,16 +24,18 @@ class MovingRotor extends Rotor {
         _name = name;
         _perm = perm;
         _notches = notches;
+        _atNotch = new boolean[perm.size()];
+        for (int i = 0; i < notches.length(); i += 1) {
+            int posn = perm.alphabet().toInt(notches.charAt(i));
+            if (posn >= 0) {
+                _atNotch[posn] = true;
+            }
+        }
     }
 
     @Override
-    boolean atNotch() {
-        for (int i = 0; i < _notches.length(); i++) {
-            if (_notches.charAt(i) == alphabet().toChar(setting())) {
-                return true;
-            }
-        }
-        return false;
+    boolean atNotch(int posn) {
+        return _atNotch[posn];
     }
 
     @Override
@@ -44,6 +48,11 @@ class MovingRotor extends Rotor {
         set(permutation().wrap(setting() + 1));
     }
 
+    @Override
+    Rotor rewired(Permutation perm) {
+        return new MovingRotor(_name, perm, _notches);
+    }
+
     @Override
     String notches() {
         return _notches;
@@ -0,0 +1,313 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** Many copies of one machine, each with its own rotor settings and
+ *  plugboard (a "lane"), run in step.  Used to encrypt texts under
+ *  thousands of keys at once.  The state of lane L is kept in column L
+ *  of arrays indexed by slot and then by lane, and each stage of a
+ *  keystroke (the stepping of one slot, or the passage of the signal
+ *  through one rotor) is a loop over all lanes.  Most of these loops
+ *  look up tables at a different index in each lane, which the
+ *  compiler does not vectorize by itself, so when the Vector API
+ *  (jdk.incubator.vector) is present they are run by a VectorLanes as
+ *  gathers, with the lanes left over, or all of them when it is
+ *  absent, run by scalar loops without branches.  The results are
+ *  those of running a copy of the machine on each lane separately.
+ *  @author Albert Abudumijitiaji
+ */
+class MultiKeyMachine {
+
+    /** LANES copies of MACHINE, which must have its rotors inserted and
+     *  its plugboard set, all starting at MACHINE's current settings
+     *  and with its plugboard.  Later changes to MACHINE do not affect
+     *  me.  I use the Vector API if it is present. */
+    MultiKeyMachine(Machine machine, int lanes) {
+        this(machine, lanes, VECTOR);
+    }
+
+    /** LANES copies of MACHINE, as for MultiKeyMachine(MACHINE, LANES),
+     *  using the Vector API iff VECTOR, which requires that it be
+     *  present. */
+    MultiKeyMachine(Machine machine, int lanes, boolean vector) {
+        if (vector && !VECTOR) {
+            throw error("the Vector API is not present");
+        }
+        if (lanes <= 0) {
+            throw error("need at least one lane");
+        }
+        Machine proto = machine.copy();
+        _lanes = lanes;
+        _n = proto.alphabet().size();
+        _alphabet = proto.alphabet();
+        _numRotors = proto.numRotors();
+        int n = _n;
+        _forward = new int[_numRotors][2 * n];
+        _backward = new int[_numRotors][2 * n];
+        _rotates = new int[_numRotors];
+        _reflecting = new boolean[_numRotors];
+        _notches = new int[_numRotors][];
+        for (int k = 0; k < _numRotors; k += 1) {
+            Rotor rotor = proto.getRotor(k);
+            Permutation perm = rotor.permutation();
+            for (int x = 0; x < 2 * n; x += 1) {
+                _forward[k][x] = perm.permute(x % n);
+                _backward[k][x] = perm.invert(x % n);
+            }
+            _rotates[k] = rotor.rotates() ? 1 : 0;
+            _reflecting[k] = rotor.reflecting();
+            if (k > 0 && rotor.rotates()
+                && proto.getRotor(k - 1).rotates()) {
+                _notches[k] = new int[n];
+                for (int p = 0; p < n; p += 1) {
+                    _notches[k][p] = rotor.atNotch(p) ? 1 : 0;
+                }
+            }
+        }
+        _settings = new int[_numRotors][lanes];
+        _carry = new int[_numRotors + 1][lanes];
+        for (int k = 0; k < _numRotors; k += 1) {
+            Arrays.fill(_settings[k], proto.setting(k));
+        }
+        _plugboards = new int[lanes * n];
+        int[] plugs = proto.plugboard().toArray();
+        for (int l = 0; l < lanes; l += 1) {
+            System.arraycopy(plugs, 0, _plugboards, l * n, n);
+        }
+        _signal = new int[lanes];
+        _vector = vector ? new VectorLanes(lanes, n) : null;
+    }
+
+    /** Return the number of lanes I run. */
+    int lanes() {
+        return _lanes;
+    }
+
+    /** Return true iff I use the Vector API. */
+    boolean vectorized() {
+        return _vector != null;
+    }
+
+    /** Return the alphabet of my machine. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the setting of the rotor in slot K of LANE. */
+    int setting(int lane, int k) {
+        return _settings[k][lane];
+    }
+
+    /** Set the rotors of LANE according to SETTING, as for
+     *  Machine.setRotors(String). */
+    void setRotors(int lane, String setting) {
+        if (setting.length() != _numRotors - 1) {
+            throw error("Wrong size");
+        }
+        int[] posns = new int[_numRotors - 1];
+        for (int i = 0; i < posns.length; i += 1) {
+            posns[i] = _alphabet.toInt(setting.charAt(i));
+            if (posns[i] < 0) {
+                throw error("Bad character %c in setting",
+                            setting.charAt(i));
+            }
+        }
+        setRotors(lane, posns);
+    }
+
+    /** Set rotors 1 .. numRotors()-1 of LANE to POSNS[0 ..
+     *  numRotors()-2], as for Machine.setRotors(int[]). */
+    void setRotors(int lane, int[] posns) {
+        if (posns.length != _numRotors - 1) {
+            throw error("Wrong size");
+        }
+        for (int i = 0; i < posns.length; i += 1) {
+            if (posns[i] < 0 || posns[i] >= _n) {
+                throw error("Bad position %d in setting", posns[i]);
+            }
+            if (_reflecting[i + 1] && posns[i] != 0) {
+                throw error("reflector has only one position");
+            }
+        }
+        for (int i = 0; i < posns.length; i += 1) {
+            _settings[i + 1][lane] = posns[i];
+        }
+    }
+
+    /** Set the plugboard of LANE to PLUGBOARD. */
+    void setPlugboard(int lane, Permutation plugboard) {
+        if (plugboard.size() != _n) {
+            throw error("plugboard has the wrong alphabet");
+        }
+        for (int x = 0; x < _n; x += 1) {
+            _plugboards[lane * _n + x] = plugboard.permute(x);
+        }
+    }
+
+    /** Convert the symbol indices SRC[T * lanes() + L], for 0 <= T <
+     *  STEPS, as consecutive keystrokes on lane L, storing the results
+     *  in the same places of DST, for each lane L.  SRC and DST may be
+     *  the same array.  Allocates nothing. */
+    void convert(int[] src, int[] dst, int steps) {
+        for (int t = 0; t < steps; t += 1) {
+            step();
+            encipher(src, dst, t * _lanes);
+        }
+    }
+
+    /** Return the conversion of MSG by each lane, as a fresh message
+     *  per lane.  Whitespace in MSG is skipped. */
+    String[] convert(String msg) {
+        int[] symbols = msg.codePoints().filter(c -> !isSkipped(c))
+            .map(this::symbol).toArray();
+        int len = symbols.length;
+        int[] text = new int[len * _lanes];
+        for (int t = 0; t < len; t += 1) {
+            Arrays.fill(text, t * _lanes, (t + 1) * _lanes, symbols[t]);
+        }
+        convert(text, text, len);
+        String[] result = new String[_lanes];
+        StringBuilder out = new StringBuilder(len);
+        for (int l = 0; l < _lanes; l += 1) {
+            out.setLength(0);
+            for (int t = 0; t < len; t += 1) {
+                out.appendCodePoint(_alphabet.codePoint(text[t * _lanes
+                                                             + l]));
+            }
+            result[l] = out.toString();
+        }
+        return result;
+    }
+
+    /** Advance the rotors of every lane, as Machine.advanceRotors does
+     *  for one machine.  The notch flags of all slots are gathered
+     *  before any rotor moves; each rotor then adds 1 if it or the
+     *  rotor to its right is at a notch, wrapping to 0 at the end. */
+    private void step() {
+        int fast = _numRotors - 1;
+        int n = _n;
+        for (int k = 1; k <= fast; k += 1) {
+            int[] carry = _carry[k];
+            int[] notches = _notches[k];
+            if (notches == null) {
+                Arrays.fill(carry, 0);
+            } else {
+                int[] posns = _settings[k];
+                int l0 = _vector == null ? 0
+                    : _vector.gather(notches, posns, carry);
+                for (int l = l0; l < _lanes; l += 1) {
+                    carry[l] = notches[posns[l]];
+                }
+            }
+        }
+        Arrays.fill(_carry[fast + 1], 1);
+        for (int k = 1; k <= fast; k += 1) {
+            if (_rotates[k] == 0) {
+                continue;
+            }
+            int[] posns = _settings[k];
+            int[] here = _carry[k], right = _carry[k + 1];
+            int l0 = _vector == null ? 0
+                : _vector.advance(posns, here, right);
+            for (int l = l0; l < _lanes; l += 1) {
+                int p = posns[l] + (here[l] | right[l]);
+                posns[l] = p == n ? 0 : p;
+            }
+        }
+    }
+
+    /** Pass SRC[BASE + L] through the plugboard, rotors, and plugboard
+     *  of each lane L into DST[BASE + L]. */
+    private void encipher(int[] src, int[] dst, int base) {
+        int n = _n;
+        int[] signal = _signal;
+        int l0 = _vector == null ? 0
+            : _vector.plugIn(_plugboards, src, base, signal);
+        for (int l = l0; l < _lanes; l += 1) {
+            signal[l] = _plugboards[l * n + src[base + l]];
+        }
+        for (int k = _numRotors - 1; k >= 0; k -= 1) {
+            pass(_forward[k], _settings[k]);
+        }
+        for (int k = 1; k < _numRotors; k += 1) {
+            pass(_backward[k], _settings[k]);
+        }
+        l0 = _vector == null ? 0
+            : _vector.plugOut(_plugboards, signal, dst, base);
+        for (int l = l0; l < _lanes; l += 1) {
+            dst[base + l] = _plugboards[l * n + signal[l]];
+        }
+    }
+
+    /** Replace each lane's signal C by TABLE[C + P] - P, modulo the
+     *  alphabet size, where P is the lane's entry in POSNS.  TABLE
+     *  holds a rotor's permutation twice over, so that C + P needs no
+     *  reduction. */
+    private void pass(int[] table, int[] posns) {
+        int n = _n;
+        int[] signal = _signal;
+        int l0 = _vector == null ? 0 : _vector.pass(table, posns, signal);
+        for (int l = l0; l < _lanes; l += 1) {
+            int c = table[signal[l] + posns[l]] - posns[l];
+            signal[l] = c + (n & (c >> 31));
+        }
+    }
+
+    /** Return true iff code point CP is whitespace not in my alphabet,
+     *  which is skipped. */
+    private boolean isSkipped(int cp) {
+        return _alphabet.indexOf(cp) < 0 && Character.isWhitespace(cp);
+    }
+
+    /** Return the index of code point CP in my alphabet. */
+    private int symbol(int cp) {
+        int c = _alphabet.indexOf(cp);
+        if (c < 0) {
+            throw error("character %s not in alphabet",
+                        new String(Character.toChars(cp)));
+        }
+        return c;
+    }
+
+    /** True iff the Vector API is present, as when the JVM was started
+     *  with --add-modules jdk.incubator.vector. */
+    private static final boolean VECTOR =
+        ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    /** Number of lanes. */
+    private final int _lanes;
+    /** Size of my alphabet. */
+    private final int _n;
+    /** Common alphabet of my rotors. */
+    private final Alphabet _alphabet;
+    /** Number of rotor slots. */
+    private final int _numRotors;
+    /** For each slot, its rotor's permutation, twice over. */
+    private final int[][] _forward;
+    /** For each slot, the inverse of its rotor's permutation, twice
+     *  over. */
+    private final int[][] _backward;
+    /** For each slot, 1 if its rotor moves and 0 otherwise. */
+    private final int[] _rotates;
+    /** For each slot, whether its rotor is a reflector. */
+    private final boolean[] _reflecting;
+    /** For each slot whose rotor can push the rotor to its left, 1 at
+     *  the positions where it does and 0 elsewhere; null for other
+     *  slots. */
+    private final int[][] _notches;
+    /** Rotor settings, by slot and then lane. */
+    private final int[][] _settings;
+    /** During step, 1 for each slot and lane whose rotor is at a notch
+     *  that pushes, by slot and then lane.  Row numRotors is all 1, so
+     *  that the fast rotor always moves. */
+    private final int[][] _carry;
+    /** Plugboard permutations, N entries per lane. */
+    private final int[] _plugboards;
+    /** Signal in each lane during encipher. */
+    private final int[] _signal;
+    /** Runs the loops over lanes with the Vector API, or null if I use
+     *  only scalar loops. */
+    private final VectorLanes _vector;
+}
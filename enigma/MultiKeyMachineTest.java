@@ -0,0 +1,111 @@
+package enigma;
+
+import java.util.HashMap;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the MultiKeyMachine class.
+ *  @author Albert Abudumijitiaji
+ */
+public class MultiKeyMachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    private static final Alphabet AZ = new Alphabet(TestUtils.UPPER_STRING);
+
+    private static final HashMap<String, Rotor> ROTORS = new HashMap<>();
+
+    static {
+        HashMap<String, String> nav = TestUtils.NAVALA;
+        ROTORS.put("B", new Reflector("B", new Permutation(nav.get("B"), AZ)));
+        ROTORS.put("Beta",
+                new FixedRotor("Beta",
+                        new Permutation(nav.get("Beta"), AZ)));
+        ROTORS.put("III",
+                new MovingRotor("III",
+                        new Permutation(nav.get("III"), AZ), "VC"));
+        ROTORS.put("IV",
+                new MovingRotor("IV", new Permutation(nav.get("IV"), AZ),
+                        "JZ"));
+        ROTORS.put("I",
+                new MovingRotor("I", new Permutation(nav.get("I"), AZ),
+                        "Q"));
+    }
+
+    private static final String[] ROTORS1 = { "B", "Beta", "III", "IV", "I" };
+    private static final String SETTING1 = "AXLE";
+
+    /** Return a machine with rotors ROTORS1 inserted and set to
+     *  SETTING1, and no plugboard. */
+    private Machine mach1() {
+        Machine mach = new Machine(AZ, 5, 3, ROTORS.values());
+        mach.insertRotors(ROTORS1);
+        mach.setRotors(SETTING1);
+        return mach;
+    }
+
+    @Test
+    public void testMultiKey() {
+        Machine proto = mach1();
+        proto.setPlugboard(new Permutation("", AZ));
+        checkMultiKey(proto, false);
+        if (new MultiKeyMachine(proto, 1).vectorized()) {
+            checkMultiKey(proto, true);
+        }
+        MultiKeyMachine same = new MultiKeyMachine(proto, 2);
+        same.setRotors(1, "AXLF");
+        String[] msgs = same.convert("FROM HIS SHOULDER");
+        assertEquals(proto.convert("FROMHISSHOULDER"), msgs[0]);
+        Machine other = mach1();
+        other.setPlugboard(new Permutation("", AZ));
+        other.setRotors("AXLF");
+        assertEquals(other.convert("FROMHISSHOULDER"), msgs[1]);
+    }
+
+    /** Check that a MultiKeyMachine copying PROTO, using the Vector API
+     *  iff VECTOR, gives the results of a Machine per lane, on a number
+     *  of lanes that no vector length divides. */
+    private void checkMultiKey(Machine proto, boolean vector) {
+        Random random = new Random(17);
+        int lanes = 37, len = 2000;
+        Machine[] machines = new Machine[lanes];
+        MultiKeyMachine multi = new MultiKeyMachine(proto, lanes, vector);
+        assertEquals(vector, multi.vectorized());
+        int[] text = new int[len * lanes];
+        for (int l = 0; l < lanes; l += 1) {
+            machines[l] = mach1();
+            StringBuilder setting = new StringBuilder();
+            for (int i = 0; i < 4; i += 1) {
+                setting.append(AZ.toChar(random.nextInt(26)));
+            }
+            machines[l].setRotors(setting.toString());
+            multi.setRotors(l, setting.toString());
+            String plugs = "(" + AZ.toChar(l % 26) + AZ.toChar(25 - l % 26)
+                + ")";
+            machines[l].setPlugboard(new Permutation(plugs, AZ));
+            multi.setPlugboard(l, new Permutation(plugs, AZ));
+            for (int t = 0; t < len; t += 1) {
+                text[t * lanes + l] = random.nextInt(26);
+            }
+        }
+        int[] result = new int[text.length];
+        multi.convert(text, result, len);
+        for (int l = 0; l < lanes; l += 1) {
+            for (int t = 0; t < len; t += 1) {
+                assertEquals("lane " + l + " at " + t + " vector " + vector,
+                             machines[l].convert(text[t * lanes + l]),
+                             result[t * lanes + l]);
+            }
+            for (int k = 1; k < 5; k += 1) {
+                assertEquals(machines[l].setting(k), multi.setting(l, k));
+            }
+        }
+    }
+}
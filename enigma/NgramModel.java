@@ -0,0 +1,169 @@
+package enigma;
+
+import java.util.Scanner;
+
+import static enigma.EnigmaException.*;
+
+/** Log-probabilities of the n-grams (bigrams, trigrams, quadgrams, ...)
+ *  of some language, used to score trial decryptions.  The table is a
+ *  flat array indexed by the n-gram read as a base-N number, where N is
+ *  the alphabet size, so scoring a text of symbol indices is a rolling
+ *  multiply-add and one array load per character.
+ *  @author Albert Abudumijitiaji
+ */
+class NgramModel {
+
+    /** A model of the LENGTH-grams over ALPHABET with log-probabilities
+     *  LOGPROBS, indexed as described above. */
+    private NgramModel(Alphabet alphabet, int length, float[] logProbs) {
+        _alphabet = alphabet;
+        _length = length;
+        _logProbs = logProbs;
+        int modulus = 1;
+        for (int i = 1; i < length; i += 1) {
+            modulus *= alphabet.size();
+        }
+        _modulus = modulus;
+    }
+
+    /** Return the model read from TABLE, whose lines each contain an
+     *  n-gram over ALPHABET and its count, as in
+     *      TION 1234
+     *  All n-grams must have the same length, from 1 to MAX_LENGTH.
+     *  N-grams absent from TABLE are given a count of 0.01. */
+    static NgramModel read(Alphabet alphabet, Scanner table) {
+        float[] counts = null;
+        int length = 0;
+        double total = 0;
+        while (table.hasNext()) {
+            String ngram = table.next();
+            if (!table.hasNextLong()) {
+                throw error("missing count for n-gram %s", ngram);
+            }
+            long count = table.nextLong();
+            int[] symbols = ngram.codePoints().map(alphabet::indexOf)
+                .toArray();
+            if (counts == null) {
+                length = symbols.length;
+                counts = new float[tableSize(alphabet, length)];
+            } else if (symbols.length != length) {
+                throw error("n-grams %s and others differ in length", ngram);
+            }
+            int index = 0;
+            for (int c : symbols) {
+                if (c < 0) {
+                    throw error("n-gram %s not in alphabet", ngram);
+                }
+                index = index * alphabet.size() + c;
+            }
+            counts[index] += count;
+            total += count;
+        }
+        if (counts == null) {
+            throw error("empty n-gram table");
+        }
+        return fromCounts(alphabet, length, counts, total);
+    }
+
+    /** Return the model of the LENGTH-grams of TEXT, whose characters
+     *  not in ALPHABET are skipped. */
+    static NgramModel train(Alphabet alphabet, int length,
+                            CharSequence text) {
+        float[] counts = new float[tableSize(alphabet, length)];
+        int modulus = counts.length / alphabet.size();
+        int index = 0, run = 0;
+        double total = 0;
+        for (int i = 0; i < text.length();
+             i += Character.charCount(Character.codePointAt(text, i))) {
+            int c = alphabet.indexOf(Character.codePointAt(text, i));
+            if (c < 0) {
+                continue;
+            }
+            index = (index % modulus) * alphabet.size() + c;
+            run += 1;
+            if (run >= length) {
+                counts[index] += 1;
+                total += 1;
+            }
+        }
+        if (total == 0) {
+            throw error("text too short for %d-grams", length);
+        }
+        return fromCounts(alphabet, length, counts, total);
+    }
+
+    /** Return the model of LENGTH-grams over ALPHABET with counts
+     *  COUNTS, totaling TOTAL, which it converts to log-probabilities
+     *  in place. */
+    private static NgramModel fromCounts(Alphabet alphabet, int length,
+                                         float[] counts, double total) {
+        float floor = (float) Math.log10(UNSEEN / total);
+        for (int i = 0; i < counts.length; i += 1) {
+            counts[i] = counts[i] == 0 ? floor
+                : (float) Math.log10(counts[i] / total);
+        }
+        return new NgramModel(alphabet, length, counts);
+    }
+
+    /** Return the number of LENGTH-grams over ALPHABET. */
+    private static int tableSize(Alphabet alphabet, int length) {
+        if (length < 1 || length > MAX_LENGTH) {
+            throw error("n-grams must have 1 to %d characters", MAX_LENGTH);
+        }
+        long size = 1;
+        for (int i = 0; i < length; i += 1) {
+            size *= alphabet.size();
+            if (size > MAX_TABLE) {
+                throw error("too many %d-grams over this alphabet", length);
+            }
+        }
+        return (int) size;
+    }
+
+    /** Return the alphabet of my n-grams. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the length of my n-grams. */
+    int length() {
+        return _length;
+    }
+
+    /** Return the sum of the log-probabilities of the n-grams of the
+     *  text TEXT[0 .. LEN-1], given as symbol indices. */
+    double score(int[] text, int len) {
+        int n = _alphabet.size();
+        int index = 0;
+        double result = 0;
+        for (int i = 0; i < len; i += 1) {
+            index = (index % _modulus) * n + text[i];
+            if (i + 1 >= _length) {
+                result += _logProbs[index];
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d-grams over %s (%d entries)", _length,
+                             _alphabet, _logProbs.length);
+    }
+
+    /** Longest n-grams modeled. */
+    static final int MAX_LENGTH = 8;
+    /** Largest number of n-grams modeled. */
+    private static final long MAX_TABLE = 1 << 26;
+    /** Count assumed for n-grams never seen. */
+    private static final double UNSEEN = 0.01;
+
+    /** Alphabet of my n-grams. */
+    private final Alphabet _alphabet;
+    /** Length of my n-grams. */
+    private final int _length;
+    /** N to the power _length - 1. */
+    private final int _modulus;
+    /** Log-probability of each n-gram. */
+    private final float[] _logProbs;
+}
@@ -0,0 +1,97 @@
+package enigma;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Converts one long message on several threads.  The message is split
+ *  into segments; each segment is converted by its own copy of the
+ *  machine, first moved (with Machine.seek) to the state the original
+ *  would be in on reaching that segment.  The result is identical to
+ *  converting the message sequentially.
+ *  @author Albert Abudumijitiaji
+ */
+class ParallelConverter {
+
+    /** A converter running on POOL that gives each task at least
+     *  SEGMENT characters. */
+    ParallelConverter(ForkJoinPool pool, int segment) {
+        _pool = pool;
+        _segment = segment;
+    }
+
+    /** A converter using the common pool and a default segment size. */
+    ParallelConverter() {
+        this(ForkJoinPool.commonPool(), DEFAULT_SEGMENT);
+    }
+
+    /** Convert the character indices SRC[FROM .. TO-1] into DST starting
+     *  at DSTPOS, as MACHINE.convert would, and leave MACHINE in the
+     *  state it would then be in.  SRC and DST may be the same array,
+     *  and the ranges may overlap.  A traced MACHINE converts
+     *  sequentially, so that its listener sees every keystroke in
+     *  order. */
+    void convert(Machine machine, int[] src, int from, int to,
+                 int[] dst, int dstPos) {
+        if (Machine.overlaps(src, from, to, dst, dstPos)) {
+            System.arraycopy(src, from, dst, dstPos, to - from);
+            convert(machine, dst, dstPos, dstPos + to - from, dst, dstPos);
+            return;
+        }
+        if (to - from < 2 * _segment || machine.traced()) {
+            machine.convert(src, from, to, dst, dstPos);
+            return;
+        }
+        Machine start = machine.copy();
+        _pool.invoke(new Segment(start, src, from, from, to, dst, dstPos));
+        machine.seek(to - from);
+    }
+
+    /** The task of converting part of a message. */
+    private class Segment extends RecursiveAction {
+        /** Convert SRC[LO .. HI-1] into DST, where the message begins at
+         *  SRC[BASE] and DST[DSTBASE], and START is in the state for the
+         *  beginning of the message. */
+        Segment(Machine start, int[] src, int base, int lo, int hi,
+                int[] dst, int dstBase) {
+            _start = start;
+            _src = src;
+            _base = base;
+            _lo = lo;
+            _hi = hi;
+            _dst = dst;
+            _dstBase = dstBase;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo <= _segment) {
+                Machine machine = _start.copy();
+                machine.seek(_lo - _base);
+                machine.convert(_src, _lo, _hi, _dst, _dstBase + _lo - _base);
+            } else {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Segment(_start, _src, _base, _lo, mid,
+                                      _dst, _dstBase),
+                          new Segment(_start, _src, _base, mid, _hi,
+                                      _dst, _dstBase));
+            }
+        }
+
+        /** Machine in the state for the beginning of the message. */
+        private final Machine _start;
+        /** Message and result. */
+        private final int[] _src, _dst;
+        /** Position of the message in _src and of the result in _dst. */
+        private final int _base, _dstBase;
+        /** Bounds of this segment in _src. */
+        private final int _lo, _hi;
+    }
+
+    /** Default minimum number of characters per task. */
+    static final int DEFAULT_SEGMENT = 1 << 16;
+
+    /** Pool running the conversions. */
+    private final ForkJoinPool _pool;
+    /** Minimum number of characters per task. */
+    private final int _segment;
+}
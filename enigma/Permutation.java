@@ -1,6 +1,6 @@
 package enigma;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 import static enigma.EnigmaException.*;
 
@@ -16,21 +16,85 @@ class Permutation {
      *  Whitespace is ignored. */
     Permutation(String cycles, Alphabet alphabet) {
         _alphabet = alphabet;
-        cycles = cycles.replaceAll("[()]", " ");
-        for (String cycle: cycles.split(" ")) {
-            addCycle(cycle);
+        _forward = identity(alphabet.size());
+        _inverse = identity(alphabet.size());
+        _derangement = true;
+        parseCycles(cycles);
+    }
+
+    /** Set this Permutation to the one mapping each index K of ALPHABET
+     *  to FORWARD[K], which must be a permutation of 0 .. size()-1.  Here,
+     *  only fixed points of FORWARD keep it from being a derangement. */
+    Permutation(Alphabet alphabet, int[] forward) {
+        _alphabet = alphabet;
+        _forward = forward.clone();
+        _inverse = new int[forward.length];
+        if (forward.length != alphabet.size()) {
+            throw error("permutation table has wrong size");
+        }
+        Arrays.fill(_inverse, -1);
+        _derangement = true;
+        for (int k = 0; k < forward.length; k += 1) {
+            int c = forward[k];
+            if (c < 0 || c >= forward.length || _inverse[c] >= 0) {
+                throw error("permutation table is not a permutation");
+            }
+            _inverse[c] = k;
+            _derangement &= c != k;
+        }
+    }
+
+    /** Return an array of length N mapping each index to itself. */
+    private static int[] identity(int n) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = i;
+        }
+        return result;
+    }
+
+    /** Compile CYCLES into my forward and inverse tables.  Parentheses
+     *  and whitespace both delimit cycles, so each maximal run of other
+     *  characters is one cycle. */
+    private void parseCycles(String cycles) {
+        int[] cycle = new int[size()];
+        boolean[] seen = new boolean[size()];
+        int len = 0;
+        for (int i = 0; i <= cycles.length(); ) {
+            int ch = i < cycles.length() ? cycles.codePointAt(i) : ' ';
+            i += Character.charCount(ch);
+            if (ch == '(' || ch == ')' || Character.isWhitespace(ch)) {
+                if (len > 0) {
+                    addCycle(cycle, len);
+                    len = 0;
+                }
+            } else {
+                int k = _alphabet.indexOf(ch);
+                if (k < 0) {
+                    throw error("character %c not in alphabet", ch);
+                }
+                if (seen[k]) {
+                    throw error("character %c appears twice in permutation",
+                                ch);
+                }
+                seen[k] = true;
+                cycle[len] = k;
+                len += 1;
+            }
         }
     }
 
-    /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
-     *  c0c1...cm. */
-    private void addCycle(String cycle) {
-        char[] cycleArray = cycle.toCharArray();
-        for (int i = 0; i < cycle.length(); i++) {
-            char curr = cycleArray[(i) % cycle.length()];
-            char next = cycleArray[(i + 1) % cycle.length()];
-            permMap.put(curr, next);
-            invertMap.put(next, curr);
+    /** Add the cycle c0->c1->...->cm->c0 to the permutation, where the
+     *  indices c0...cm are the first LEN entries of CYCLE. */
+    private void addCycle(int[] cycle, int len) {
+        if (len == 1) {
+            _derangement = false;
+        }
+        for (int i = 0; i < len; i += 1) {
+            int curr = cycle[i];
+            int next = cycle[i + 1 == len ? 0 : i + 1];
+            _forward[curr] = next;
+            _inverse[next] = curr;
         }
     }
 
@@ -45,25 +109,19 @@ class Permutation {
 
     /** Returns the size of the alphabet I permute. */
     int size() {
-        return _alphabet.size();
+        return _forward.length;
     }
 
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        if (permMap.containsKey(_alphabet.toChar(wrap(p)))) {
-            return _alphabet.toInt(permMap.get(_alphabet.toChar(wrap(p))));
-        }
-        return p;
+        return _forward[wrap(p)];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        if (invertMap.containsKey(_alphabet.toChar(wrap(c)))) {
-            return _alphabet.toInt(invertMap.get(_alphabet.toChar(wrap(c))));
-        }
-        return c;
+        return _inverse[wrap(c)];
     }
 
     /** Return the result of applying this permutation to the index of P
@@ -77,25 +135,30 @@ class Permutation {
         return _alphabet.toChar(invert(_alphabet.toInt(c)));
     }
 
+    /** Return a new array whose K-th entry is permute(K). */
+    int[] toArray() {
+        return _forward.clone();
+    }
+
     /** Return the alphabet used to initialize this Permutation. */
     Alphabet alphabet() {
         return _alphabet;
     }
 
     /** Return true iff this permutation is a derangement (i.e., a
-     *  permutation for which no value maps to itself). */
+     *  permutation for which no value maps to itself).  As in the cycle
+     *  notation it was built from, only explicitly listed one-element
+     *  cycles count as fixed points. */
     boolean derangement() {
-        for (char ch : permMap.keySet()) {
-            if (ch == permMap.get(ch)) {
-                return false;
-            }
-        } return true;
+        return _derangement;
     }
 
     /** Alphabet of this permutation. */
     private final Alphabet _alphabet;
-    /** Hashmaps for normal cycles. */
-    private final HashMap<Character, Character> permMap = new HashMap<>();
-    /** Hashmaps for inverted cycles. */
-    private final HashMap<Character, Character> invertMap = new HashMap<>();
+    /** Forward table: _forward[p] is the image of index p. */
+    private final int[] _forward;
+    /** Inverse table: _inverse[c] is the preimage of index c. */
+    private final int[] _inverse;
+    /** True iff no cycle given to the constructor has length one. */
+    private boolean _derangement;
 }
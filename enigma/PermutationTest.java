@@ -96,6 +96,21 @@ public class PermutationTest {
         assertEquals(cycle2.invert(0), 2);
     }
 
+    @Test
+    public void checkWrapAndCompactCycles() {
+        Permutation cycle = new Permutation("(AB)(CD)  ( EF )", UPPER);
+        assertEquals(1, cycle.permute(26));
+        assertEquals(0, cycle.permute(-25));
+        assertEquals(3, cycle.permute(2));
+        assertEquals(4, cycle.invert(5));
+        assertEquals(25, cycle.permute(25));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkRepeatedCharacter() {
+        new Permutation("(ABC) (CD)", UPPER);
+    }
+
     @Test
     public void checkDerangement() {
         Alphabet alpha = new Alphabet("AB");
@@ -23,6 +23,11 @@ class Reflector extends FixedRotor {
         return true;
     }
 
+    @Override
+    Rotor rewired(Permutation perm) {
+        return new Reflector(_name, perm);
+    }
+
     @Override
     void set(int posn) {
         if (posn != 0) {
@@ -62,21 +62,54 @@ class Rotor {
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
-        int result = _permutation.permute(permutation().wrap(p + setting()));
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(result));
-        }
-        return _permutation.wrap(result - setting());
+        return convertForward(p, setting());
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
-        int result = _permutation.invert(permutation().wrap(e + setting()));
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(result));
+        return convertBackward(e, setting());
+    }
+
+    /** Return the conversion of P (an integer in the range 0..size()-1)
+     *  according to my permutation when I am at setting POSN, regardless
+     *  of my own setting.  Machines keep their rotors' settings
+     *  themselves and use this, so that rotors can be shared. */
+    int convertForward(int p, int posn) {
+        int result = _permutation.permute(permutation().wrap(p + posn));
+        return _permutation.wrap(result - posn);
+    }
+
+    /** Return the conversion of E (an integer in the range 0..size()-1)
+     *  according to the inverse of my permutation when I am at setting
+     *  POSN. */
+    int convertBackward(int e, int posn) {
+        int result = _permutation.invert(permutation().wrap(e + posn));
+        return _permutation.wrap(result - posn);
+    }
+
+    /** Return a rotor like me, but with its alphabet ring turned to ring
+     *  setting RING (0 being my own).  At each setting it converts as I
+     *  do RING positions earlier, while its notches stay with the
+     *  letters of the ring.  The turn is applied to the permutation
+     *  once, here, so a ring costs nothing per character.  Returns me if
+     *  RING is 0. */
+    Rotor withRing(int ring) {
+        if (ring == 0) {
+            return this;
+        }
+        int[] forward = new int[size()];
+        for (int x = 0; x < forward.length; x += 1) {
+            forward[x] = _permutation.wrap(
+                _permutation.permute(_permutation.wrap(x - ring)) + ring);
         }
-        return _permutation.wrap(result - setting());
+        return rewired(new Permutation(alphabet(), forward));
+    }
+
+    /** Return a rotor of my kind, with my name and notches, whose
+     *  permutation is PERM. */
+    Rotor rewired(Permutation perm) {
+        return new Rotor(_name, perm);
     }
 
     /** Returns the positions of the notches, as a string giving the letters
@@ -88,6 +121,12 @@ class Rotor {
     /** Returns true iff I am positioned to allow the rotor to my left
      *  to advance. */
     boolean atNotch() {
+        return atNotch(setting());
+    }
+
+    /** Returns true iff I would allow the rotor to my left to advance
+     *  if I were at setting POSN. */
+    boolean atNotch(int posn) {
         return false;
     }
 
@@ -0,0 +1,323 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** A long-running server that loads a configuration once and applies it
+ *  to the inputs sent by clients, so that each request does not pay for
+ *  starting a JVM, compiling the simulator, and parsing the
+ *  configuration.
+ *
+ *  Clients connect to a Unix domain socket or to a TCP port on the
+ *  loopback address.  A request is a big-endian int N followed by N
+ *  bytes: the contents of an input file for Main (settings lines and
+ *  messages).  The response is a status byte, OK or FAILED, then a
+ *  big-endian int N and N bytes: the output Main would write for that
+ *  input, or the message of the error it would report.  A connection
+ *  may carry any number of requests, and may send several before
+ *  reading the responses.
+ *
+ *  Each connection is served on its own thread (a virtual thread where
+ *  the JDK provides them), with its own machine, which stays warm
+ *  between requests.  Requests that have already arrived together are
+ *  handled as one batch, whose responses are written with a single
+ *  flush.  Keystreams cached for repeated settings lines are shared by
+ *  all connections.
+ *  @author Albert Abudumijitiaji
+ */
+class Server implements AutoCloseable {
+
+    /** Serve requests as specified by ARGS, where ARGS.length is 1:
+     *  ARGS[0] names a configuration file (or image).  With
+     *  --socket=PATH, listens on a Unix domain socket at PATH (replacing
+     *  a socket left there by a server no longer listening, but no other
+     *  file); otherwise on the loopback address at
+     *  --port=PORT (default DEFAULT_PORT; 0 for any free port).  Prints
+     *  the address on the standard error once listening.  Exits with
+     *  code 1 on errors. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--socket=(.+) --port=(\\d+) --=(.*)",
+                                args);
+            if (!options.ok() || options.contains("--socket")
+                && options.contains("--port")) {
+                throw error("Usage: java enigma.Server [--socket=PATH | "
+                            + "--port=PORT] CONFIG");
+            }
+            Machine machine = Main.configure(options.getFirst("--"));
+            try (Server server =
+                 new Server(machine, address(options.getFirst("--socket"),
+                                             options.getFirst("--port")))) {
+                System.err.printf("listening on %s%n", server.address());
+                server.serve();
+            }
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return the address for the Unix domain socket SOCKET, if not
+     *  null, or else for the loopback TCP port PORT, if not null, or else
+     *  for DEFAULT_PORT.  PORT must be a number from 0 to MAX_PORT. */
+    static SocketAddress address(String socket, String port) {
+        if (socket != null) {
+            return UnixDomainSocketAddress.of(socket);
+        }
+        if (port == null) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                         DEFAULT_PORT);
+        }
+        int number;
+        try {
+            number = Integer.parseInt(port);
+        } catch (NumberFormatException excp) {
+            number = -1;
+        }
+        if (number < 0 || number > MAX_PORT) {
+            throw error("bad port: %s", port);
+        }
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                     number);
+    }
+
+    /** A server applying copies of MACHINE, which must be configured,
+     *  to requests arriving at ADDRESS.  Starts listening at once; call
+     *  serve to accept connections. */
+    Server(Machine machine, SocketAddress address) {
+        _machine = machine;
+        try {
+            if (address instanceof UnixDomainSocketAddress) {
+                _socketPath = ((UnixDomainSocketAddress) address).getPath();
+                removeStaleSocket(_socketPath);
+                _channel = ServerSocketChannel.open(StandardProtocolFamily
+                                                    .UNIX);
+            } else {
+                _socketPath = null;
+                _channel = ServerSocketChannel.open();
+            }
+            _channel.bind(address);
+        } catch (IOException excp) {
+            throw error("could not listen on %s: %s", address,
+                        excp.getMessage());
+        }
+        _connections = connectionExecutor();
+    }
+
+    /** Delete the Unix domain socket at PATH, if there is one and no
+     *  server is listening on it, as when a server was killed before it
+     *  could remove it.  Throws an error if PATH is any other kind of
+     *  file or a server is listening on it. */
+    private static void removeStaleSocket(Path path) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path,
+                                              BasicFileAttributes.class,
+                                              LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException excp) {
+            return;
+        }
+        if (!attributes.isOther() || !isSocket(path)) {
+            throw error("%s exists and is not a socket", path);
+        }
+        try (SocketChannel probe =
+             SocketChannel.open(UnixDomainSocketAddress.of(path))) {
+            throw error("a server is already listening on %s", path);
+        } catch (ConnectException excp) {
+            /* Nothing is listening: the socket is stale. */
+        }
+        Files.delete(path);
+    }
+
+    /** Return true iff PATH, which exists and is neither a regular file,
+     *  directory, nor symbolic link, is a socket.  Where the file system
+     *  does not report the file type, assumes that it is. */
+    private static boolean isSocket(Path path) throws IOException {
+        try {
+            int mode = (Integer) Files.getAttribute(path, "unix:mode",
+                                                    LinkOption.NOFOLLOW_LINKS);
+            return (mode & S_IFMT) == S_IFSOCK;
+        } catch (UnsupportedOperationException | IllegalArgumentException
+                 excp) {
+            return true;
+        }
+    }
+
+    /** Return the address at which I listen. */
+    SocketAddress address() {
+        try {
+            return _channel.getLocalAddress();
+        } catch (IOException excp) {
+            throw error("server closed");
+        }
+    }
+
+    /** Accept and serve connections until I am closed. */
+    void serve() {
+        while (true) {
+            SocketChannel client;
+            try {
+                client = _channel.accept();
+            } catch (ClosedChannelException excp) {
+                return;
+            } catch (IOException excp) {
+                throw error("could not accept connection: %s",
+                            excp.getMessage());
+            }
+            _connections.execute(() -> handle(client));
+        }
+    }
+
+    /** Stop accepting connections, and stop serving the current ones
+     *  once their pending requests are answered. */
+    @Override
+    public void close() {
+        try {
+            _channel.close();
+            if (_socketPath != null) {
+                Files.deleteIfExists(_socketPath);
+            }
+        } catch (IOException excp) {
+            throw error("could not close server: %s", excp.getMessage());
+        } finally {
+            _connections.shutdown();
+        }
+    }
+
+    /** Serve the requests arriving on CLIENT until it closes. */
+    private void handle(SocketChannel client) {
+        Machine machine = _machine.newMachine();
+        try (client) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(client), BUFFER_SIZE));
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(client),
+                                         BUFFER_SIZE));
+            List<byte[]> batch = new ArrayList<>();
+            while (true) {
+                batch.clear();
+                try {
+                    batch.add(readRequest(in));
+                } catch (EOFException excp) {
+                    return;
+                }
+                while (batch.size() < MAX_BATCH
+                       && in.available() >= Integer.BYTES) {
+                    batch.add(readRequest(in));
+                }
+                for (byte[] request : batch) {
+                    respond(machine, request, out);
+                }
+                out.flush();
+            }
+        } catch (IOException | EnigmaException excp) {
+            /* The client went away or broke the protocol; drop it. */
+            return;
+        }
+    }
+
+    /** Return the body of the next request on IN. */
+    private static byte[] readRequest(DataInputStream in)
+        throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_REQUEST) {
+            throw error("bad request length %d", length);
+        }
+        byte[] result = new byte[length];
+        in.readFully(result);
+        return result;
+    }
+
+    /** Apply MACHINE to REQUEST, writing the response on OUT. */
+    private void respond(Machine machine, byte[] request,
+                         DataOutputStream out) throws IOException {
+        byte status;
+        byte[] body;
+        try {
+            body = Main.process(machine, request, _keystreams);
+            status = OK;
+        } catch (EnigmaException excp) {
+            body = String.valueOf(excp.getMessage())
+                .getBytes(StandardCharsets.UTF_8);
+            status = FAILED;
+        }
+        out.writeByte(status);
+        out.writeInt(body.length);
+        out.write(body);
+    }
+
+    /** Return an executor that runs each task on a new virtual thread,
+     *  if this JDK has them, and otherwise on a pooled daemon thread. */
+    private static ExecutorService connectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException excp) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread result = new Thread(task, "enigma-connection");
+                result.setDaemon(true);
+                return result;
+            });
+        }
+    }
+
+    /** Status byte of a successful response. */
+    static final byte OK = 0;
+    /** Status byte of a response reporting an error. */
+    static final byte FAILED = 1;
+    /** TCP port used if none is specified. */
+    static final int DEFAULT_PORT = 7193;
+    /** Largest TCP port. */
+    static final int MAX_PORT = 0xffff;
+    /** Largest request accepted, in bytes. */
+    static final int MAX_REQUEST = 1 << 26;
+    /** Largest number of requests handled as one batch. */
+    private static final int MAX_BATCH = 64;
+    /** Size of the buffers on each connection. */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Mask of the file type bits of a Unix file mode. */
+    private static final int S_IFMT = 0170000;
+    /** File type bits of a socket in a Unix file mode. */
+    private static final int S_IFSOCK = 0140000;
+
+    /** Configured machine copied for each connection. */
+    private final Machine _machine;
+    /** Keystreams shared by all connections. */
+    private final KeystreamCache _keystreams =
+        new KeystreamCache(Main.KEYSTREAM_ENTRIES);
+    /** Channel on which I accept connections. */
+    private final ServerSocketChannel _channel;
+    /** Path of my Unix domain socket, or null if I use TCP. */
+    private final Path _socketPath;
+    /** Runs the handler of each connection. */
+    private final ExecutorService _connections;
+}
@@ -0,0 +1,170 @@
+package enigma;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Server and Client classes.
+ *  @author Albert Abudumijitiaji
+ */
+public class ServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTS ***** */
+
+    private static final Alphabet AZ = new Alphabet(TestUtils.UPPER_STRING);
+
+    private static final String INPUT =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+        + "FROM HIS SHOULDER HIAWATHA\n";
+
+    private static final String OUTPUT = "QVPQS OKOIL PUBKJ ZPISF XDW\n";
+
+    /** Return the naval machine with reflector B and rotors Beta, III,
+     *  IV, and I, and no rotors inserted. */
+    private Machine machine() {
+        HashMap<String, String> nav = TestUtils.NAVALA;
+        return new Machine(AZ, 5, 3, List.of(
+            new Reflector("B", new Permutation(nav.get("B"), AZ)),
+            new FixedRotor("Beta", new Permutation(nav.get("Beta"), AZ)),
+            new MovingRotor("III", new Permutation(nav.get("III"), AZ),
+                            "V"),
+            new MovingRotor("IV", new Permutation(nav.get("IV"), AZ), "J"),
+            new MovingRotor("I", new Permutation(nav.get("I"), AZ), "Q")));
+    }
+
+    /** Return S in the default charset. */
+    private static byte[] bytes(String s) {
+        return s.getBytes(Charset.defaultCharset());
+    }
+
+    /** Start serving requests on SERVER in the background. */
+    private static void start(Server server) {
+        Thread thread = new Thread(server::serve);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Test
+    public void testTcp() {
+        try (Server server = new Server(machine(), new InetSocketAddress(
+                 InetAddress.getLoopbackAddress(), 0))) {
+            start(server);
+            try (Client client = new Client(server.address())) {
+                for (int i = 0; i < 3; i += 1) {
+                    assertEquals(OUTPUT, new String(
+                        client.process(bytes(INPUT)),
+                        Charset.defaultCharset()));
+                }
+                try {
+                    client.process(bytes("HELLO\n"));
+                    fail("message without settings accepted");
+                } catch (EnigmaException excp) {
+                    /* Expected. */
+                }
+                client.process(bytes(""));
+            }
+        }
+    }
+
+    @Test
+    public void testPipelined() throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        Path socket = dir.resolve("server.sock");
+        try (Server server = new Server(machine(),
+                                        UnixDomainSocketAddress.of(socket))) {
+            start(server);
+            try (Client client = new Client(server.address())) {
+                for (int i = 0; i < 20; i += 1) {
+                    client.send(bytes(INPUT));
+                }
+                for (int i = 0; i < 20; i += 1) {
+                    assertEquals(OUTPUT, new String(client.receive(),
+                                                    Charset.defaultCharset()));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(socket);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testSocketPath() throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        Path socket = dir.resolve("server.sock");
+        try {
+            Files.writeString(socket, "keep");
+            assertRefused(socket);
+            assertEquals("keep", Files.readString(socket));
+            Files.delete(socket);
+            Files.createDirectory(socket);
+            assertRefused(socket);
+            assertTrue(Files.isDirectory(socket));
+            Files.delete(socket);
+
+            ServerSocketChannel stale =
+                ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            stale.bind(UnixDomainSocketAddress.of(socket));
+            stale.close();
+            assertTrue(Files.exists(socket));
+            try (Server server = new Server(machine(),
+                                            UnixDomainSocketAddress
+                                            .of(socket))) {
+                start(server);
+                assertRefused(socket);
+                try (Client client = new Client(server.address())) {
+                    assertEquals(OUTPUT, new String(
+                        client.process(bytes(INPUT)),
+                        Charset.defaultCharset()));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(socket);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testBadPort() {
+        for (String port : new String[] { "65536", "99999",
+                                          "99999999999" }) {
+            try {
+                Server.address(null, port);
+                fail("port " + port + " accepted");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+        assertEquals(Server.MAX_PORT,
+                     ((InetSocketAddress) Server.address(null, "65535"))
+                     .getPort());
+    }
+
+    /** Check that a server may not listen on a Unix domain socket at
+     *  SOCKET. */
+    private void assertRefused(Path socket) {
+        try (Server server = new Server(machine(),
+                                        UnixDomainSocketAddress.of(socket))) {
+            fail("server replaced " + socket);
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package enigma;
+
+/** A fixed-length array of non-negative values stored in the narrowest
+ *  of byte, short, or int that holds them all.  Used for lookup tables
+ *  whose entries are alphabet indices, which are small for the usual
+ *  alphabets but need not be.
+ *  @author Albert Abudumijitiaji
+ */
+abstract class Slots {
+
+    /** Return LENGTH zeroed slots able to hold values from 0 to MAX. */
+    static Slots of(int length, int max) {
+        if (max <= BYTE_MASK) {
+            return new ByteSlots(length);
+        } else if (max <= SHORT_MASK) {
+            return new ShortSlots(length);
+        } else {
+            return new IntSlots(length);
+        }
+    }
+
+    /** Return my number of slots. */
+    abstract int length();
+
+    /** Return the value in slot I. */
+    abstract int get(int i);
+
+    /** Set slot I to V. */
+    abstract void set(int i, int v);
+
+    /** Slots holding values up to BYTE_MASK. */
+    private static final class ByteSlots extends Slots {
+        /** LENGTH empty slots. */
+        ByteSlots(int length) {
+            _data = new byte[length];
+        }
+
+        @Override
+        int length() {
+            return _data.length;
+        }
+
+        @Override
+        int get(int i) {
+            return _data[i] & BYTE_MASK;
+        }
+
+        @Override
+        void set(int i, int v) {
+            _data[i] = (byte) v;
+        }
+
+        /** Slot values. */
+        private final byte[] _data;
+    }
+
+    /** Slots holding values up to SHORT_MASK. */
+    private static final class ShortSlots extends Slots {
+        /** LENGTH empty slots. */
+        ShortSlots(int length) {
+            _data = new short[length];
+        }
+
+        @Override
+        int length() {
+            return _data.length;
+        }
+
+        @Override
+        int get(int i) {
+            return _data[i] & SHORT_MASK;
+        }
+
+        @Override
+        void set(int i, int v) {
+            _data[i] = (short) v;
+        }
+
+        /** Slot values. */
+        private final short[] _data;
+    }
+
+    /** Slots holding arbitrary non-negative values. */
+    private static final class IntSlots extends Slots {
+        /** LENGTH empty slots. */
+        IntSlots(int length) {
+            _data = new int[length];
+        }
+
+        @Override
+        int length() {
+            return _data.length;
+        }
+
+        @Override
+        int get(int i) {
+            return _data[i];
+        }
+
+        @Override
+        void set(int i, int v) {
+            _data[i] = v;
+        }
+
+        /** Slot values. */
+        private final int[] _data;
+    }
+
+    /** Masks for reading unsigned bytes and shorts. */
+    private static final int BYTE_MASK = 0xff, SHORT_MASK = 0xffff;
+}
@@ -0,0 +1,508 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** Ciphertext-only recovery of Enigma settings.  First, every rotor
+ *  order and setting is tried with an empty plugboard, and the trial
+ *  decryptions are ranked by their index of coincidence, which stays
+ *  high for nearly-right settings since the plugboard only relabels
+ *  some letters.  Then the plugboard of each of the best candidates is
+ *  found by hill-climbing: plugging or unplugging one pair of letters
+ *  at a time and keeping the change if it raises the n-gram score of
+ *  the decryption.
+ *
+ *  Both stages run on a ForkJoinPool.  Trial decryptions work on
+ *  symbol indices in preallocated arrays, and while climbing, the
+ *  rotors' substitution at each position is computed once (see
+ *  Machine.scramblers), so each trial plugboard costs only table
+ *  lookups.  Results depend only on the inputs and the seed, not on
+ *  the number of threads.
+ *  @author Albert Abudumijitiaji
+ */
+class Solver {
+
+    /** Search for the settings of a message, as specified by ARGS.
+     *  ARGS[0] names a configuration file (or image) describing the
+     *  machine, and ARGS[1], if present, names a file containing the
+     *  ciphertext, which otherwise comes from the standard input.  Each
+     *  --ngrams=FILE option names a table of n-gram counts (see
+     *  NgramModel.read); their scores are added.  --seed=S sets the
+     *  seed for random restarts, --candidates=K the number of settings
+     *  whose plugboards are climbed, and --show=M the number of results
+     *  printed, best first, each as a score and a settings line.  Exits
+     *  with code 1 on errors. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--ngrams=(.+){1,3} --seed=(-?\\d+) "
+                                + "--candidates=(\\d+) --show=(\\d+) "
+                                + "--=(.*){1,2}", args);
+            if (!options.ok() || !options.contains("--ngrams")) {
+                throw error("Usage: java enigma.Solver --ngrams=TABLE... "
+                            + "[--seed=S] [--candidates=K] [--show=M] "
+                            + "CONFIG [CIPHERTEXT]");
+            }
+            List<String> names = options.get("--");
+            Machine machine = Main.configure(names.get(0));
+            String ciphertext =
+                Main.readText(names.size() > 1 ? names.get(1) : null);
+            List<NgramModel> models = new ArrayList<>();
+            for (String table : options.get("--ngrams")) {
+                try (Scanner in = new Scanner(new File(table))) {
+                    models.add(NgramModel.read(machine.alphabet(), in));
+                } catch (IOException excp) {
+                    throw error("could not open %s", table);
+                }
+            }
+            Solver solver =
+                new Solver(machine, ciphertext, models,
+                           Long.parseLong(option(options, "--seed", "0")));
+            solver.setCandidates(Integer.parseInt(
+                option(options, "--candidates", "" + DEFAULT_CANDIDATES)));
+            List<Solution> solutions = solver.run(ForkJoinPool.commonPool());
+            int show = Integer.parseInt(option(options, "--show", "10"));
+            for (Solution s : solutions.subList(0, Math.min(show,
+                                                  solutions.size()))) {
+                System.out.printf("%.2f %s%n", s.score(), s);
+            }
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return the value of option NAME in OPTIONS, or DEFLT if absent. */
+    private static String option(CommandArgs options, String name,
+                                 String deflt) {
+        return options.contains(name) ? options.getFirst(name) : deflt;
+    }
+
+    /** A solver for CIPHERTEXT, using the alphabet, rotor slots, and
+     *  available rotors of MACHINE, scoring decryptions by the sum of
+     *  the scores of MODELS, and seeding its random choices from SEED.
+     *  Whitespace in CIPHERTEXT is ignored. */
+    Solver(Machine machine, String ciphertext, List<NgramModel> models,
+           long seed) {
+        _machine = machine;
+        _alphabet = machine.alphabet();
+        _cipher = ciphertext.codePoints()
+            .filter(cp -> !Character.isWhitespace(cp))
+            .map(cp -> {
+                int c = _alphabet.indexOf(cp);
+                if (c < 0) {
+                    throw error("character %s not in alphabet",
+                                new String(Character.toChars(cp)));
+                }
+                return c;
+            }).toArray();
+        if (_cipher.length == 0) {
+            throw error("empty ciphertext");
+        }
+        for (NgramModel model : models) {
+            if (model.alphabet().size() != _alphabet.size()) {
+                throw error("n-gram table uses a different alphabet");
+            }
+        }
+        _models = models.toArray(new NgramModel[0]);
+        _seed = seed;
+        _orders = machine.rotorOrders();
+    }
+
+    /** Climb the plugboards of the best K settings found by index of
+     *  coincidence. */
+    void setCandidates(int k) {
+        if (k <= 0) {
+            throw error("need at least one candidate");
+        }
+        _candidates = k;
+    }
+
+    /** Set the number of times the climb for each candidate starts
+     *  over, from a random plugboard, to K. */
+    void setRestarts(int k) {
+        _restarts = k;
+    }
+
+    /** Return the solutions found using the threads of POOL, best
+     *  first. */
+    List<Solution> run(ForkJoinPool pool) {
+        List<Candidate> candidates = new ArrayList<>(
+            pool.invoke(new Search(0, _orders.size() * _alphabet.size())));
+        candidates.sort(BEST_FIRST);
+        List<Future<Solution>> climbs = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i += 1) {
+            Candidate candidate = candidates.get(i);
+            Random random = new Random(_seed + SEED_STRIDE * i);
+            int rank = i;
+            climbs.add(pool.submit(() -> climb(candidate, rank, random)));
+        }
+        List<Solution> result = new ArrayList<>();
+        try {
+            for (Future<Solution> climb : climbs) {
+                result.add(climb.get());
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw error("search failed: %s", excp.getCause());
+        }
+        result.sort(Comparator.comparingDouble((Solution s) -> -s._score)
+                    .thenComparingInt(s -> s._rank));
+        return result;
+    }
+
+    /** A result: rotors, settings, and plugboard, with the score of the
+     *  decryption they give. */
+    static final class Solution {
+        /** A solution with rotors ROTORS at setting SETTING and
+         *  plugboard cycles PLUGBOARD, giving a decryption with n-gram
+         *  score SCORE, climbed from the RANK'th best candidate. */
+        Solution(String[] rotors, String setting, String plugboard,
+                 double score, int rank) {
+            _rotors = rotors;
+            _setting = setting;
+            _plugboard = plugboard;
+            _score = score;
+            _rank = rank;
+        }
+
+        /** Return the names of the rotors, reflector first. */
+        String[] rotors() {
+            return _rotors.clone();
+        }
+
+        /** Return the rotor settings at the start of the message. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return the plugboard, as cycles. */
+        String plugboard() {
+            return _plugboard;
+        }
+
+        /** Return the n-gram score of the decryption. */
+        double score() {
+            return _score;
+        }
+
+        /** Return this solution as a settings line. */
+        @Override
+        public String toString() {
+            StringBuilder line = new StringBuilder("*");
+            for (String name : _rotors) {
+                line.append(' ').append(name);
+            }
+            line.append(' ').append(_setting);
+            if (!_plugboard.isEmpty()) {
+                line.append(' ').append(_plugboard);
+            }
+            return line.toString();
+        }
+
+        /** Rotor names, reflector first. */
+        private final String[] _rotors;
+        /** Rotor settings at the start of the message. */
+        private final String _setting;
+        /** Plugboard cycles. */
+        private final String _plugboard;
+        /** N-gram score. */
+        private final double _score;
+        /** Rank of the candidate climbed. */
+        private final int _rank;
+    }
+
+    /** A rotor order and setting with the index of coincidence of its
+     *  decryption, given as the number of pairs of equal letters in it,
+     *  which is proportional. */
+    private static final class Candidate {
+        /** The candidate for rotor order ORDER (an index into _orders)
+         *  at setting SETTING (the settings of rotors 1 .. read as a
+         *  base-N number), with COINCIDENCES pairs of equal letters. */
+        Candidate(int order, long setting, long coincidences) {
+            this.order = order;
+            this.setting = setting;
+            this.coincidences = coincidences;
+        }
+
+        /** Index of the rotor order. */
+        private final int order;
+        /** Settings of rotors 1 .. as a base-N number. */
+        private final long setting;
+        /** Pairs of equal letters in the decryption. */
+        private final long coincidences;
+    }
+
+    /** Orders candidates best first, breaking ties by order and
+     *  setting, so that the result does not depend on the order in
+     *  which they were found. */
+    private static final Comparator<Candidate> BEST_FIRST =
+        Comparator.comparingLong((Candidate c) -> -c.coincidences)
+        .thenComparingInt(c -> c.order)
+        .thenComparingLong(c -> c.setting);
+
+    /** A task returning the best candidates among units [_lo .. _hi-1],
+     *  where unit U is rotor order U / N with its leftmost rotor at
+     *  setting U % N, worst first. */
+    private final class Search
+        extends RecursiveTask<PriorityQueue<Candidate>> {
+        /** A task for units LO .. HI-1. */
+        Search(int lo, int hi) {
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected PriorityQueue<Candidate> compute() {
+            if (_hi - _lo > 1) {
+                int mid = (_lo + _hi) >>> 1;
+                Search left = new Search(_lo, mid);
+                left.fork();
+                PriorityQueue<Candidate> result =
+                    new Search(mid, _hi).compute();
+                for (Candidate c : left.join()) {
+                    offer(result, c.order, c.setting, c.coincidences);
+                }
+                return result;
+            }
+            return search(_lo);
+        }
+
+        /** Range of units. */
+        private final int _lo, _hi;
+    }
+
+    /** Return the best candidates of unit UNIT (see Search). */
+    private PriorityQueue<Candidate> search(int unit) {
+        int n = _alphabet.size();
+        int order = unit / n;
+        PriorityQueue<Candidate> result =
+            new PriorityQueue<>(BEST_FIRST.reversed());
+        Machine mach = _machine.newMachine();
+        mach.insertRotors(_orders.get(order));
+        mach.setPlugboard(new Permutation("", _alphabet));
+        int[] settings = new int[_machine.numRotors() - 1];
+        int[] plain = new int[_cipher.length];
+        int[] counts = new int[n];
+        settings[0] = unit % n;
+        do {
+            mach.setRotors(settings);
+            mach.convert(_cipher, 0, _cipher.length, plain, 0);
+            Arrays.fill(counts, 0);
+            long coincidences = 0;
+            for (int c : plain) {
+                coincidences += counts[c];
+                counts[c] += 1;
+            }
+            long setting = 0;
+            for (int s : settings) {
+                setting = setting * n + s;
+            }
+            offer(result, order, setting, coincidences);
+        } while (next(settings));
+        return result;
+    }
+
+    /** Add the candidate for ORDER, SETTING, and COINCIDENCES to
+     *  QUEUE, a heap with the worst candidate first, if it is among
+     *  the best _candidates. */
+    private void offer(PriorityQueue<Candidate> queue, int order,
+                       long setting, long coincidences) {
+        if (queue.size() == _candidates) {
+            Candidate worst = queue.peek();
+            if (coincidences < worst.coincidences
+                || coincidences == worst.coincidences
+                   && BEST_FIRST.compare(worst, new Candidate(
+                       order, setting, coincidences)) <= 0) {
+                return;
+            }
+            queue.poll();
+        }
+        queue.add(new Candidate(order, setting, coincidences));
+    }
+
+    /** Advance SETTINGS[1 ..] like an odometer, and return false once
+     *  they have all been visited. */
+    private boolean next(int[] settings) {
+        for (int k = settings.length - 1; k > 0; k -= 1) {
+            settings[k] += 1;
+            if (settings[k] < _alphabet.size()) {
+                return true;
+            }
+            settings[k] = 0;
+        }
+        return false;
+    }
+
+    /** Return the best solution found by climbing the plugboard of
+     *  CANDIDATE, the RANK'th best, using RANDOM to choose starting
+     *  points and the order in which pairs are tried. */
+    private Solution climb(Candidate candidate, int rank, Random random) {
+        int n = _alphabet.size();
+        int[] settings = new int[_machine.numRotors() - 1];
+        long setting = candidate.setting;
+        for (int k = settings.length - 1; k >= 0; k -= 1) {
+            settings[k] = (int) (setting % n);
+            setting /= n;
+        }
+        Machine mach = _machine.newMachine();
+        mach.insertRotors(_orders.get(candidate.order));
+        mach.setRotors(settings);
+        int[] table = new int[_cipher.length * n];
+        mach.scramblers(_cipher.length, table);
+
+        int[] pairs = new int[n * (n - 1)];
+        int numPairs = 0;
+        for (int a = 0; a < n; a += 1) {
+            for (int b = a + 1; b < n; b += 1) {
+                pairs[numPairs++] = a;
+                pairs[numPairs++] = b;
+            }
+        }
+        int[] plain = new int[_cipher.length];
+        int[] plug = new int[n], best = new int[n];
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int restart = 0; restart <= _restarts; restart += 1) {
+            for (int a = 0; a < n; a += 1) {
+                plug[a] = a;
+            }
+            for (int i = 0; restart > 0 && i < RANDOM_PAIRS; i += 1) {
+                toggle(plug, random.nextInt(n), random.nextInt(n));
+            }
+            shuffle(pairs, numPairs / 2, random);
+            double score = score(table, plug, plain);
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                for (int i = 0; i < numPairs; i += 2) {
+                    int a = pairs[i], b = pairs[i + 1];
+                    int pa = plug[a], pb = plug[b];
+                    toggle(plug, a, b);
+                    double trial = score(table, plug, plain);
+                    if (trial > score) {
+                        score = trial;
+                        improved = true;
+                    } else {
+                        plug[a] = pa;
+                        plug[pa] = a;
+                        plug[b] = pb;
+                        plug[pb] = b;
+                    }
+                }
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                System.arraycopy(plug, 0, best, 0, n);
+            }
+        }
+        return new Solution(_orders.get(candidate.order),
+                            settingString(settings), cycles(best),
+                            bestScore, rank);
+    }
+
+    /** Plug A and B together in the plugboard PLUG, first unplugging
+     *  them from any other letters, or unplug them if they were plugged
+     *  together. */
+    private static void toggle(int[] plug, int a, int b) {
+        int pa = plug[a], pb = plug[b];
+        plug[pa] = pa;
+        plug[pb] = pb;
+        plug[a] = a;
+        plug[b] = b;
+        if (pa != b) {
+            plug[a] = b;
+            plug[b] = a;
+        }
+    }
+
+    /** Shuffle the first COUNT pairs of elements of PAIRS using
+     *  RANDOM. */
+    private static void shuffle(int[] pairs, int count, Random random) {
+        for (int i = count - 1; i > 0; i -= 1) {
+            int j = random.nextInt(i + 1);
+            for (int k = 0; k < 2; k += 1) {
+                int t = pairs[2 * i + k];
+                pairs[2 * i + k] = pairs[2 * j + k];
+                pairs[2 * j + k] = t;
+            }
+        }
+    }
+
+    /** Return the n-gram score of the decryption with plugboard PLUG
+     *  and rotor substitutions TABLE, using PLAIN to hold it. */
+    private double score(int[] table, int[] plug, int[] plain) {
+        int n = _alphabet.size();
+        for (int t = 0; t < _cipher.length; t += 1) {
+            plain[t] = plug[table[t * n + plug[_cipher[t]]]];
+        }
+        double result = 0;
+        for (NgramModel model : _models) {
+            result += model.score(plain, plain.length);
+        }
+        return result;
+    }
+
+    /** Return SETTINGS as letters. */
+    private String settingString(int[] settings) {
+        StringBuilder result = new StringBuilder();
+        for (int s : settings) {
+            result.appendCodePoint(_alphabet.codePoint(s));
+        }
+        return result.toString();
+    }
+
+    /** Return the plugboard PLUG as cycles. */
+    private String cycles(int[] plug) {
+        StringBuilder result = new StringBuilder();
+        for (int a = 0; a < plug.length; a += 1) {
+            if (plug[a] > a) {
+                if (result.length() > 0) {
+                    result.append(' ');
+                }
+                result.append('(')
+                    .appendCodePoint(_alphabet.codePoint(a))
+                    .appendCodePoint(_alphabet.codePoint(plug[a]))
+                    .append(')');
+            }
+        }
+        return result.toString();
+    }
+
+    /** Default number of candidates climbed. */
+    static final int DEFAULT_CANDIDATES = 32;
+    /** Pairs plugged at random when a climb restarts. */
+    private static final int RANDOM_PAIRS = 5;
+    /** Difference between the seeds of successive candidates' climbs. */
+    private static final long SEED_STRIDE = 0x9E3779B97F4A7C15L;
+
+    /** Supplies the alphabet, slots, and rotors. */
+    private final Machine _machine;
+    /** My alphabet. */
+    private final Alphabet _alphabet;
+    /** The ciphertext, as indices. */
+    private final int[] _cipher;
+    /** Models whose scores are added. */
+    private final NgramModel[] _models;
+    /** Seed for random choices. */
+    private final long _seed;
+    /** The rotor orders tried. */
+    private final List<String[]> _orders;
+    /** Number of candidates climbed. */
+    private int _candidates = DEFAULT_CANDIDATES;
+    /** Number of restarts of each climb. */
+    private int _restarts = 2;
+}
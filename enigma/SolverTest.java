@@ -0,0 +1,97 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Solver and NgramModel classes.
+ *  @author Albert Abudumijitiaji
+ */
+public class SolverTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTS ***** */
+
+    private static final Alphabet AZ = new Alphabet(TestUtils.UPPER_STRING);
+
+    private static final String TEXT =
+        "SHOULD YOU ASK ME WHENCE THESE STORIES WHENCE THESE LEGENDS AND "
+        + "TRADITIONS WITH THE ODOURS OF THE FOREST WITH THE DEW AND DAMP "
+        + "OF MEADOWS WITH THE CURLING SMOKE OF WIGWAMS WITH THE RUSHING OF "
+        + "GREAT RIVERS WITH THEIR FREQUENT REPETITIONS AND THEIR WILD "
+        + "REVERBERATIONS AS OF THUNDER IN THE MOUNTAINS I SHOULD ANSWER I "
+        + "SHOULD TELL YOU FROM THE FORESTS AND THE PRAIRIES FROM THE "
+        + "GREAT LAKES OF THE NORTHLAND FROM THE LAND OF THE OJIBWAYS";
+
+    /** Return a machine with three slots, two pawls, reflector B, and
+     *  rotors I, II, and III. */
+    private Machine machine() {
+        HashMap<String, String> nav = TestUtils.NAVALA;
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(nav.get("B"), AZ)));
+        rotors.add(new MovingRotor("I", new Permutation(nav.get("I"), AZ),
+                                   "Q"));
+        rotors.add(new MovingRotor("II", new Permutation(nav.get("II"), AZ),
+                                   "E"));
+        rotors.add(new MovingRotor("III",
+                                   new Permutation(nav.get("III"), AZ),
+                                   "V"));
+        return new Machine(AZ, 3, 2, rotors);
+    }
+
+    @Test
+    public void testNgramModel() {
+        NgramModel model =
+            NgramModel.read(AZ, new Scanner("TH 30\nHE 10\nAN 10\n"));
+        assertEquals(2, model.length());
+        int[] the = { 19, 7, 4 };
+        assertEquals(Math.log10(0.6) + Math.log10(0.2),
+                     model.score(the, 3), 1e-6);
+        NgramModel trained = NgramModel.train(AZ, 3, "THE THE");
+        assertEquals(Math.log10(0.5) + Math.log10(0.25),
+                     trained.score(new int[] { 19, 7, 4, 19 }, 4), 1e-6);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNgramLengths() {
+        NgramModel.read(AZ, new Scanner("TH 30\nHER 10\n"));
+    }
+
+    @Test
+    public void testSolve() {
+        Machine mach = machine();
+        mach.insertRotors(new String[] { "B", "II", "I" });
+        mach.setRotors("QW");
+        mach.setPlugboard(new Permutation("(AT) (HR) (NS)", AZ));
+        String cipher = mach.convert(TEXT);
+
+        List<NgramModel> models = new ArrayList<>();
+        models.add(NgramModel.train(AZ, 2, TEXT));
+        models.add(NgramModel.train(AZ, 4, TEXT));
+        Solver solver = new Solver(machine(), cipher, models, 42);
+        solver.setCandidates(8);
+        List<Solver.Solution> solutions = solver.run(new ForkJoinPool(3));
+        assertEquals(8, solutions.size());
+        Solver.Solution best = solutions.get(0);
+        assertEquals("* B II I QW (AT) (HR) (NS)", best.toString());
+
+        Solver again = new Solver(machine(), cipher, models, 42);
+        again.setCandidates(8);
+        List<Solver.Solution> repeated = again.run(new ForkJoinPool(1));
+        for (int i = 0; i < solutions.size(); i += 1) {
+            assertEquals(solutions.get(i).toString(),
+                         repeated.get(i).toString());
+            assertEquals(solutions.get(i).score(),
+                         repeated.get(i).score(), 0);
+        }
+    }
+}
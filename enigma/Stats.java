@@ -0,0 +1,386 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/** Counters and latency histograms for the stages of processing: loading
+ *  the configuration, reading and decoding input, setting up the machine
+ *  for each settings line, converting messages, and formatting and
+ *  writing output.  The same measurements are emitted as JDK Flight
+ *  Recorder events (category "Enigma") while a recording is running.
+ *
+ *  Callers bracket each piece of work with start and record.  When
+ *  statistics are off and no recording is taking the events, start
+ *  returns 0 without reading the clock and record returns at once, so
+ *  the hooks cost a couple of branches.  Recording may happen on any
+ *  thread.
+ *  @author Albert Abudumijitiaji
+ */
+class Stats implements StatsMBean {
+
+    /** The stages measured. */
+    enum Stage {
+        /** Loading the configuration; units are rotors. */
+        CONFIG("configuration", "rotors"),
+        /** Reading and decoding a block of input; units are bytes. */
+        INPUT("input", "bytes"),
+        /** Setting up for a settings line; units are settings lines. */
+        SETUP("setup", "lines"),
+        /** Converting a batch of characters; units are characters. */
+        CONVERT("conversion", "chars"),
+        /** Formatting and writing output; units are characters. */
+        OUTPUT("output", "chars");
+
+        /** A stage described by LABEL, counting UNITS.  Its event class
+         *  is not named here, so that it is not loaded (with the
+         *  recorder's classes) by runs that record nothing. */
+        Stage(String label, String units) {
+            _label = label;
+            _units = units;
+        }
+
+        /** Return true iff a flight recording is taking my events.
+         *  Registering an event type initializes much of the recorder,
+         *  which takes a noticeable part of a second, so that is put off
+         *  until some recording has started. */
+        boolean recorded() {
+            if (!FlightRecorder.isInitialized()) {
+                return false;
+            }
+            if (_eventType == null) {
+                _eventType = Events.type(this);
+            }
+            return _eventType.isEnabled();
+        }
+
+        /** Description of the stage. */
+        private final String _label;
+        /** What the stage's units count. */
+        private final String _units;
+        /** Type of the stage's events, once registered. */
+        private volatile EventType _eventType;
+    }
+
+    /** Statistics that are kept iff ENABLED. */
+    Stats(boolean enabled) {
+        _enabled = enabled;
+        int stages = Stage.values().length;
+        _counts = new LongAdder[stages];
+        _nanos = new LongAdder[stages];
+        _units = new LongAdder[stages];
+        for (int i = 0; i < stages; i += 1) {
+            _counts[i] = new LongAdder();
+            _nanos[i] = new LongAdder();
+            _units[i] = new LongAdder();
+        }
+        _histograms = new AtomicLongArray(stages * BUCKETS);
+        _created = System.nanoTime();
+    }
+
+    /** Statistics that are not kept (events are still emitted while a
+     *  recording takes them). */
+    static final Stats OFF = new Stats(false);
+
+    /** Return true iff I am keeping statistics. */
+    boolean enabled() {
+        return _enabled;
+    }
+
+    /** Return the time to pass to record for a piece of STAGE beginning
+     *  now, or 0 if it will not be measured. */
+    long start(Stage stage) {
+        return _enabled || stage.recorded() ? System.nanoTime() : 0;
+    }
+
+    /** Record a piece of STAGE that began at START (as returned by
+     *  start) and processed UNITS units. */
+    void record(Stage stage, long start, long units) {
+        if (start == 0) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        if (_enabled) {
+            int i = stage.ordinal();
+            _counts[i].increment();
+            _nanos[i].add(nanos);
+            _units[i].add(units);
+            int bucket = Long.SIZE - Long.numberOfLeadingZeros(nanos);
+            _histograms.incrementAndGet(i * BUCKETS
+                                        + Math.min(bucket, BUCKETS - 1));
+        }
+        if (stage.recorded()) {
+            Events.commit(stage, nanos, units);
+        }
+    }
+
+    /** Return the number of pieces of STAGE recorded. */
+    long count(Stage stage) {
+        return _counts[stage.ordinal()].sum();
+    }
+
+    /** Return the total nanoseconds spent in STAGE. */
+    long nanos(Stage stage) {
+        return _nanos[stage.ordinal()].sum();
+    }
+
+    /** Return the total units processed in STAGE. */
+    long units(Stage stage) {
+        return _units[stage.ordinal()].sum();
+    }
+
+    /** Return the latency histogram of STAGE: entry K counts the pieces
+     *  that took from 2**(K-1) to 2**K - 1 nanoseconds (the last entry
+     *  also counts longer ones). */
+    long[] histogram(Stage stage) {
+        long[] result = new long[BUCKETS];
+        for (int k = 0; k < BUCKETS; k += 1) {
+            result[k] = _histograms.get(stage.ordinal() * BUCKETS + k);
+        }
+        return result;
+    }
+
+    /** Return an upper bound on the nanoseconds taken by the fraction Q
+     *  of the pieces of STAGE that were fastest, from its histogram. */
+    long quantile(Stage stage, double q) {
+        long[] hist = histogram(stage);
+        long total = 0;
+        for (long n : hist) {
+            total += n;
+        }
+        long seen = 0;
+        for (int k = 0; k < BUCKETS; k += 1) {
+            seen += hist[k];
+            if (seen > 0 && seen >= q * total) {
+                return (1L << k) - 1;
+            }
+        }
+        return 0;
+    }
+
+    /** Register me with the platform MBean server as
+     *  enigma:type=Stats, replacing any earlier registration. */
+    void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new StandardMBean(this, StatsMBean.class),
+                                 name);
+        } catch (JMException excp) {
+            throw new EnigmaException("could not register statistics: "
+                                      + excp.getMessage());
+        }
+    }
+
+    /** Print the time spent in each stage, and the share of TOTALNANOS
+     *  it represents, on OUT. */
+    void print(PrintStream out, long totalNanos) {
+        out.printf("%-14s %8s %12s %10s %7s %10s %10s%n", "stage", "count",
+                   "units", "ms", "share", "p50 us", "p99 us");
+        long measured = 0;
+        for (Stage stage : Stage.values()) {
+            long nanos = nanos(stage);
+            measured += nanos;
+            out.printf("%-14s %8d %12s %10.1f %6.1f%% %10.1f %10.1f%n",
+                       stage._label, count(stage),
+                       units(stage) + " " + stage._units, nanos / 1e6,
+                       100.0 * nanos / Math.max(totalNanos, 1),
+                       quantile(stage, 0.5) / 1e3,
+                       quantile(stage, 0.99) / 1e3);
+        }
+        long other = Math.max(totalNanos - measured, 0);
+        out.printf("%-14s %8s %12s %10.1f %6.1f%%%n", "other", "", "",
+                   other / 1e6, 100.0 * other / Math.max(totalNanos, 1));
+        out.printf("total %.1f ms, %.0f chars/s%n", totalNanos / 1e6,
+                   units(Stage.CONVERT) / Math.max(totalNanos / 1e9, 1e-9));
+    }
+
+    @Override
+    public long getConfigurationNanos() {
+        return nanos(Stage.CONFIG);
+    }
+
+    @Override
+    public long getInputBytes() {
+        return units(Stage.INPUT);
+    }
+
+    @Override
+    public long getInputNanos() {
+        return nanos(Stage.INPUT);
+    }
+
+    @Override
+    public long getSettingsLines() {
+        return count(Stage.SETUP);
+    }
+
+    @Override
+    public long getSetupNanos() {
+        return nanos(Stage.SETUP);
+    }
+
+    @Override
+    public long getConvertBatches() {
+        return count(Stage.CONVERT);
+    }
+
+    @Override
+    public long getCharactersConverted() {
+        return units(Stage.CONVERT);
+    }
+
+    @Override
+    public long getConvertNanos() {
+        return nanos(Stage.CONVERT);
+    }
+
+    @Override
+    public long getOutputFlushes() {
+        return count(Stage.OUTPUT);
+    }
+
+    @Override
+    public long getOutputCharacters() {
+        return units(Stage.OUTPUT);
+    }
+
+    @Override
+    public long getOutputNanos() {
+        return nanos(Stage.OUTPUT);
+    }
+
+    @Override
+    public double getCharactersPerSecond() {
+        double seconds = (System.nanoTime() - _created) / 1e9;
+        return units(Stage.CONVERT) / Math.max(seconds, 1e-9);
+    }
+
+    @Override
+    public long[] getLatencyHistogram(String stage) {
+        return histogram(Stage.valueOf(stage.toUpperCase()));
+    }
+
+    /** Access to the events of each stage.  Everything that touches the
+     *  recorder's classes is kept here, so that they are only loaded
+     *  once a recording is running. */
+    private static final class Events {
+        /** Return the type of the events of STAGE. */
+        static EventType type(Stage stage) {
+            return EventType.getEventType(create(stage).getClass());
+        }
+
+        /** Commit an event for a piece of STAGE that took NANOS
+         *  nanoseconds and processed UNITS units. */
+        static void commit(Stage stage, long nanos, long units) {
+            StageEvent event = create(stage);
+            event.duration = nanos;
+            event.units = units;
+            event.commit();
+        }
+
+        /** Return a new event for STAGE. */
+        private static StageEvent create(Stage stage) {
+            switch (stage) {
+            case CONFIG:
+                return new ConfigLoad();
+            case INPUT:
+                return new InputRead();
+            case SETUP:
+                return new Setup();
+            case CONVERT:
+                return new ConvertBatch();
+            default:
+                return new OutputFlush();
+            }
+        }
+    }
+
+    /** Base of the events for each stage. */
+    @Category("Enigma")
+    @StackTrace(false)
+    abstract static class StageEvent extends Event {
+        /** Time taken. */
+        @Label("Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long duration;
+
+        /** Units processed: rotors, bytes, lines, or characters. */
+        @Label("Units")
+        long units;
+    }
+
+    /** Loading of the configuration. */
+    @Name("enigma.ConfigLoad")
+    @Label("Configuration Load")
+    @Description("Loading a configuration file or image; units are "
+                 + "rotors")
+    static final class ConfigLoad extends StageEvent {
+    }
+
+    /** Reading and decoding of a block of input. */
+    @Name("enigma.InputRead")
+    @Label("Input Read")
+    @Description("Reading and decoding a block of input; units are bytes")
+    static final class InputRead extends StageEvent {
+    }
+
+    /** Handling of a settings line. */
+    @Name("enigma.Setup")
+    @Label("Setup")
+    @Description("Setting up the machine for a settings line")
+    static final class Setup extends StageEvent {
+    }
+
+    /** Conversion of a batch of characters. */
+    @Name("enigma.ConvertBatch")
+    @Label("Convert Batch")
+    @Description("Converting a batch of message characters; units are "
+                 + "characters")
+    static final class ConvertBatch extends StageEvent {
+    }
+
+    /** Formatting and writing of converted characters. */
+    @Name("enigma.OutputFlush")
+    @Label("Output Flush")
+    @Description("Formatting and writing converted characters; units "
+                 + "are characters")
+    static final class OutputFlush extends StageEvent {
+    }
+
+    /** Name under which register() registers me. */
+    static final String OBJECT_NAME = "enigma:type=Stats";
+
+    /** Number of buckets in each latency histogram. */
+    private static final int BUCKETS = 48;
+
+    /** True iff I am keeping statistics. */
+    private final boolean _enabled;
+    /** Pieces recorded, by stage. */
+    private final LongAdder[] _counts;
+    /** Nanoseconds spent, by stage. */
+    private final LongAdder[] _nanos;
+    /** Units processed, by stage. */
+    private final LongAdder[] _units;
+    /** Latency histograms, BUCKETS entries per stage. */
+    private final AtomicLongArray _histograms;
+    /** Value of System.nanoTime() when I was created. */
+    private final long _created;
+}
@@ -0,0 +1,50 @@
+package enigma;
+
+/** The attributes of Stats published through JMX, as
+ *  enigma:type=Stats.  Times are in nanoseconds.
+ *  @author Albert Abudumijitiaji
+ */
+public interface StatsMBean {
+    /** Return the time spent loading the configuration. */
+    long getConfigurationNanos();
+
+    /** Return the number of bytes of input read. */
+    long getInputBytes();
+
+    /** Return the time spent reading and decoding input. */
+    long getInputNanos();
+
+    /** Return the number of settings lines processed. */
+    long getSettingsLines();
+
+    /** Return the time spent setting up for settings lines. */
+    long getSetupNanos();
+
+    /** Return the number of batches of characters converted. */
+    long getConvertBatches();
+
+    /** Return the number of characters converted. */
+    long getCharactersConverted();
+
+    /** Return the time spent converting characters. */
+    long getConvertNanos();
+
+    /** Return the number of times output was formatted and written. */
+    long getOutputFlushes();
+
+    /** Return the number of characters of output written, not
+     *  counting spaces and newlines. */
+    long getOutputCharacters();
+
+    /** Return the time spent formatting and writing output. */
+    long getOutputNanos();
+
+    /** Return the average number of characters converted per second
+     *  since the statistics were created. */
+    double getCharactersPerSecond();
+
+    /** Return the latency histogram of the stage named STAGE (one of
+     *  config, input, setup, convert, or output): entry K counts the
+     *  pieces that took from 2**(K-1) to 2**K - 1 nanoseconds. */
+    long[] getLatencyHistogram(String stage);
+}
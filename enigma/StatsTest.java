@@ -0,0 +1,51 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Stats class.
+ *  @author Albert Abudumijitiaji
+ */
+public class StatsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRecord() {
+        Stats stats = new Stats(true);
+        for (int i = 0; i < 3; i += 1) {
+            long start = stats.start(Stats.Stage.CONVERT);
+            assertTrue(start != 0);
+            stats.record(Stats.Stage.CONVERT, start, 10);
+        }
+        assertEquals(3, stats.count(Stats.Stage.CONVERT));
+        assertEquals(30, stats.units(Stats.Stage.CONVERT));
+        assertEquals(30, stats.getCharactersConverted());
+        assertEquals(0, stats.count(Stats.Stage.SETUP));
+        long total = 0;
+        for (long n : stats.histogram(Stats.Stage.CONVERT)) {
+            total += n;
+        }
+        assertEquals(3, total);
+        assertTrue(stats.quantile(Stats.Stage.CONVERT, 0.5)
+                   <= stats.quantile(Stats.Stage.CONVERT, 1.0));
+        assertArrayEquals(stats.histogram(Stats.Stage.CONVERT),
+                          stats.getLatencyHistogram("convert"));
+    }
+
+    @Test
+    public void testOff() {
+        if (Stats.OFF.start(Stats.Stage.SETUP) == 0) {
+            Stats.OFF.record(Stats.Stage.SETUP, 0, 1);
+        }
+        assertFalse(Stats.OFF.enabled());
+        assertEquals(0, Stats.OFF.count(Stats.Stage.SETUP));
+    }
+
+}
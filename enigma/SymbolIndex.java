@@ -0,0 +1,133 @@
+package enigma;
+
+/** A read-only map from code points to their indices in an alphabet.
+ *  Compact alphabets (such as ranges of ASCII or Latin letters) use a
+ *  direct table indexed by code point; sparse ones (scattered Unicode
+ *  symbols) use an open-addressed hash table.  In both cases the table
+ *  holds index + 1 (0 marking an empty slot) as Slots, and so in the
+ *  narrowest of byte, short, or int that fits the alphabet size.
+ *  @author Albert Abudumijitiaji
+ */
+abstract class SymbolIndex {
+
+    /** Return an index for the distinct code points CODEPOINTS, where
+     *  CODEPOINTS[k] gets index k.  Returns null if some code point is
+     *  duplicated. */
+    static SymbolIndex of(int[] codePoints) {
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int cp : codePoints) {
+            min = Math.min(min, cp);
+            max = Math.max(max, cp);
+        }
+        SymbolIndex result;
+        if (codePoints.length == 0) {
+            result = new Direct(codePoints, 0, 0);
+        } else if ((long) max - min < DENSE_SLACK * codePoints.length
+                   + DENSE_MIN) {
+            result = new Direct(codePoints, min, max - min + 1);
+        } else {
+            result = new Hashed(codePoints);
+        }
+        for (int k = 0; k < codePoints.length; k += 1) {
+            if (!result.put(codePoints[k], k)) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    /** Return the index of code point CP, or -1 if it is absent. */
+    abstract int get(int cp);
+
+    /** Record that CP has index K.  Returns false if CP is already
+     *  present. */
+    abstract boolean put(int cp, int k);
+
+    /** A direct table covering the code points MIN .. MIN+LENGTH-1. */
+    private static final class Direct extends SymbolIndex {
+        /** A table for CODEPOINTS spanning LENGTH code points from MIN. */
+        Direct(int[] codePoints, int min, int length) {
+            _min = min;
+            _slots = Slots.of(length, codePoints.length);
+        }
+
+        @Override
+        int get(int cp) {
+            int i = cp - _min;
+            if (i < 0 || i >= _slots.length()) {
+                return -1;
+            }
+            return _slots.get(i) - 1;
+        }
+
+        @Override
+        boolean put(int cp, int k) {
+            int i = cp - _min;
+            if (_slots.get(i) != 0) {
+                return false;
+            }
+            _slots.set(i, k + 1);
+            return true;
+        }
+
+        /** Smallest code point covered. */
+        private final int _min;
+        /** Index + 1 of each code point, or 0. */
+        private final Slots _slots;
+    }
+
+    /** An open-addressed (linear probing) table.  Keys are not stored:
+     *  a slot holds an index into the alphabet's own code point array,
+     *  which is compared against the probe key. */
+    private static final class Hashed extends SymbolIndex {
+        /** A table for the code points CODEPOINTS. */
+        Hashed(int[] codePoints) {
+            int capacity = Integer.highestOneBit(codePoints.length * 2 + 1)
+                * 2;
+            _codePoints = codePoints;
+            _mask = capacity - 1;
+            _slots = Slots.of(capacity, codePoints.length);
+        }
+
+        /** Return the home slot of CP. */
+        private int home(int cp) {
+            int h = cp * GOLDEN;
+            return (h ^ (h >>> HASH_SHIFT)) & _mask;
+        }
+
+        @Override
+        int get(int cp) {
+            for (int i = home(cp); ; i = (i + 1) & _mask) {
+                int k = _slots.get(i) - 1;
+                if (k < 0 || _codePoints[k] == cp) {
+                    return k;
+                }
+            }
+        }
+
+        @Override
+        boolean put(int cp, int k) {
+            int i;
+            for (i = home(cp); _slots.get(i) != 0; i = (i + 1) & _mask) {
+                if (_codePoints[_slots.get(i) - 1] == cp) {
+                    return false;
+                }
+            }
+            _slots.set(i, k + 1);
+            return true;
+        }
+
+        /** The code points being indexed. */
+        private final int[] _codePoints;
+        /** Slot count - 1 (the slot count is a power of two). */
+        private final int _mask;
+        /** Index + 1 of the code point in each slot, or 0. */
+        private final Slots _slots;
+    }
+
+    /** A direct table is used when the code point span is below
+     *  DENSE_SLACK slots per symbol plus DENSE_MIN. */
+    private static final int DENSE_SLACK = 4, DENSE_MIN = 256;
+    /** Multiplier and shift for hashing code points. */
+    private static final int GOLDEN = 0x9e3779b9, HASH_SHIFT = 16;
+}
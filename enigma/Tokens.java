@@ -0,0 +1,128 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+
+import static enigma.EnigmaException.*;
+
+/** The whitespace-separated tokens of a text, read in order.  This is
+ *  all configuration files and settings lines need of a Scanner, and
+ *  unlike a Scanner it compiles no regular expressions and loads no
+ *  locale data, which matters to the startup time of short runs.
+ *  @author Albert Abudumijitiaji
+ */
+class Tokens {
+
+    /** The tokens of TEXT. */
+    Tokens(CharSequence text) {
+        _text = text;
+        skipWhitespace();
+    }
+
+    /** Return the tokens of the file at PATH, read in the default
+     *  charset. */
+    static Tokens read(Path path) {
+        try {
+            return new Tokens(new String(Files.readAllBytes(path),
+                                         Charset.defaultCharset()));
+        } catch (IOException excp) {
+            throw error("could not open %s", path);
+        }
+    }
+
+    /** Return true iff another token remains. */
+    boolean hasNext() {
+        return _next < _text.length();
+    }
+
+    /** Return true iff any characters remain after the last token
+     *  read, even if only whitespace (as for Scanner.hasNextLine). */
+    boolean hasRemaining() {
+        return _end < _text.length();
+    }
+
+    /** Return the next token without consuming it, or null if there
+     *  is none. */
+    String peek() {
+        if (!hasNext()) {
+            return null;
+        }
+        int end = _next;
+        while (end < _text.length()
+               && !Character.isWhitespace(_text.charAt(end))) {
+            end += 1;
+        }
+        return _text.subSequence(_next, end).toString();
+    }
+
+    /** Return and consume the next token.  Throws
+     *  NoSuchElementException if there is none. */
+    String next() {
+        String result = peek();
+        if (result == null) {
+            throw new NoSuchElementException();
+        }
+        _end = _next + result.length();
+        _next = _end;
+        skipWhitespace();
+        return result;
+    }
+
+    /** Return true iff the next token is a decimal integer (with an
+     *  optional sign) in the range of an int. */
+    boolean hasNextInt() {
+        return parseInt(peek()) != null;
+    }
+
+    /** Return and consume the next token as an int.  Throws
+     *  NoSuchElementException if it is not one. */
+    int nextInt() {
+        Integer result = parseInt(peek());
+        if (result == null) {
+            throw new NoSuchElementException();
+        }
+        next();
+        return result;
+    }
+
+    /** Return TOKEN as an Integer, or null if TOKEN is null or not a
+     *  decimal integer in the range of an int. */
+    private static Integer parseInt(String token) {
+        if (token == null) {
+            return null;
+        }
+        int start = token.startsWith("-") || token.startsWith("+") ? 1 : 0;
+        if (start == token.length()) {
+            return null;
+        }
+        for (int i = start; i < token.length(); i += 1) {
+            if (token.charAt(i) < '0' || token.charAt(i) > '9') {
+                return null;
+            }
+        }
+        try {
+            return Integer.valueOf(token);
+        } catch (NumberFormatException excp) {
+            return null;
+        }
+    }
+
+    /** Advance _next past whitespace. */
+    private void skipWhitespace() {
+        while (_next < _text.length()
+               && Character.isWhitespace(_text.charAt(_next))) {
+            _next += 1;
+        }
+    }
+
+    /** The text being read. */
+    private final CharSequence _text;
+    /** Index of the start of the next token, or _text.length() if there
+     *  is none. */
+    private int _next;
+    /** Index just past the last token read. */
+    private int _end;
+}
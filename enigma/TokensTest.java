@@ -0,0 +1,49 @@
+package enigma;
+
+import java.util.NoSuchElementException;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Tokens class.
+ *  @author Albert Abudumijitiaji
+ */
+public class TokensTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testTokens() {
+        Tokens tokens = new Tokens("  ABC\n 5 -3\t(AB) x12\n");
+        assertTrue(tokens.hasRemaining());
+        assertEquals("ABC", tokens.next());
+        assertTrue(tokens.hasNextInt());
+        assertEquals(5, tokens.nextInt());
+        assertEquals(-3, tokens.nextInt());
+        assertFalse(tokens.hasNextInt());
+        assertEquals("(AB)", tokens.peek());
+        assertEquals("(AB)", tokens.next());
+        assertFalse(tokens.hasNextInt());
+        assertEquals("x12", tokens.next());
+        assertFalse(tokens.hasNext());
+        assertTrue(tokens.hasRemaining());
+        assertNull(tokens.peek());
+        try {
+            tokens.next();
+            fail("read past end");
+        } catch (NoSuchElementException excp) {
+            /* Expected. */
+        }
+        Tokens last = new Tokens("AB");
+        last.next();
+        assertFalse(last.hasRemaining());
+        assertFalse(new Tokens("99999999999").hasNextInt());
+        assertFalse(new Tokens("-").hasNextInt());
+    }
+
+}
@@ -0,0 +1,24 @@
+package enigma;
+
+/** Receives the path of each character through a Machine, for
+ *  debugging.  A Machine with no listener does no tracing work at all.
+ *  For each keystroke, a listener receives one call to keystroke, one
+ *  call to signal for each stage of the signal path (the plugboard, each
+ *  rotor inward including the reflector, and each rotor outward), and
+ *  one call to output.
+ *  @author Albert Abudumijitiaji
+ */
+interface TraceListener {
+
+    /** Start a keystroke on the character with index INPUT, made after
+     *  the rotors have advanced.  SETTINGS[K-1] is the setting of rotor
+     *  K, for 1 <= K < SETTINGS.length + 1; the array is reused by the
+     *  caller after this call returns. */
+    void keystroke(int[] settings, int input);
+
+    /** Record that the signal leaving the current stage is index C. */
+    void signal(int c);
+
+    /** Finish the keystroke, whose result is index C. */
+    void output(int c);
+}
@@ -0,0 +1,156 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.util.concurrent.locks.LockSupport;
+
+/** A TraceListener that records events in a preallocated ring buffer of
+ *  ints and formats them on a separate thread, in the format of the
+ *  --verbose option:
+ *
+ *      [AXLE] F -> X -> ... -> Q
+ *
+ *  giving the rotor settings, the input character, the signal after each
+ *  stage, and the output character.  The machine's thread therefore only
+ *  pays for a few array stores per stage; it waits only when the buffer
+ *  is full.  Exactly one thread may report events.
+ *  @author Albert Abudumijitiaji
+ */
+class TraceRing implements TraceListener {
+
+    /** A ring formatting characters from ALPHABET onto OUT. */
+    TraceRing(Alphabet alphabet, PrintStream out) {
+        _alphabet = alphabet;
+        _out = out;
+        _drainer = new Thread(this::drain, "enigma-trace");
+        _drainer.setDaemon(true);
+        _drainer.start();
+    }
+
+    @Override
+    public void keystroke(int[] settings, int input) {
+        reserve(settings.length + 3);
+        put(KEYSTROKE);
+        put(settings.length);
+        for (int s : settings) {
+            put(s);
+        }
+        put(input);
+        _head = _writePos;
+    }
+
+    @Override
+    public void signal(int c) {
+        reserve(1);
+        put(c);
+        _head = _writePos;
+    }
+
+    @Override
+    public void output(int c) {
+        reserve(2);
+        put(OUTPUT);
+        put(c);
+        _head = _writePos;
+    }
+
+    /** Wait until all recorded events have been written out, and stop
+     *  the formatting thread. */
+    void close() {
+        _closed = true;
+        LockSupport.unpark(_drainer);
+        try {
+            _drainer.join();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+        _out.flush();
+    }
+
+    /** Wait until there is room for N more ints. */
+    private void reserve(int n) {
+        while (_writePos + n - _tail > CAPACITY) {
+            LockSupport.unpark(_drainer);
+            Thread.onSpinWait();
+        }
+    }
+
+    /** Append V to the buffer, unpublished. */
+    private void put(int v) {
+        _ring[(int) (_writePos & MASK)] = v;
+        _writePos += 1;
+    }
+
+    /** Return the int at position POS of the buffer. */
+    private int at(long pos) {
+        return _ring[(int) (pos & MASK)];
+    }
+
+    /** Body of the formatting thread: format published events until
+     *  closed and empty. */
+    private void drain() {
+        StringBuilder line = new StringBuilder();
+        long pos = 0;
+        while (true) {
+            long head = _head;
+            if (pos == head) {
+                if (_closed && pos == _head) {
+                    return;
+                }
+                _out.flush();
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            while (pos < head) {
+                int v = at(pos);
+                pos += 1;
+                if (v == KEYSTROKE) {
+                    int count = at(pos);
+                    pos += 1;
+                    line.append('[');
+                    for (int k = 0; k < count; k += 1, pos += 1) {
+                        line.appendCodePoint(_alphabet.codePoint(at(pos)));
+                    }
+                    line.append("] ");
+                    line.appendCodePoint(_alphabet.codePoint(at(pos)));
+                    pos += 1;
+                } else if (v == OUTPUT) {
+                    line.append(" -> ");
+                    line.appendCodePoint(_alphabet.codePoint(at(pos)));
+                    pos += 1;
+                    _out.println(line);
+                    line.setLength(0);
+                } else {
+                    line.append(" -> ");
+                    line.appendCodePoint(_alphabet.codePoint(v));
+                }
+            }
+            _tail = pos;
+        }
+    }
+
+    /** Event markers (never valid character indices). */
+    private static final int KEYSTROKE = -1, OUTPUT = -2;
+    /** Size of the ring in ints (a power of two), and the mask that
+     *  reduces a position to an index. */
+    private static final int CAPACITY = 1 << 16, MASK = CAPACITY - 1;
+    /** How long the formatting thread sleeps when there is nothing to
+     *  do. */
+    private static final long IDLE_NANOS = 1_000_000;
+
+    /** Alphabet used to format indices. */
+    private final Alphabet _alphabet;
+    /** Destination of formatted events. */
+    private final PrintStream _out;
+    /** The formatting thread. */
+    private final Thread _drainer;
+    /** The buffer. */
+    private final int[] _ring = new int[CAPACITY];
+    /** Position of the next int written (producer only). */
+    private long _writePos;
+    /** Position just past the last complete event. */
+    private volatile long _head;
+    /** Position just past the last int formatted. */
+    private volatile long _tail;
+    /** True once close has been called. */
+    private volatile boolean _closed;
+}
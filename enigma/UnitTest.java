@@ -16,7 +16,21 @@ public class UnitTest {
         }
         System.exit(textui.runClasses(PermutationTest.class,
                 MovingRotorTest.class,
-                MachineTest.class));
+                MachineTest.class,
+                MultiKeyMachineTest.class,
+                KeystreamCacheTest.class,
+                ConfigImageTest.class,
+                AlphabetTest.class,
+                BombeTest.class,
+                SolverTest.class,
+                StatsTest.class,
+                KeyspaceTest.class,
+                ServerTest.class,
+                TokensTest.class,
+                GroupWriterTest.class,
+                BinaryTest.class,
+                EngineTest.class,
+                MainTest.class));
     }
 
 }
@@ -0,0 +1,118 @@
+package enigma;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** The loops over lanes of a MultiKeyMachine, written with the Vector
+ *  API, which is in the incubator module jdk.incubator.vector.  Table
+ *  lookups are gathers through an index map, and the wrapping of
+ *  positions and signals is done by comparing and adding under masks.
+ *  Each method handles the lanes up to the largest multiple of the
+ *  vector length, and returns the first lane it did not handle, which
+ *  the caller finishes with scalar code.  Loading this class fails
+ *  unless the module is present; MultiKeyMachine checks first.
+ *  @author Albert Abudumijitiaji
+ */
+final class VectorLanes {
+
+    /** Loops over LANES lanes on an alphabet of N symbols. */
+    VectorLanes(int lanes, int n) {
+        _bound = SPECIES.loopBound(lanes);
+        _n = n;
+        _index = new int[lanes];
+        _laneBase = new int[lanes];
+        for (int l = 0; l < lanes; l += 1) {
+            _laneBase[l] = l * n;
+        }
+    }
+
+    /** Set DST[L] to TABLE[POSNS[L]] for each lane L I handle, and
+     *  return the first lane I do not. */
+    int gather(int[] table, int[] posns, int[] dst) {
+        for (int l = 0; l < _bound; l += LENGTH) {
+            IntVector.fromArray(SPECIES, table, 0, posns, l)
+                .intoArray(dst, l);
+        }
+        return _bound;
+    }
+
+    /** Add HERE[L] | RIGHT[L] to POSNS[L], wrapping to 0 at the
+     *  alphabet size, for each lane L I handle, and return the first
+     *  lane I do not. */
+    int advance(int[] posns, int[] here, int[] right) {
+        for (int l = 0; l < _bound; l += LENGTH) {
+            IntVector move = IntVector.fromArray(SPECIES, here, l)
+                .or(IntVector.fromArray(SPECIES, right, l));
+            IntVector p = IntVector.fromArray(SPECIES, posns, l).add(move);
+            p.blend(0, p.compare(VectorOperators.EQ, _n))
+                .intoArray(posns, l);
+        }
+        return _bound;
+    }
+
+    /** Set SIGNAL[L] to PLUGBOARDS[L * N + SRC[BASE + L]], where N is
+     *  the alphabet size, for each lane L I handle, and return the first
+     *  lane I do not. */
+    int plugIn(int[] plugboards, int[] src, int base, int[] signal) {
+        int[] index = _index;
+        for (int l = 0; l < _bound; l += LENGTH) {
+            IntVector.fromArray(SPECIES, _laneBase, l)
+                .add(IntVector.fromArray(SPECIES, src, base + l))
+                .intoArray(index, l);
+            IntVector.fromArray(SPECIES, plugboards, 0, index, l)
+                .intoArray(signal, l);
+        }
+        return _bound;
+    }
+
+    /** Set DST[BASE + L] to PLUGBOARDS[L * N + SIGNAL[L]], where N is
+     *  the alphabet size, for each lane L I handle, and return the first
+     *  lane I do not. */
+    int plugOut(int[] plugboards, int[] signal, int[] dst, int base) {
+        int[] index = _index;
+        for (int l = 0; l < _bound; l += LENGTH) {
+            IntVector.fromArray(SPECIES, _laneBase, l)
+                .add(IntVector.fromArray(SPECIES, signal, l))
+                .intoArray(index, l);
+            IntVector.fromArray(SPECIES, plugboards, 0, index, l)
+                .intoArray(dst, base + l);
+        }
+        return _bound;
+    }
+
+    /** Replace SIGNAL[L] by TABLE[SIGNAL[L] + P] - P, modulo the
+     *  alphabet size, where P is POSNS[L], for each lane L I handle, and
+     *  return the first lane I do not.  TABLE holds a permutation twice
+     *  over, as for MultiKeyMachine.pass. */
+    int pass(int[] table, int[] posns, int[] signal) {
+        int[] index = _index;
+        for (int l = 0; l < _bound; l += LENGTH) {
+            IntVector p = IntVector.fromArray(SPECIES, posns, l);
+            IntVector.fromArray(SPECIES, signal, l).add(p)
+                .intoArray(index, l);
+            IntVector c = IntVector.fromArray(SPECIES, table, 0, index, l)
+                .sub(p);
+            VectorMask<Integer> negative = c.compare(VectorOperators.LT, 0);
+            c.add(_n, negative).intoArray(signal, l);
+        }
+        return _bound;
+    }
+
+    /** Shape of the vectors used: the widest the hardware supports. */
+    private static final VectorSpecies<Integer> SPECIES =
+        IntVector.SPECIES_PREFERRED;
+    /** Number of lanes in each vector. */
+    private static final int LENGTH = SPECIES.length();
+
+    /** Number of lanes I handle: those below the largest multiple of
+     *  LENGTH that is at most the number of lanes. */
+    private final int _bound;
+    /** Size of the alphabet. */
+    private final int _n;
+    /** Index map of the current gather, by lane. */
+    private final int[] _index;
+    /** L * _n for each lane L: the start of its plugboard. */
+    private final int[] _laneBase;
+}